@@ -0,0 +1,88 @@
+package liquibase.ext.opensearch.change;
+
+import liquibase.change.AbstractChange;
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.ext.opensearch.statement.BulkLoadStatement;
+import liquibase.resource.Resource;
+import liquibase.servicelocator.PrioritizedService;
+import liquibase.statement.SqlStatement;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Optional;
+
+@DatabaseChange(name = "bulkLoad",
+        description = "Load the documents of an NDJSON file (in the format of the bulk API) in batches",
+        priority = PrioritizedService.PRIORITY_DATABASE)
+@NoArgsConstructor
+@Getter
+@Setter
+public class BulkLoadChange extends AbstractChange {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BATCH_BYTES = 5 * 1024 * 1024;
+    public static final int DEFAULT_CONCURRENCY = 2;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+
+    private String file;
+    private Boolean relativeToChangelogFile;
+    private String index;
+    private Integer batchSize;
+    private Integer batchBytes;
+    private Integer concurrency;
+    private Integer maxRetries;
+
+    /**
+     * Index (or comma separated indices or pattern) whose replicas and refreshes are disabled while the file is loaded.
+     */
+    private String fastIngestIndex;
+    private Integer forceMergeSegments;
+
+    @Override
+    public String getConfirmationMessage() {
+        return String.format("loaded %s into %s",
+                this.getFile(),
+                Optional.ofNullable(this.getIndex()).orElse("the indices given by the items"));
+    }
+
+    @Override
+    public ValidationErrors validate(final Database database) {
+        final var errors = super.validate(database);
+        errors.checkRequiredField("file", this.getFile());
+        checkAtLeast(errors, "batchSize", this.getBatchSize(), 1);
+        checkAtLeast(errors, "batchBytes", this.getBatchBytes(), 1);
+        checkAtLeast(errors, "concurrency", this.getConcurrency(), 1);
+        checkAtLeast(errors, "maxRetries", this.getMaxRetries(), 0);
+        FastIngestValidation.validate(errors, this.getFastIngestIndex(), this.getForceMergeSegments());
+        return errors;
+    }
+
+    private static void checkAtLeast(final ValidationErrors errors, final String field, final Integer value, final int minimum) {
+        if (value != null && value < minimum) {
+            errors.addError("%s must be at least %d".formatted(field, minimum));
+        }
+    }
+
+    @Override
+    public SqlStatement[] generateStatements(final Database database) {
+        return new SqlStatement[] {
+            new BulkLoadStatement(this.getFile(), this.getResource(), this.getIndex(),
+                    Optional.ofNullable(this.getBatchSize()).orElse(DEFAULT_BATCH_SIZE),
+                    Optional.ofNullable(this.getBatchBytes()).orElse(DEFAULT_BATCH_BYTES),
+                    Optional.ofNullable(this.getConcurrency()).orElse(DEFAULT_CONCURRENCY),
+                    Optional.ofNullable(this.getMaxRetries()).orElse(DEFAULT_MAX_RETRIES),
+                    this.getFastIngestIndex(), this.getForceMergeSegments())
+        };
+    }
+
+    /**
+     * The content of the file is not part of the checksum as reading a big file on every update would be too
+     * expensive, thus modifications of the file are not detected.
+     */
+    private Resource getResource() {
+        return ChangeResources.resolve(this, this.getFile(), this.getRelativeToChangelogFile());
+    }
+}
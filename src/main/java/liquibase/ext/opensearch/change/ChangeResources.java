@@ -0,0 +1,32 @@
+package liquibase.ext.opensearch.change;
+
+import liquibase.Scope;
+import liquibase.change.Change;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.resource.Resource;
+
+import java.io.IOException;
+
+/**
+ * Resolves the files referenced by changes through the resource accessor of the current scope.
+ */
+final class ChangeResources {
+
+    private ChangeResources() {
+    }
+
+    /**
+     * The file is only looked up, it is opened when the change is executed (or its checksum is computed).
+     */
+    static Resource resolve(final Change change, final String file, final Boolean relativeToChangelogFile) {
+        final var resourceAccessor = Scope.getCurrentScope().getResourceAccessor();
+        try {
+            if (Boolean.TRUE.equals(relativeToChangelogFile)) {
+                return resourceAccessor.get(change.getChangeSet().getChangeLog().getPhysicalFilePath()).resolveSibling(file);
+            }
+            return resourceAccessor.getExisting(file);
+        } catch (final IOException e) {
+            throw new UnexpectedLiquibaseException("could not find %s".formatted(file), e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package liquibase.ext.opensearch.change;
+
+import liquibase.exception.ValidationErrors;
+
+/**
+ * Validates the fast ingest attributes which are shared by the changes loading documents.
+ */
+final class FastIngestValidation {
+
+    private FastIngestValidation() {
+    }
+
+    static void validate(final ValidationErrors errors, final String fastIngestIndex, final Integer forceMergeSegments) {
+        if (fastIngestIndex != null && fastIngestIndex.isBlank()) {
+            errors.addError("fastIngestIndex must not be empty");
+        }
+        if (forceMergeSegments != null) {
+            if (fastIngestIndex == null) {
+                errors.addError("forceMergeSegments can only be used with fastIngestIndex");
+            }
+            if (forceMergeSegments < 1) {
+                errors.addError("forceMergeSegments must be at least 1");
+            }
+        }
+    }
+}
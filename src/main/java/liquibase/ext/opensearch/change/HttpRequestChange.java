@@ -1,9 +1,14 @@
 package liquibase.ext.opensearch.change;
 
+import liquibase.ChecksumVersion;
 import liquibase.change.AbstractChange;
+import liquibase.change.CheckSum;
 import liquibase.change.DatabaseChange;
 import liquibase.database.Database;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.exception.ValidationErrors;
 import liquibase.ext.opensearch.statement.HttpRequestStatement;
+import liquibase.resource.Resource;
 import liquibase.servicelocator.PrioritizedService;
 import liquibase.statement.SqlStatement;
 import lombok.Getter;
@@ -11,6 +16,9 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.apache.hc.core5.http.ContentType;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 @DatabaseChange(name = "httpRequest",
@@ -26,19 +34,99 @@ public class HttpRequestChange extends AbstractChange {
     private String path;
     private String body;
 
+    /**
+     * File with the body of the request, as an alternative to {@link #body} for big bodies. The file is streamed into
+     * the request instead of being part of the changelog.
+     */
+    private String bodyFile;
+    private Boolean relativeToChangelogFile;
+
+    /**
+     * Comma separated IDs of changesets which must have been executed before this request. Only relevant if requests
+     * are executed in parallel (see {@link liquibase.ext.opensearch.configuration.OpenSearchConfiguration#EXECUTION_CONCURRENCY}).
+     * Needed whenever the changesets address the same data through different names, e.g. an index and an alias or
+     * data stream pointing at it, as only requests against the same index name are ordered on their own.
+     */
+    private String dependsOn;
+
+    /**
+     * Index (or comma separated indices or pattern) whose replicas and refreshes are disabled while the request is
+     * executed, e.g. for a big {@code _bulk} request.
+     */
+    private String fastIngestIndex;
+    private Integer forceMergeSegments;
+
+    /**
+     * Whether to send the body gzip compressed, regardless of the {@code compression} property of the connection.
+     */
+    private Boolean compress;
+
     @Override
     public String getConfirmationMessage() {
-        return String.format("executed the HTTP %s request against %s (with a body of size %d and content type %s)",
+        return String.format("executed the HTTP %s request against %s (with a body %s and content type %s)",
                 this.getMethod(),
                 this.getPath(),
-                Optional.ofNullable(this.getBody()).map(String::length).orElse(0),
+                this.getBodyFile() != null ? "from " + this.getBodyFile() : "of size " + Optional.ofNullable(this.getBody()).map(String::length).orElse(0),
                 Optional.ofNullable(this.getContentType()).orElse(ContentType.APPLICATION_JSON.getMimeType()));
     }
 
+    @Override
+    public ValidationErrors validate(final Database database) {
+        final var errors = super.validate(database);
+        if (this.getBody() != null && this.getBodyFile() != null) {
+            errors.addError("only one of body and bodyFile can be set");
+        }
+        if (this.getBody() == null && this.getBodyFile() == null) {
+            errors.addError("one of body and bodyFile must be set");
+        }
+        FastIngestValidation.validate(errors, this.getFastIngestIndex(), this.getForceMergeSegments());
+        return errors;
+    }
+
+    /**
+     * Whether the body is sent compressed doesn't change what the request does, thus {@link #compress} can be changed
+     * without changing the checksum.
+     */
+    @Override
+    public String[] getExcludedFieldFilters(final ChecksumVersion version) {
+        return new String[] {"compress"};
+    }
+
+    /**
+     * The content of {@link #bodyFile} is part of the checksum, it is read as a stream instead of loading it into
+     * memory.
+     */
+    @Override
+    public CheckSum generateCheckSum() {
+        final var checkSum = super.generateCheckSum();
+        if (this.getBodyFile() == null) {
+            return checkSum;
+        }
+        try (final var body = this.getBodyResource().openInputStream()) {
+            return CheckSum.compute("%s:%s".formatted(checkSum, CheckSum.compute(body, false)));
+        } catch (final IOException e) {
+            throw new UnexpectedLiquibaseException("could not read %s".formatted(this.getBodyFile()), e);
+        }
+    }
+
     @Override
     public SqlStatement[] generateStatements(final Database database) {
         return new SqlStatement[] {
-            new HttpRequestStatement(this.getMethod(), this.getContentType(), this.getPath(), this.getBody())
+            new HttpRequestStatement(this.getMethod(), this.getContentType(), this.getPath(), this.getBody(),
+                    this.getBodyFile(), this.getBodyResource(), this.getChangeSet(), this.getDependsOnIds(),
+                    this.getFastIngestIndex(), this.getForceMergeSegments(), this.getCompress())
         };
     }
+
+    private Resource getBodyResource() {
+        return this.getBodyFile() == null ? null : ChangeResources.resolve(this, this.getBodyFile(), this.getRelativeToChangelogFile());
+    }
+
+    private List<String> getDependsOnIds() {
+        return Optional.ofNullable(this.getDependsOn()).stream()
+                .flatMap(dependsOn -> Arrays.stream(dependsOn.split(",")))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .toList();
+    }
 }
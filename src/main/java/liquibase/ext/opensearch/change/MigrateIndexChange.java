@@ -0,0 +1,74 @@
+package liquibase.ext.opensearch.change;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.change.AbstractChange;
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.ext.opensearch.statement.MigrateIndexStatement;
+import liquibase.servicelocator.PrioritizedService;
+import liquibase.statement.SqlStatement;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Optional;
+
+@DatabaseChange(name = "migrateIndex",
+        description = "Migrate the index behind an alias to a new index with a reindex and move the alias once it is done",
+        priority = PrioritizedService.PRIORITY_DATABASE)
+@NoArgsConstructor
+@Getter
+@Setter
+public class MigrateIndexChange extends AbstractChange {
+
+    public static final String DEFAULT_SLICES = "auto";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String alias;
+    private String newIndex;
+    private String body;
+    private String timestampField;
+    private String script;
+    private String slices;
+    private Double requestsPerSecond;
+
+    @Override
+    public String getConfirmationMessage() {
+        return String.format("migrated alias %s to index %s", this.getAlias(), this.getNewIndex());
+    }
+
+    @Override
+    public ValidationErrors validate(final Database database) {
+        final var errors = super.validate(database);
+        errors.checkRequiredField("alias", this.getAlias());
+        errors.checkRequiredField("newIndex", this.getNewIndex());
+        if (this.getSlices() != null && !"auto".equals(this.getSlices()) && !this.getSlices().matches("[1-9][0-9]*")) {
+            errors.addError("slices must be auto or a positive number");
+        }
+        if (this.getRequestsPerSecond() != null && this.getRequestsPerSecond() <= 0 && this.getRequestsPerSecond() != -1) {
+            errors.addError("requestsPerSecond must be positive or -1");
+        }
+        if (this.getBody() != null) {
+            try {
+                if (!MAPPER.readTree(this.getBody()).isObject()) {
+                    errors.addError("body must be a JSON object");
+                }
+            } catch (final JsonProcessingException e) {
+                errors.addError("body must be a JSON object: %s".formatted(e.getOriginalMessage()));
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public SqlStatement[] generateStatements(final Database database) {
+        return new SqlStatement[] {
+            new MigrateIndexStatement(this.getAlias(), this.getNewIndex(), this.getBody(), this.getTimestampField(),
+                    this.getScript(), Optional.ofNullable(this.getSlices()).orElse(DEFAULT_SLICES),
+                    this.getRequestsPerSecond(), this.getChangeSet())
+        };
+    }
+}
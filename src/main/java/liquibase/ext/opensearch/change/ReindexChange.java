@@ -0,0 +1,68 @@
+package liquibase.ext.opensearch.change;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.change.AbstractChange;
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.ext.opensearch.statement.ReindexStatement;
+import liquibase.servicelocator.PrioritizedService;
+import liquibase.statement.SqlStatement;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@DatabaseChange(name = "reindex",
+        description = "Copy the documents of an index into another index with the reindex API, executed as a task",
+        priority = PrioritizedService.PRIORITY_DATABASE)
+@NoArgsConstructor
+@Getter
+@Setter
+public class ReindexChange extends AbstractChange {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String sourceIndex;
+    private String destIndex;
+    private String query;
+    private String script;
+    private String slices;
+    private Double requestsPerSecond;
+
+    @Override
+    public String getConfirmationMessage() {
+        return String.format("reindexed %s into %s", this.getSourceIndex(), this.getDestIndex());
+    }
+
+    @Override
+    public ValidationErrors validate(final Database database) {
+        final var errors = super.validate(database);
+        errors.checkRequiredField("sourceIndex", this.getSourceIndex());
+        errors.checkRequiredField("destIndex", this.getDestIndex());
+        if (this.getSlices() != null && !"auto".equals(this.getSlices()) && !this.getSlices().matches("[1-9][0-9]*")) {
+            errors.addError("slices must be auto or a positive number");
+        }
+        if (this.getRequestsPerSecond() != null && this.getRequestsPerSecond() <= 0 && this.getRequestsPerSecond() != -1) {
+            errors.addError("requestsPerSecond must be positive or -1");
+        }
+        if (this.getQuery() != null) {
+            try {
+                if (!MAPPER.readTree(this.getQuery()).isObject()) {
+                    errors.addError("query must be a JSON object");
+                }
+            } catch (final JsonProcessingException e) {
+                errors.addError("query must be a JSON object: %s".formatted(e.getOriginalMessage()));
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public SqlStatement[] generateStatements(final Database database) {
+        return new SqlStatement[] {
+            new ReindexStatement(this.getSourceIndex(), this.getDestIndex(), this.getQuery(), this.getScript(),
+                    this.getSlices(), this.getRequestsPerSecond(), this.getChangeSet())
+        };
+    }
+}
@@ -0,0 +1,230 @@
+package liquibase.ext.opensearch.changelog;
+
+import liquibase.ContextExpression;
+import liquibase.Labels;
+import liquibase.change.CheckSum;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.RanChangeSet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Local copy of the complete changelog history of one history index, stored in a compact binary file and read through a
+ * memory mapping.
+ * <p>
+ * The file starts with a header containing the end of the entries and the {@link State} of the history index the
+ * entries correspond to. A cached history is only used if its state matches the current state of the history index.
+ */
+class HistoryCache {
+
+    private static final int MAGIC = 0x4C42_4843; // "LBHC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int DATA_END_OFFSET = Integer.BYTES * 2;
+    private static final int HEADER_SIZE = DATA_END_OFFSET + Long.BYTES * 5;
+
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+    private static final int NULL_ORDER = Integer.MIN_VALUE;
+
+    /**
+     * Cheap to query summary of a history index: the number of entries and the highest {@code orderExecuted},
+     * {@code dateExecuted} and {@code _seq_no} (-1 if there are none). Every write of an entry gets a new
+     * {@code _seq_no}, thus updates which keep the other values (e.g. a tag or a checksum) change the state as well.
+     */
+    record State(long count, long maxOrderExecuted, long maxDateExecuted, long maxSeqNo) {
+
+        /**
+         * @return the state after {@code entries} have been added to a history with this state, the last of them with
+         * {@code maxSeqNo}.
+         */
+        State plus(final List<RanChangeSet> entries, final long maxSeqNo) {
+            long maxOrder = this.maxOrderExecuted;
+            long maxDate = this.maxDateExecuted;
+            for (final var entry : entries) {
+                if (entry.getOrderExecuted() != null) {
+                    maxOrder = Math.max(maxOrder, entry.getOrderExecuted());
+                }
+                if (entry.getDateExecuted() != null) {
+                    maxDate = Math.max(maxDate, entry.getDateExecuted().getTime());
+                }
+            }
+            return new State(this.count + entries.size(), maxOrder, maxDate, Math.max(this.maxSeqNo, maxSeqNo));
+        }
+    }
+
+    private final Path file;
+
+    HistoryCache(final Path directory, final String clusterUuid, final String indexName) {
+        this.file = directory.resolve(clusterUuid).resolve(indexName + ".history");
+    }
+
+    Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * @return the cached history if there is one for the given state.
+     * @throws IOException if the cache could not be read (e.g. because it is corrupt).
+     */
+    Optional<List<RanChangeSet>> read(final State expectedState) throws IOException {
+        if (!Files.isRegularFile(this.file)) {
+            return Optional.empty();
+        }
+
+        try (final var channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return Optional.empty();
+            }
+            final var dataEnd = buffer.getLong();
+            final var state = new State(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+            if (!state.equals(expectedState)) {
+                return Optional.empty();
+            }
+
+            // the file might contain more data than the header says if appending was interrupted, this is ignored
+            buffer.limit(Math.toIntExact(dataEnd));
+            final var history = new ArrayList<RanChangeSet>((int) Math.min(state.count(), buffer.remaining()));
+            for (long i = 0; i < state.count(); i++) {
+                history.add(readEntry(buffer));
+            }
+            return Optional.of(history);
+        } catch (final BufferUnderflowException | IllegalArgumentException | ArithmeticException | NegativeArraySizeException e) {
+            throw new IOException("corrupt history cache %s".formatted(this.file), e);
+        }
+    }
+
+    /**
+     * Replaces the cache with the given history.
+     */
+    void write(final List<RanChangeSet> history, final State state) throws IOException {
+        Files.createDirectories(this.file.getParent());
+        final var tempFile = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+        try {
+            try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.write(new byte[HEADER_SIZE - DATA_END_OFFSET]); // written once the size of the entries is known
+                for (final var entry : history) {
+                    writeEntry(out, entry);
+                }
+            }
+            try (final var channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                writeHeader(channel, channel.size(), state);
+            }
+            Files.move(tempFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Appends entries to the cache. The entries are written before the header, thus if this gets interrupted the
+     * header still describes the previous content.
+     */
+    void append(final List<RanChangeSet> entries, final State state) throws IOException {
+        try (final var channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final var dataEnd = ByteBuffer.allocate(Long.BYTES);
+            channel.read(dataEnd, DATA_END_OFFSET);
+            channel.position(dataEnd.flip().getLong());
+            final var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (final var entry : entries) {
+                writeEntry(out, entry);
+            }
+            out.flush();
+            channel.force(false);
+
+            writeHeader(channel, channel.position(), state);
+        }
+    }
+
+    void invalidate() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    private static void writeHeader(final FileChannel channel, final long dataEnd, final State state) throws IOException {
+        final var header = ByteBuffer.allocate(HEADER_SIZE - DATA_END_OFFSET)
+                .putLong(dataEnd)
+                .putLong(state.count())
+                .putLong(state.maxOrderExecuted())
+                .putLong(state.maxDateExecuted())
+                .putLong(state.maxSeqNo())
+                .flip();
+        channel.write(header, DATA_END_OFFSET);
+    }
+
+    private static void writeEntry(final DataOutputStream out, final RanChangeSet entry) throws IOException {
+        writeString(out, entry.getId());
+        writeString(out, entry.getChangeLog());
+        writeString(out, entry.getStoredChangeLog());
+        writeString(out, entry.getAuthor());
+        writeString(out, entry.getLastCheckSum() == null ? null : entry.getLastCheckSum().toString());
+        out.writeLong(entry.getDateExecuted() == null ? NULL_DATE : entry.getDateExecuted().getTime());
+        writeString(out, entry.getTag());
+        writeString(out, entry.getExecType() == null ? null : entry.getExecType().name());
+        writeString(out, entry.getDescription());
+        writeString(out, entry.getComments());
+        out.writeInt(entry.getOrderExecuted() == null ? NULL_ORDER : entry.getOrderExecuted());
+        writeString(out, entry.getContextExpression() == null ? null : entry.getContextExpression().toString());
+        writeString(out, entry.getLabels() == null ? null : entry.getLabels().toString());
+        writeString(out, entry.getDeploymentId());
+        writeString(out, entry.getLiquibaseVersion());
+    }
+
+    private static RanChangeSet readEntry(final ByteBuffer buffer) {
+        final var entry = new RanChangeSet();
+        entry.setId(readString(buffer));
+        entry.setChangeLog(readString(buffer));
+        entry.setStoredChangeLog(readString(buffer));
+        entry.setAuthor(readString(buffer));
+        entry.setLastCheckSum(Optional.ofNullable(readString(buffer)).map(CheckSum::parse).orElse(null));
+        final var dateExecuted = buffer.getLong();
+        entry.setDateExecuted(dateExecuted == NULL_DATE ? null : new Date(dateExecuted));
+        entry.setTag(readString(buffer));
+        entry.setExecType(Optional.ofNullable(readString(buffer)).map(ChangeSet.ExecType::valueOf).orElse(null));
+        entry.setDescription(readString(buffer));
+        entry.setComments(readString(buffer));
+        final var orderExecuted = buffer.getInt();
+        entry.setOrderExecuted(orderExecuted == NULL_ORDER ? null : orderExecuted);
+        entry.setContextExpression(Optional.ofNullable(readString(buffer)).map(ContextExpression::new).orElse(null));
+        entry.setLabels(Optional.ofNullable(readString(buffer)).map(Labels::new).orElse(null));
+        entry.setDeploymentId(readString(buffer));
+        entry.setLiquibaseVersion(readString(buffer));
+        return entry;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final var length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        final var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package liquibase.ext.opensearch.changelog;
+
+import liquibase.change.CheckSum;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Order independent digest of a set of history entries: their number, the highest {@code orderExecuted} (-1 if there
+ * is none) and the sum of the hashes of (changelog path, id, author, checksum) of all entries. As the hashes are
+ * summed up entries can be added in any order and the digest of the history can be compared to the digest of a
+ * changelog without loading the history.
+ * <p>
+ * It is stored as a document with the ID {@link #DOCUMENT_ID} in the history index.
+ */
+record HistoryDigest(long count, long maxOrderExecuted, long hash) {
+
+    static final String DOCUMENT_ID = "liquibase::history-digest";
+
+    static final HistoryDigest EMPTY = new HistoryDigest(0, -1, 0);
+
+    /**
+     * Document stored in the history index, the digest is wrapped in a single field which is not indexed.
+     */
+    record Document(HistoryDigest historyDigest) {
+    }
+
+    /**
+     * @return the digest after an entry with the given hash (see {@link #hashOf}) has been added.
+     */
+    HistoryDigest plus(final long entryHash, final Integer orderExecuted) {
+        return new HistoryDigest(this.count + 1,
+                orderExecuted == null ? this.maxOrderExecuted : Math.max(this.maxOrderExecuted, orderExecuted),
+                this.hash + entryHash); // overflows intentionally
+    }
+
+    /**
+     * @return whether both digests cover the same entries. {@code maxOrderExecuted} is ignored as it is not known for
+     * the changesets of a changelog.
+     */
+    boolean coversSameEntries(final HistoryDigest other) {
+        return other != null && this.count == other.count && this.hash == other.hash;
+    }
+
+    /**
+     * @param normalizedChangeLog the changelog path as normalized for matching changesets to history entries.
+     * @return the hash of a history entry, matching is case-insensitive like {@link liquibase.changelog.RanChangeSet#isSameAs}.
+     */
+    static long hashOf(final String normalizedChangeLog, final String id, final String author, final CheckSum checkSum) {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (final var part : new String[]{toLowerCase(normalizedChangeLog), toLowerCase(id), toLowerCase(author)}) {
+            messageDigest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+        }
+        messageDigest.update(String.valueOf(checkSum).getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(messageDigest.digest()).getLong();
+    }
+
+    private static String toLowerCase(final String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,39 +1,198 @@
 package liquibase.ext.opensearch.changelog;
 
 import liquibase.ChecksumVersion;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
 import liquibase.Scope;
 import liquibase.change.CheckSum;
 import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
 import liquibase.changelog.RanChangeSet;
 import liquibase.database.Database;
 import liquibase.exception.DatabaseException;
+import liquibase.exception.LockException;
+import liquibase.executor.ExecutorService;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
 import liquibase.ext.opensearch.database.OpenSearchConnection;
+import liquibase.ext.opensearch.database.OpenSearchIndexDefinition;
 import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import liquibase.ext.opensearch.executor.OpenSearchExecutor;
+import liquibase.ext.opensearch.lockservice.OpenSearchLockService;
+import liquibase.lockservice.LockServiceFactory;
 import liquibase.logging.Logger;
 import liquibase.nosql.changelog.AbstractNoSqlHistoryService;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import org.opensearch.client.json.JsonData;
+import org.apache.hc.core5.http.HttpStatus;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.opensearch._types.BuiltinScriptLanguage;
 import org.opensearch.client.opensearch._types.FieldValue;
-import org.opensearch.client.opensearch._types.Refresh;
+import org.opensearch.client.opensearch._types.OpType;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.Result;
 import org.opensearch.client.opensearch._types.ScriptLanguage;
 import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch._types.Time;
+import org.opensearch.client.opensearch._types.mapping.FieldType;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.IndexResponse;
 import org.opensearch.client.opensearch.core.SearchRequest;
-import org.opensearch.client.opensearch.core.search.Hit;
-import org.opensearch.client.opensearch.indices.PutMappingRequest;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.search.Pit;
+import org.opensearch.client.transport.httpclient5.ResponseException;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class OpenSearchHistoryService extends AbstractNoSqlHistoryService<OpenSearchLiquibaseDatabase> {
 
+    /**
+     * Order in which the history is returned, entries without {@code orderExecuted} (written by older versions) come first.
+     */
+    private static final Comparator<RanChangeSet> HISTORY_ORDER = Comparator
+            .comparing(RanChangeSet::getOrderExecuted, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(RanChangeSet::getDateExecuted, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /**
+     * Matches all documents in the history index except for the {@link HistoryDigest} document.
+     */
+    private static final Query HISTORY_ENTRIES = Query.of(q -> q.bool(b -> b
+            .mustNot(m -> m.ids(i -> i.values(HistoryDigest.DOCUMENT_ID)))));
+
+    /**
+     * Mapping of the history index, the properties must match RanChangeSet & CheckSum & ContextExpression (validated by
+     * matching tests).
+     */
+    private static final OpenSearchIndexDefinition INDEX_DEFINITION = new OpenSearchIndexDefinition(m -> m
+            .properties("id", p -> p.keyword(k -> k))
+            .properties("changeLog", p -> p.keyword(k -> k))
+            .properties("storedChangeLog", p -> p.keyword(k -> k))
+            // the keyword is only used as a tiebreaker when sorting the history
+            .properties("author", p -> p.text(t -> t.fields("keyword", f -> f.keyword(k -> k))))
+            .properties("lastCheckSum", p -> p.object(o -> {
+                o.properties("version", p2 -> p2.integer(i -> i));
+                o.properties("storedCheckSum", p2 -> p2.keyword(k -> k));
+                return o;
+            }))
+            .properties("dateExecuted", p -> p.date(d -> d))
+            .properties("tag", p -> p.text(t -> t))
+            .properties("execType", p -> p.keyword(k -> k))
+            .properties("description", p -> p.text(t -> t))
+            .properties("comments", p -> p.text(t -> t))
+            .properties("orderExecuted", p -> p.integer(i -> i))
+            .properties("contextExpression", p -> p.object(o -> {
+                o.properties("contexts", p2 -> p2.keyword(k -> k));
+                o.properties("originalString", p2 -> p2.text(t -> t));
+                return o;
+            }))
+            .properties("labels", p -> p.text(t -> t))
+            .properties("deploymentId", p -> p.text(t -> t))
+            .properties("liquibaseVersion", p -> p.text(t -> t))
+            // only used by the HistoryDigest document
+            .properties("historyDigest", p -> p.object(o -> o.enabled(false))));
+
     private final Logger log = Scope.getCurrentScope().getLog(getClass());
 
+    private OpenSearchIndexDefinition.State indexState;
+
+    /**
+     * History entries which have been recorded but not yet written (only used with {@link OpenSearchConfiguration#HISTORY_WRITE_BEHIND}).
+     */
+    private final List<RanChangeSet> pendingRanChangeSets = new ArrayList<>();
+
+    private Instant firstPendingAt;
+
+    /**
+     * History entries of changesets executed in parallel which have completed but have not been buffered yet, in the
+     * order in which they completed (see {@link OpenSearchConfiguration#EXECUTION_CONCURRENCY}).
+     */
+    private final Queue<RanChangeSet> completedRanChangeSets = new ConcurrentLinkedQueue<>();
+
+    /**
+     * {@code orderExecuted} values handed out to changesets which are executed in parallel. They are assigned to the
+     * history entries in ascending order as the changesets complete, thus {@code orderExecuted} reflects the order of
+     * completion.
+     */
+    private final Queue<Integer> parallelOrderExecuted = new PriorityQueue<>();
+
+    /**
+     * Whether documents have been written since the history index was last refreshed. Writes don't wait for a refresh,
+     * thus searches only see them after an explicit refresh.
+     */
+    private boolean refreshPending;
+
+    /**
+     * Whether this service already refreshed the history index. A run which got killed before its final refresh might
+     * have left unrefreshed entries behind, these must be visible to the first search as well.
+     */
+    private boolean refreshed;
+
+    /**
+     * ID of the last history entry written by this service, used to tag it without searching for it.
+     */
+    private String lastRanChangeSetId;
+
+    /**
+     * Changelog of the current command, used to fetch only its history entries (see {@link OpenSearchConfiguration#HISTORY_FETCH_MODE}).
+     */
+    private DatabaseChangeLog databaseChangeLog;
+
+    private boolean fullHistoryRequired;
+
+    private boolean targetedHistoryLoaded;
+
+    /**
+     * Whether the history has been derived from the changelog because it matches the {@link HistoryDigest}.
+     */
+    private boolean digestHistoryLoaded;
+
+    /**
+     * State of the history index the local history cache corresponds to, {@code null} if it is unknown.
+     */
+    private HistoryCache.State historyCacheState;
+
+    /**
+     * History entries which have been created since the local history cache and the history digest were last updated.
+     */
+    private final List<RanChangeSet> createdRanChangeSets = new ArrayList<>();
+
+    /**
+     * Highest {@code _seq_no} of the {@link #createdRanChangeSets}, -1 if there are none.
+     */
+    private long createdMaxSeqNo = -1;
+
+    /**
+     * Whether existing history entries have been modified or removed since the local history cache was read or written.
+     */
+    private boolean historyCacheOutdated;
+
+    private boolean historyReadFromCache;
+
+    /**
+     * The {@link HistoryDigest} document as last read or written by this service with its {@code _seq_no} and
+     * {@code _primary_term}. {@code null} if it is unknown or doesn't exist.
+     */
+    private HistoryDigest historyDigest;
+    private Long historyDigestSeqNo;
+    private Long historyDigestPrimaryTerm;
+
     @Override
     protected Logger getLogger() {
         return log;
@@ -47,55 +206,38 @@ public class OpenSearchHistoryService extends AbstractNoSqlHistoryService<OpenSe
     @Override
     protected boolean existsRepository() throws DatabaseException {
         try {
-            return this.getOpenSearchClient().indices().exists(r -> r.index(this.getDatabaseChangeLogTableName())).value();
+            this.indexState = INDEX_DEFINITION.getState(this.getOpenSearchClient(), this.getDatabaseChangeLogTableName());
+            return this.indexState != OpenSearchIndexDefinition.State.MISSING;
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
     }
 
+    /**
+     * Creates the index with its mapping, see {@link OpenSearchIndexDefinition}.
+     */
     @Override
     protected void createRepository() throws DatabaseException {
-        // note: the mapping will be created in adjustRepository
-
         try {
-            this.getOpenSearchClient().indices().create(r -> r.index(this.getDatabaseChangeLogTableName()));
+            this.indexState = INDEX_DEFINITION.create(this.getOpenSearchClient(), this.getDatabaseChangeLogTableName())
+                    ? OpenSearchIndexDefinition.State.UP_TO_DATE
+                    : OpenSearchIndexDefinition.State.OUTDATED;
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
     }
 
+    /**
+     * Updates the mapping of an existing index, unless it has already been created with the current mapping.
+     */
     @Override
     protected void adjustRepository() throws DatabaseException {
-        // properties must match RanChangeSet & CheckSum & ContextExpression (validated by matching tests)
-        final var request = new PutMappingRequest.Builder()
-                .index(this.getDatabaseChangeLogTableName())
-                .properties("id", p -> p.keyword(k -> k))
-                .properties("changeLog", p -> p.keyword(k -> k))
-                .properties("storedChangeLog", p -> p.keyword(k -> k))
-                .properties("author", p -> p.text(t -> t))
-                .properties("lastCheckSum", p -> p.object(o -> {
-                    o.properties("version", p2 -> p2.integer(i -> i));
-                    o.properties("storedCheckSum", p2 -> p2.keyword(k -> k));
-                    return o;
-                }))
-                .properties("dateExecuted", p -> p.date(d -> d))
-                .properties("tag", p -> p.text(t -> t))
-                .properties("execType", p -> p.keyword(k -> k))
-                .properties("description", p -> p.text(t -> t))
-                .properties("comments", p -> p.text(t -> t))
-                .properties("orderExecuted", p -> p.integer(i -> i))
-                .properties("contextExpression", p -> p.object(o -> {
-                    o.properties("contexts", p2 -> p2.keyword(k -> k));
-                    o.properties("originalString", p2 -> p2.text(t -> t));
-                    return o;
-                }))
-                .properties("labels", p -> p.text(t -> t))
-                .properties("deploymentId", p -> p.text(t -> t))
-                .properties("liquibaseVersion", p -> p.text(t -> t))
-                .build();
-
+        if (this.indexState == OpenSearchIndexDefinition.State.UP_TO_DATE) {
+            return;
+        }
         try {
-            this.getOpenSearchClient().indices().putMapping(request);
+            INDEX_DEFINITION.putMapping(this.getOpenSearchClient(), this.getDatabaseChangeLogTableName());
+            this.indexState = OpenSearchIndexDefinition.State.UP_TO_DATE;
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
@@ -103,6 +245,16 @@ public class OpenSearchHistoryService extends AbstractNoSqlHistoryService<OpenSe
 
     @Override
     protected void dropRepository() throws DatabaseException {
+        this.indexState = null;
+        // the history is gone, there's no point in writing the buffered entries
+        this.pendingRanChangeSets.clear();
+        this.refreshPending = false;
+        this.refreshed = false;
+        this.lastRanChangeSetId = null;
+        this.createdRanChangeSets.clear();
+        this.createdMaxSeqNo = -1;
+        this.historyCacheOutdated = true;
+        this.forgetHistoryDigest();
         try {
             this.getOpenSearchClient().indices().delete(r -> r.index(this.getDatabaseChangeLogTableName()));
         } catch (final IOException e) {
@@ -110,21 +262,508 @@ public class OpenSearchHistoryService extends AbstractNoSqlHistoryService<OpenSe
         }
     }
 
+    /**
+     * Liquibase calls this with the changelog of the current command before it reads the history.
+     */
+    @Override
+    public void upgradeChecksums(final DatabaseChangeLog databaseChangeLog, final Contexts contexts, final LabelExpression labels) throws DatabaseException {
+        this.databaseChangeLog = databaseChangeLog;
+        super.upgradeChecksums(databaseChangeLog, contexts, labels);
+    }
+
+    /**
+     * @return the changelog of the current command, {@code null} if liquibase hasn't passed one (yet).
+     */
+    public DatabaseChangeLog getDatabaseChangeLog() {
+        return this.databaseChangeLog;
+    }
+
+    /**
+     * Ensures that the complete history is loaded even if {@link OpenSearchConfiguration#HISTORY_FETCH_MODE} is
+     * {@code TARGETED}, for commands which also need the history entries which are not part of the changelog. Applies
+     * until the command has completed (see {@link #reset()}).
+     */
+    public void requireFullHistory() {
+        this.fullHistoryRequired = true;
+        if (this.targetedHistoryLoaded || this.digestHistoryLoaded) {
+            this.resetHistory();
+        }
+    }
+
+    /**
+     * @return whether the current command requires the complete history, see {@link #requireFullHistory()}.
+     */
+    public boolean isFullHistoryRequired() {
+        return this.fullHistoryRequired;
+    }
+
     @Override
     protected List<RanChangeSet> queryRanChangeSets() throws DatabaseException {
+        this.digestHistoryLoaded = false;
+        final boolean historyDigestEnabled = OpenSearchConfiguration.HISTORY_DIGEST.getCurrentValue();
+        if (historyDigestEnabled) {
+            this.readHistoryDigest();
+            // without the lock this is the up-to-date check, the history is read again once the lock has been acquired
+            if (this.historyDigest != null && this.databaseChangeLog != null && !this.fullHistoryRequired && !this.hasChangeLogLock()) {
+                final var ranChangeSetsOfChangeLog = this.ranChangeSetsOfChangeLog();
+                if (this.computeHistoryDigest(ranChangeSetsOfChangeLog).coversSameEntries(this.historyDigest)) {
+                    getLogger().fine("the changelog matches the changelog history digest, skipping reading the history");
+                    this.digestHistoryLoaded = true;
+                    return ranChangeSetsOfChangeLog;
+                }
+            }
+        }
+
+        this.targetedHistoryLoaded = OpenSearchConfiguration.HISTORY_FETCH_MODE.getCurrentValue() == OpenSearchConfiguration.HistoryFetchMode.TARGETED
+                && this.databaseChangeLog != null
+                && !this.fullHistoryRequired;
+        if (this.targetedHistoryLoaded) {
+            return this.queryRanChangeSetsOfChangeLog();
+        }
+
+        if (historyDigestEnabled) {
+            // the history must include everything written before the digest has been read, see rebuildHistoryDigestIfOutdated
+            this.refreshed = false;
+        }
+        final var history = this.queryAllRanChangeSets();
+        if (historyDigestEnabled && !this.historyReadFromCache && this.createdRanChangeSets.isEmpty()) {
+            this.rebuildHistoryDigestIfOutdated(history);
+        }
+        return history;
+    }
+
+    /**
+     * Fetches the history entries of the changesets in {@link #databaseChangeLog} by their ids using batched
+     * {@code _mget} requests. These are realtime, thus no refresh is needed.
+     */
+    private List<RanChangeSet> queryRanChangeSetsOfChangeLog() throws DatabaseException {
+        this.writePendingRanChangeSets();
+        // at least 1, the value handler of the setting rejects anything else
+        final int batchSize = OpenSearchConfiguration.HISTORY_PAGE_SIZE.getCurrentValue();
+
+        // same ids as used by markChangeSetRun (see RanChangeSet#toString) plus the ones used up to and including 0.2.0
+        final var ids = new ArrayList<>(this.databaseChangeLog.getChangeSets().stream()
+                .flatMap(changeSet -> Stream.of(
+                        "%s::%s::%s".formatted(DatabaseChangeLog.normalizePath(changeSet.getFilePath()), changeSet.getId(), changeSet.getAuthor()),
+                        changeSet.getId()))
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+
+        final var result = new ArrayList<RanChangeSet>(); // do not use toList as the list must be mutable!
+        try {
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                final var batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                final var response = this.getOpenSearchClient().mget(r -> r
+                                .index(this.getDatabaseChangeLogTableName())
+                                .ids(batch)
+                                // only needed for displaying the history which is not done with a targeted history
+                                .sourceExcludes("description", "comments"),
+                        RanChangeSet.class);
+                for (final var item : response.docs()) {
+                    if (item.isFailure()) {
+                        throw new DatabaseException("failed to read the changelog history entry %s: %s".formatted(item.failure().id(), item.failure().error().reason()));
+                    }
+                    if (item.result().found()) {
+                        result.add(item.result().source());
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+
+        result.sort(HISTORY_ORDER);
+        getLogger().fine("fetched %d changelog history entries for %d changesets".formatted(result.size(), this.databaseChangeLog.getChangeSets().size()));
+        return result;
+    }
+
+    /**
+     * Loads the complete history using a point in time (PIT) and {@code search_after}, sorted by {@code orderExecuted}.
+     * A plain search would only return the first page of hits (10 by default) and thus silently truncate the history.
+     * If {@link OpenSearchConfiguration#HISTORY_SLICES} is greater than 1 the PIT is split into slices which are
+     * fetched in parallel and merged afterwards.
+     * <p>
+     * If {@link OpenSearchConfiguration#HISTORY_CACHE_DIRECTORY} is set the local history cache is used instead if it
+     * still matches the {@link HistoryCache.State} of the index, otherwise it is replaced.
+     */
+    private List<RanChangeSet> queryAllRanChangeSets() throws DatabaseException {
+        this.historyReadFromCache = false;
+        final var historyCache = this.getHistoryCache();
+        if (historyCache.isEmpty()) {
+            return this.queryAllRanChangeSetsFromIndex();
+        }
+
+        this.prepareSearch();
+        final var state = this.queryHistoryState();
+        try {
+            final var cachedHistory = historyCache.get().read(state);
+            if (cachedHistory.isPresent()) {
+                getLogger().fine("using the cached changelog history from %s".formatted(historyCache.get().getFile()));
+                this.historyCacheState = state;
+                this.historyReadFromCache = true;
+                return cachedHistory.get();
+            }
+        } catch (final IOException e) {
+            getLogger().warning("failed to read the changelog history cache, reading the history from the index", e);
+        }
+
+        final var history = this.queryAllRanChangeSetsFromIndex();
+        try {
+            historyCache.get().write(history, state);
+            this.historyCacheState = state;
+        } catch (final IOException e) {
+            getLogger().warning("failed to write the changelog history cache", e);
+            this.historyCacheState = null;
+        }
+        return history;
+    }
+
+    /**
+     * Loads the complete history from the index, see {@link #queryAllRanChangeSets()}.
+     */
+    private List<RanChangeSet> queryAllRanChangeSetsFromIndex() throws DatabaseException {
+        this.prepareSearch();
+        final int pageSize = OpenSearchConfiguration.HISTORY_PAGE_SIZE.getCurrentValue();
+        final int slices = OpenSearchConfiguration.HISTORY_SLICES.getCurrentValue();
+        final String keepAlive = OpenSearchConfiguration.HISTORY_PIT_KEEP_ALIVE.getCurrentValue();
+
+        final String pitId;
+        try {
+            pitId = this.getOpenSearchClient()
+                    .createPit(r -> r.index(this.getDatabaseChangeLogTableName()).keepAlive(Time.of(t -> t.time(keepAlive))))
+                    .pitId();
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+
+        try {
+            if (slices <= 1) {
+                return this.queryRanChangeSetsSlice(pitId, keepAlive, pageSize, null, null);
+            }
+            return this.queryRanChangeSetsSliced(pitId, keepAlive, pageSize, slices);
+        } finally {
+            try {
+                this.getOpenSearchClient().deletePit(r -> r.pitId(pitId));
+            } catch (final IOException | OpenSearchException e) {
+                // the PIT will expire on its own after the keep-alive, no need to fail because of this
+                getLogger().warning("failed to delete the point in time used to read the changelog history", e);
+            }
+        }
+    }
+
+    private List<RanChangeSet> queryRanChangeSetsSliced(final String pitId, final String keepAlive, final int pageSize, final int slices) throws DatabaseException {
+        final var executorService = Executors.newFixedThreadPool(Math.min(slices, Runtime.getRuntime().availableProcessors()));
+        try {
+            final var futures = new ArrayList<Future<List<RanChangeSet>>>(slices);
+            for (int slice = 0; slice < slices; slice++) {
+                final int sliceId = slice;
+                futures.add(executorService.submit(() -> this.queryRanChangeSetsSlice(pitId, keepAlive, pageSize, sliceId, slices)));
+            }
+
+            final var result = new ArrayList<RanChangeSet>();
+            for (final var future : futures) {
+                result.addAll(future.get());
+            }
+            // each slice is sorted on its own, thus the merged result has to be sorted again
+            result.sort(HISTORY_ORDER);
+            return result;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof DatabaseException databaseException) {
+                throw databaseException;
+            }
+            throw new DatabaseException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Pages through (a slice of) the PIT and appends every page to the result as soon as it has been received.
+     *
+     * @param sliceId the slice to fetch or {@code null} if the history is not sliced.
+     * @param slices the total number of slices or {@code null} if the history is not sliced.
+     */
+    private List<RanChangeSet> queryRanChangeSetsSlice(final String pitId, final String keepAlive, final int pageSize,
+                                                       final Integer sliceId, final Integer slices) throws DatabaseException {
+        final var result = new ArrayList<RanChangeSet>(); // do not use toList as the list must be mutable!
+        List<FieldValue> searchAfter = null;
+        try {
+            while (true) {
+                final var requestBuilder = new SearchRequest.Builder()
+                        .pit(new Pit.Builder().id(pitId).keepAlive(keepAlive).build())
+                        .query(HISTORY_ENTRIES)
+                        .size(pageSize)
+                        .trackTotalHits(t -> t.enabled(false))
+                        // entries written before orderExecuted was stored don't have it, these are the oldest ones.
+                        // changeLog, id and author (which make up the _id) are only used as tiebreakers to get a total
+                        // order which is needed by search_after. sorting on _id itself would need fielddata for it.
+                        .sort(so -> so.field(f -> f.field("orderExecuted").order(SortOrder.Asc).missing(FieldValue.of("_first"))))
+                        .sort(so -> so.field(f -> f.field("dateExecuted").order(SortOrder.Asc)))
+                        .sort(so -> so.field(f -> f.field("changeLog").order(SortOrder.Asc)))
+                        .sort(so -> so.field(f -> f.field("id").order(SortOrder.Asc)))
+                        .sort(so -> so.field(f -> f.field("author.keyword").order(SortOrder.Asc).unmappedType(FieldType.Keyword)));
+                if (sliceId != null) {
+                    requestBuilder.slice(s -> s.id(sliceId).max(slices));
+                }
+                if (searchAfter != null) {
+                    requestBuilder.searchAfter(searchAfter);
+                }
+
+                final var hits = this.getOpenSearchClient().search(requestBuilder.build(), RanChangeSet.class).hits().hits();
+                for (final var hit : hits) {
+                    result.add(hit.source());
+                }
+
+                if (hits.size() < pageSize) {
+                    return result;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+            }
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    private Optional<HistoryCache> getHistoryCache() throws DatabaseException {
+        final var directory = OpenSearchConfiguration.HISTORY_CACHE_DIRECTORY.getCurrentValue();
+        if (directory == null || directory.isBlank()) {
+            return Optional.empty();
+        }
+        final var connection = (OpenSearchConnection) this.getNoSqlDatabase().getConnection();
+        return Optional.of(new HistoryCache(Path.of(directory), connection.getClusterUuid(), this.getDatabaseChangeLogTableName()));
+    }
+
+    private HistoryCache.State queryHistoryState() throws DatabaseException {
+        final var request = new SearchRequest.Builder()
+                .index(this.getDatabaseChangeLogTableName())
+                .query(HISTORY_ENTRIES)
+                .size(0)
+                .trackTotalHits(t -> t.enabled(true))
+                .aggregations("maxOrderExecuted", a -> a.max(m -> m.field("orderExecuted")))
+                .aggregations("maxDateExecuted", a -> a.max(m -> m.field("dateExecuted")))
+                .aggregations("maxSeqNo", a -> a.max(m -> m.field("_seq_no")))
+                .build();
+        try {
+            final var response = this.getOpenSearchClient().search(request, RanChangeSet.class);
+            final var maxOrderExecuted = Optional.ofNullable(response.aggregations().get("maxOrderExecuted").max().value());
+            final var maxDateExecuted = Optional.ofNullable(response.aggregations().get("maxDateExecuted").max().value());
+            final var maxSeqNo = Optional.ofNullable(response.aggregations().get("maxSeqNo").max().value());
+            return new HistoryCache.State(response.hits().total().value(),
+                    maxOrderExecuted.map(Double::longValue).orElse(-1L),
+                    maxDateExecuted.map(Double::longValue).orElse(-1L),
+                    maxSeqNo.map(Double::longValue).orElse(-1L));
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    private void recordHistoryWrite(final RanChangeSet ranChangeSet, final boolean created, final long seqNo) {
+        if (created) {
+            this.createdRanChangeSets.add(ranChangeSet);
+            this.createdMaxSeqNo = Math.max(this.createdMaxSeqNo, seqNo);
+        } else {
+            // an existing entry has been replaced (e.g. a changeset which runs on change)
+            this.historyCacheOutdated = true;
+        }
+    }
+
+    /**
+     * Appends the history entries created by this service to the local history cache or removes the cache if existing
+     * entries have been modified. Failing to do so is not an error, the cache will just not be used on the next run.
+     * <p>
+     * The entries are only appended if the state of the (refreshed) history index is exactly the cached state plus
+     * these entries, i.e. nobody else has written to the history in the meantime.
+     */
+    private void updateHistoryCache() throws DatabaseException {
+        if (!this.historyCacheOutdated && this.createdRanChangeSets.isEmpty()) {
+            return;
+        }
+
+        try {
+            final var historyCache = this.getHistoryCache();
+            if (historyCache.isPresent()) {
+                if (this.historyCacheOutdated || this.historyCacheState == null) {
+                    historyCache.get().invalidate();
+                    this.historyCacheState = null;
+                } else {
+                    final var state = this.historyCacheState.plus(this.createdRanChangeSets, this.createdMaxSeqNo);
+                    if (state.equals(this.queryHistoryState())) {
+                        historyCache.get().append(this.createdRanChangeSets, state);
+                        this.historyCacheState = state;
+                    } else {
+                        getLogger().fine("the changelog history has been modified concurrently, discarding the history cache");
+                        historyCache.get().invalidate();
+                        this.historyCacheState = null;
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            getLogger().warning("failed to update the changelog history cache", e);
+            this.historyCacheState = null;
+        } finally {
+            this.createdRanChangeSets.clear();
+            this.createdMaxSeqNo = -1;
+            this.historyCacheOutdated = false;
+        }
+    }
+
+    private boolean hasChangeLogLock() {
+        return LockServiceFactory.getInstance().getLockService(this.getNoSqlDatabase()).hasChangeLogLock();
+    }
+
+    /**
+     * History entries must not be written by a process whose lease on the lock has been lost, see
+     * {@link OpenSearchLockService#checkLease()}.
+     */
+    private void checkLockLease() throws DatabaseException {
+        if (LockServiceFactory.getInstance().getLockService(this.getNoSqlDatabase()) instanceof OpenSearchLockService lockService) {
+            try {
+                lockService.checkLease();
+            } catch (final LockException e) {
+                throw new DatabaseException(e);
+            }
+        }
+    }
+
+    /**
+     * @return history entries for all changesets of the changelog as if they all had been executed. Only the fields
+     * covered by the {@link HistoryDigest} are known.
+     */
+    private List<RanChangeSet> ranChangeSetsOfChangeLog() {
+        final var result = new ArrayList<RanChangeSet>(); // do not use toList as the list must be mutable!
+        for (final var changeSet : this.databaseChangeLog.getChangeSets()) {
+            final var ranChangeSet = new RanChangeSet(changeSet, ChangeSet.ExecType.EXECUTED, null, null);
+            ranChangeSet.setLastCheckSum(changeSet.generateCheckSum(ChecksumVersion.latest()));
+            result.add(ranChangeSet);
+        }
+        return result;
+    }
+
+    private HistoryDigest computeHistoryDigest(final List<RanChangeSet> ranChangeSets) {
+        var digest = HistoryDigest.EMPTY;
+        for (final var ranChangeSet : ranChangeSets) {
+            digest = digest.plus(this.hashOf(ranChangeSet), ranChangeSet.getOrderExecuted());
+        }
+        return digest;
+    }
+
+    private long hashOf(final RanChangeSet ranChangeSet) {
+        return HistoryDigest.hashOf(this.normalizeChangeLogPath(ranChangeSet.getChangeLog()), ranChangeSet.getId(),
+                ranChangeSet.getAuthor(), ranChangeSet.getLastCheckSum());
+    }
+
+    /**
+     * Reads the history digest by its id, which is realtime.
+     */
+    private void readHistoryDigest() throws DatabaseException {
         try {
             final var response = this.getOpenSearchClient()
-                    .search(s -> s.index(this.getDatabaseChangeLogTableName()), RanChangeSet.class);
-            return response.hits().hits().stream()
-                    .map(Hit::source)
-                    .collect(Collectors.toCollection(ArrayList::new)); // do not use toList directly as it returns an immutable list!
+                    .get(r -> r.index(this.getDatabaseChangeLogTableName()).id(HistoryDigest.DOCUMENT_ID), HistoryDigest.Document.class);
+            this.forgetHistoryDigest();
+            if (response.found()) {
+                // the seq_no is also kept for an unusable document so that it can be replaced
+                this.historyDigest = Optional.ofNullable(response.source()).map(HistoryDigest.Document::historyDigest).orElse(null);
+                this.historyDigestSeqNo = response.seqNo();
+                this.historyDigestPrimaryTerm = response.primaryTerm();
+            }
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
     }
 
+    /**
+     * Replaces the history digest if it doesn't match the complete history, e.g. because it doesn't exist yet, because
+     * the history has been modified or because a run got killed before it updated the digest.
+     * <p>
+     * This doesn't need the lock: the digest is only replaced if it has not been written since it has been read (before
+     * the history was read), and every modification of existing history entries is followed by writing the digest
+     * (see {@link #invalidateHistoryDigest()}). Thus a digest computed from a history which misses a modification is
+     * either rejected or overwritten right away.
+     */
+    private void rebuildHistoryDigestIfOutdated(final List<RanChangeSet> history) {
+        final var digest = this.computeHistoryDigest(history);
+        if (!digest.equals(this.historyDigest)) {
+            getLogger().fine("rebuilding the changelog history digest");
+            this.writeHistoryDigest(digest);
+        }
+    }
+
+    /**
+     * Adds the history entries created by this service to the history digest. If the digest is unknown (e.g. because
+     * it has been removed) it is left alone, it will be rebuilt the next time the complete history is read.
+     */
+    private void updateHistoryDigest() {
+        if (this.historyDigest == null || this.createdRanChangeSets.isEmpty()) {
+            return;
+        }
+        var digest = this.historyDigest;
+        for (final var ranChangeSet : this.createdRanChangeSets) {
+            digest = digest.plus(this.hashOf(ranChangeSet), ranChangeSet.getOrderExecuted());
+        }
+        this.writeHistoryDigest(digest);
+    }
+
+    /**
+     * Writes the history digest if it has not been modified since it has been read (or created if it didn't exist).
+     * Failing to do so is not an error as the digest is only ever written after the history entries it covers, thus
+     * an outdated digest at worst doesn't match the changelog.
+     */
+    private void writeHistoryDigest(final HistoryDigest digest) {
+        try {
+            final var response = this.getOpenSearchClient()
+                    .index(r -> {
+                        r.index(this.getDatabaseChangeLogTableName())
+                                .id(HistoryDigest.DOCUMENT_ID)
+                                .document(new HistoryDigest.Document(digest));
+                        if (this.historyDigestSeqNo == null) {
+                            r.opType(OpType.Create);
+                        } else {
+                            r.ifSeqNo(this.historyDigestSeqNo).ifPrimaryTerm(this.historyDigestPrimaryTerm);
+                        }
+                        return r;
+                    });
+            this.historyDigest = digest;
+            this.historyDigestSeqNo = response.seqNo();
+            this.historyDigestPrimaryTerm = response.primaryTerm();
+        } catch (final IOException | OpenSearchException e) {
+            getLogger().warning("failed to write the changelog history digest", e);
+            this.forgetHistoryDigest();
+        }
+    }
+
+    /**
+     * Replaces the history digest with an empty document after existing history entries have been modified or removed,
+     * it will be rebuilt the next time the complete history is read. Unlike deleting it this also makes concurrent
+     * attempts to rebuild it from the unmodified history fail.
+     */
+    private void invalidateHistoryDigest() throws DatabaseException {
+        if (!OpenSearchConfiguration.HISTORY_DIGEST.getCurrentValue()) {
+            return;
+        }
+        try {
+            final var response = this.getOpenSearchClient()
+                    .index(r -> r.index(this.getDatabaseChangeLogTableName())
+                            .id(HistoryDigest.DOCUMENT_ID)
+                            .document(new HistoryDigest.Document(null)));
+            this.historyDigest = null;
+            this.historyDigestSeqNo = response.seqNo();
+            this.historyDigestPrimaryTerm = response.primaryTerm();
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    private void forgetHistoryDigest() {
+        this.historyDigest = null;
+        this.historyDigestSeqNo = null;
+        this.historyDigestPrimaryTerm = null;
+    }
+
     @Override
     protected int generateNextSequence() throws DatabaseException {
+        this.prepareSearch();
         final var aggregationName = "max";
         final var request = new SearchRequest.Builder()
                 .index(this.getDatabaseChangeLogTableName())
@@ -142,44 +781,279 @@ public class OpenSearchHistoryService extends AbstractNoSqlHistoryService<OpenSe
     @Override
     protected void markChangeSetRun(final ChangeSet changeSet, final ChangeSet.ExecType execType, final Integer nextSequenceValue) throws DatabaseException {
         final var ranChangeSet = new RanChangeSet(changeSet, execType, null, null);
+        ranChangeSet.setOrderExecuted(nextSequenceValue);
 
+        final var executor = this.getOpenSearchExecutor();
+        if (executor.isPresent()) {
+            // changesets with runInTransaction: false aren't committed
+            executor.get().flushCoalescedRequests();
+        }
+
+        this.bufferCompletedRanChangeSets();
+        final var parallelCompletion = executor.flatMap(openSearchExecutor -> openSearchExecutor.getParallelCompletion(changeSet));
+        if (parallelCompletion.isPresent()) {
+            // the entry is only recorded once the requests of the changeset have completed successfully
+            this.parallelOrderExecuted.add(nextSequenceValue);
+            parallelCompletion.get().thenRun(() -> {
+                ranChangeSet.setDateExecuted(Date.from(this.getClock().instant()));
+                this.completedRanChangeSets.add(ranChangeSet);
+            });
+            this.writePendingRanChangeSetsIfDue();
+            return;
+        }
+
+        if (OpenSearchConfiguration.HISTORY_WRITE_BEHIND.getCurrentValue()) {
+            this.bufferRanChangeSet(ranChangeSet);
+            this.writePendingRanChangeSetsIfDue();
+            return;
+        }
+
+        // entries of changesets executed in parallel which completed before this one
+        this.writePendingRanChangeSets();
+        this.checkLockLease();
+        final IndexResponse response;
         try {
-            this.getOpenSearchClient()
+            response = this.getOpenSearchClient()
                     .index(r -> r.index(this.getDatabaseChangeLogTableName())
                             .id(ranChangeSet.toString())
-                            .document(ranChangeSet)
-                            .refresh(Refresh.WaitFor));
+                            .document(ranChangeSet));
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+        this.refreshPending = true;
+        this.lastRanChangeSetId = ranChangeSet.toString();
+        this.recordHistoryWrite(ranChangeSet, response.result() == Result.Created, response.seqNo());
+        if (response.result() != Result.Created) {
+            // the digest still covers the replaced entry
+            this.invalidateHistoryDigest();
+        }
+    }
+
+    /**
+     * Writes all buffered history entries and refreshes the history index once if anything has been written since the
+     * last refresh, so that the history of this run is visible to searches afterwards. Afterwards a failure of a
+     * changeset executed in parallel is thrown: the flush runs after the update (and before the lock is released), so
+     * the failure is raised outside of any changeset and regardless of {@code failOnError}.
+     */
+    @Override
+    public void flush() throws DatabaseException {
+        // the entries of the changesets which did complete must be written even if another one has failed
+        this.awaitParallelExecution();
+        this.writePendingRanChangeSets();
+        if (this.refreshPending) {
+            this.refresh();
+        }
+        this.updateHistoryDigest();
+        this.updateHistoryCache();
+        final var executor = this.getOpenSearchExecutor();
+        if (executor.isPresent()) {
+            executor.get().raiseParallelFailure();
+        }
+    }
+
+    private void bufferRanChangeSet(final RanChangeSet ranChangeSet) {
+        if (this.pendingRanChangeSets.isEmpty()) {
+            this.firstPendingAt = this.getClock().instant();
+        }
+        this.pendingRanChangeSets.add(ranChangeSet);
+    }
+
+    /**
+     * Writes the buffered entries if there are enough of them or the oldest one has been buffered for long enough.
+     * Without {@link OpenSearchConfiguration#HISTORY_WRITE_BEHIND} they are written right away.
+     */
+    private void writePendingRanChangeSetsIfDue() throws DatabaseException {
+        if (!OpenSearchConfiguration.HISTORY_WRITE_BEHIND.getCurrentValue()) {
+            this.writePendingRanChangeSets();
+            return;
+        }
+        final var flushInterval = Duration.ofSeconds(OpenSearchConfiguration.HISTORY_WRITE_BEHIND_FLUSH_INTERVAL.getCurrentValue());
+        if (this.pendingRanChangeSets.size() >= OpenSearchConfiguration.HISTORY_WRITE_BEHIND_BATCH_SIZE.getCurrentValue()
+                || (!this.pendingRanChangeSets.isEmpty() && !this.getClock().instant().isBefore(this.firstPendingAt.plus(flushInterval)))) {
+            this.writePendingRanChangeSets();
+        }
+    }
+
+    /**
+     * Buffers the entries of the changesets executed in parallel which have completed since the last call.
+     */
+    private void bufferCompletedRanChangeSets() {
+        RanChangeSet ranChangeSet;
+        while ((ranChangeSet = this.completedRanChangeSets.poll()) != null) {
+            ranChangeSet.setOrderExecuted(this.parallelOrderExecuted.poll());
+            this.bufferRanChangeSet(ranChangeSet);
+        }
+    }
+
+    /**
+     * Waits for all changesets executed in parallel and buffers the entries of the ones which completed successfully.
+     */
+    private void awaitParallelExecution() throws DatabaseException {
+        final var executor = this.getOpenSearchExecutor();
+        if (executor.isEmpty()) {
+            return;
+        }
+        try {
+            executor.get().awaitParallelExecution();
+        } finally {
+            this.bufferCompletedRanChangeSets();
+            // left over by changesets which failed
+            this.parallelOrderExecuted.clear();
+        }
+    }
+
+    private Optional<OpenSearchExecutor> getOpenSearchExecutor() {
+        final var executor = Scope.getCurrentScope().getSingleton(ExecutorService.class)
+                .getExecutor(OpenSearchExecutor.EXECUTOR_NAME, this.getDatabase());
+        return executor instanceof OpenSearchExecutor openSearchExecutor ? Optional.of(openSearchExecutor) : Optional.empty();
+    }
+
+    /**
+     * Makes sure that searches see all history entries, including the ones written without waiting for a refresh.
+     */
+    private void prepareSearch() throws DatabaseException {
+        this.awaitParallelExecution();
+        this.writePendingRanChangeSets();
+        if (this.refreshPending || !this.refreshed) {
+            this.refresh();
+        }
+    }
+
+    private void refresh() throws DatabaseException {
+        try {
+            this.getOpenSearchClient().indices().refresh(r -> r.index(this.getDatabaseChangeLogTableName()));
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
+        this.refreshPending = false;
+        this.refreshed = true;
+    }
+
+    /**
+     * Writes all buffered history entries with a single bulk request. Entries which could not be written stay buffered
+     * and will be retried with the next flush.
+     */
+    private void writePendingRanChangeSets() throws DatabaseException {
+        if (this.pendingRanChangeSets.isEmpty()) {
+            return;
+        }
+        this.checkLockLease();
+
+        final var operations = this.pendingRanChangeSets.stream()
+                .map(ranChangeSet -> BulkOperation.of(b -> b.index(i -> i
+                        .index(this.getDatabaseChangeLogTableName())
+                        .id(ranChangeSet.toString())
+                        .document(ranChangeSet))))
+                .toList();
+
+        final BulkResponse response;
+        try {
+            response = this.getOpenSearchClient().bulk(b -> b.operations(operations));
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+        this.refreshPending = true;
+
+        final var failedRanChangeSets = new ArrayList<RanChangeSet>();
+        final var failures = new ArrayList<String>();
+        boolean replaced = false;
+        // the items of the response are in the same order as the operations of the request
+        for (int i = 0; i < response.items().size(); i++) {
+            final var error = response.items().get(i).error();
+            if (error != null) {
+                failedRanChangeSets.add(this.pendingRanChangeSets.get(i));
+                failures.add("%s: %s".formatted(this.pendingRanChangeSets.get(i), error.reason()));
+            } else {
+                final boolean created = "created".equals(response.items().get(i).result());
+                this.lastRanChangeSetId = this.pendingRanChangeSets.get(i).toString();
+                this.recordHistoryWrite(this.pendingRanChangeSets.get(i), created,
+                        Optional.ofNullable(response.items().get(i).seqNo()).orElse(-1L));
+                replaced |= !created;
+            }
+        }
+
+        getLogger().fine("wrote %d buffered changelog history entries".formatted(operations.size() - failedRanChangeSets.size()));
+        this.pendingRanChangeSets.clear();
+        this.pendingRanChangeSets.addAll(failedRanChangeSets);
+        if (replaced) {
+            // the digest still covers the replaced entries
+            this.invalidateHistoryDigest();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new DatabaseException("failed to write %d changelog history entries: %s".formatted(failures.size(), String.join(", ", failures)));
+        }
+    }
+
+    /**
+     * Writes the buffered entries, including the ones of changesets executed in parallel which have completed so far.
+     */
+    @Override
+    public void writeBufferedEntries() throws DatabaseException {
+        this.bufferCompletedRanChangeSets();
+        this.writePendingRanChangeSets();
+    }
+
+    /**
+     * Keeps the changelog of the current command. Buffered entries are kept, they are written by the next
+     * {@link #flush()} (at the latest before the lock is released), which reports if that fails.
+     */
+    @Override
+    public void resetHistory() {
+        super.reset();
+    }
+
+    /**
+     * Also forgets the changelog of the command and whether it required the full history, so that neither applies to
+     * the next one. Buffered entries are kept, see {@link #resetHistory()}.
+     */
+    @Override
+    public void reset() {
+        this.resetHistory();
+        this.databaseChangeLog = null;
+        this.fullHistoryRequired = false;
     }
 
     @Override
     protected void removeRanChangeSet(final ChangeSet changeSet) throws DatabaseException {
+        this.awaitParallelExecution();
+        this.writePendingRanChangeSets();
+        this.checkLockLease();
         try {
             this.getOpenSearchClient()
                     .delete(r -> r.index(this.getDatabaseChangeLogTableName())
-                            .id(changeSet.toString())
-                            .refresh(Refresh.WaitFor));
+                            .id(changeSet.toString()));
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
+        this.refreshPending = true;
+        this.historyCacheOutdated = true;
+        this.invalidateHistoryDigest();
+        if (changeSet.toString().equals(this.lastRanChangeSetId)) {
+            this.lastRanChangeSetId = null;
+        }
     }
 
     @Override
     public void clearAllCheckSums() throws DatabaseException {
+        this.prepareSearch();
         try {
             this.getOpenSearchClient()
                     .updateByQuery(r -> r.index(this.getDatabaseChangeLogTableName())
+                            .query(HISTORY_ENTRIES)
                             .script(s -> s.inline(i -> i.source("ctx._source.lastCheckSum = null")
                                     .lang(ScriptLanguage.builder().builtin(BuiltinScriptLanguage.Painless).build()))));
         } catch (IOException e) {
             throw new DatabaseException(e);
         }
+        this.refreshPending = true;
+        this.historyCacheOutdated = true;
+        this.invalidateHistoryDigest();
     }
 
     @Override
     protected long countTags(final String tag) throws DatabaseException {
+        this.prepareSearch();
         final var request = new SearchRequest.Builder()
                 .index(this.getDatabaseChangeLogTableName())
                 .query(q -> q.match(m -> m.field("tag").query(FieldValue.of(tag))))
@@ -194,50 +1068,77 @@ public class OpenSearchHistoryService extends AbstractNoSqlHistoryService<OpenSe
 
     @Override
     protected void tagLast(final String tagString) throws DatabaseException {
+        this.awaitParallelExecution();
+        this.writePendingRanChangeSets();
         try {
+            if (this.lastRanChangeSetId != null) {
+                // the entry has been written by this service, an update by id is realtime and needs no refresh
+                this.updateTag(this.lastRanChangeSetId, tagString, null, null);
+                return;
+            }
+
             // safety:
             // there's no way to search for the document and update it in the same step in OpenSearch.
-            // also, there are no transactions. however we have the lock from liquibase, thus we can be confident
-            // that nobody will modify the data between our first read and subsequent update.
-
+            // also, there are no transactions. we have the lock from liquibase and additionally only update the
+            // document if it has not been modified since we've read it (seq_no & primary_term).
+            this.prepareSearch();
             final var response = this.getOpenSearchClient().search(
                     s -> s
                             .index(this.getDatabaseChangeLogTableName())
+                            .query(HISTORY_ENTRIES)
                             .sort(so -> so.field(f -> f.field("dateExecuted").order(SortOrder.Desc)))
+                            .seqNoPrimaryTerm(true)
                             .size(1),
                     RanChangeSet.class
             );
 
-            if (response.hits().total().value() == 0) {
+            if (response.hits().hits().isEmpty()) {
                 getLogger().warning("tried to add a tag (%s) but found no entries in the changelog table!".formatted(tagString));
                 return;
             }
 
-            final var entryToTag = response.hits().hits().get(0).id();
-
-            getLogger().fine("tagging entry %s as %s".formatted(entryToTag, tagString));
-
-            this.getOpenSearchClient().updateByQuery(
-                    u -> u
-                            .index(this.getDatabaseChangeLogTableName())
-                            .query(q -> q.ids(i -> i.values(entryToTag)))
-                            .script(s -> s.inline(i -> i
-                                    .lang(ScriptLanguage.builder().builtin(BuiltinScriptLanguage.Painless).build())
-                                    .source("ctx._source.tag = params.newTag")
-                                    .params("newTag", JsonData.of(tagString))))
-            );
+            final var hit = response.hits().hits().get(0);
+            this.updateTag(hit.id(), tagString, hit.seqNo(), hit.primaryTerm());
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
     }
 
+    private void updateTag(final String id, final String tagString, final Long seqNo, final Long primaryTerm) throws IOException {
+        @AllArgsConstructor
+        @Getter
+        class TagObj {
+            final String tag;
+        }
+
+        getLogger().fine("tagging entry %s as %s".formatted(id, tagString));
+
+        this.getOpenSearchClient().update(
+                u -> u
+                        .index(this.getDatabaseChangeLogTableName())
+                        .id(id)
+                        .ifSeqNo(seqNo)
+                        .ifPrimaryTerm(primaryTerm)
+                        .doc(new TagObj(tagString)),
+                RanChangeSet.class
+        );
+        this.refreshPending = true;
+        this.historyCacheOutdated = true;
+    }
+
     @Override
     protected long countRanChangeSets() throws DatabaseException {
-        return this.queryRanChangeSets().size();
+        this.prepareSearch();
+        try {
+            return this.getOpenSearchClient().count(r -> r.index(this.getDatabaseChangeLogTableName()).query(HISTORY_ENTRIES)).count();
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
     }
 
     @Override
-    protected void updateCheckSum(final ChangeSet changeSet) throws DatabaseException {
+    protected CheckSum updateCheckSum(final ChangeSet changeSet) throws DatabaseException {
+        this.writePendingRanChangeSets();
         @AllArgsConstructor
         @Getter
         class CheckSumObj {
@@ -254,11 +1155,14 @@ public class OpenSearchHistoryService extends AbstractNoSqlHistoryService<OpenSe
                                     .index(this.getDatabaseChangeLogTableName())
                                     .id(changeSet.toString())
                                     .doc(new CheckSumObj(checkSum))
-                                    .refresh(Refresh.WaitFor)
                             , RanChangeSet.class);
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
+        this.refreshPending = true;
+        this.historyCacheOutdated = true;
+        this.invalidateHistoryDigest();
+        return checkSum;
     }
 
     @Override
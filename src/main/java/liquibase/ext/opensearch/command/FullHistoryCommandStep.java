@@ -0,0 +1,47 @@
+package liquibase.ext.opensearch.command;
+
+import liquibase.Scope;
+import liquibase.changelog.ChangeLogHistoryServiceFactory;
+import liquibase.command.CommandResultsBuilder;
+import liquibase.command.core.helpers.AbstractHelperCommandStep;
+import liquibase.database.Database;
+import liquibase.ext.opensearch.changelog.OpenSearchHistoryService;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Makes sure that commands which also look at history entries that are not part of the changelog (unexpected
+ * changesets, rollback to a tag or date) get the complete history, see
+ * {@link liquibase.ext.opensearch.configuration.OpenSearchConfiguration#HISTORY_FETCH_MODE}.
+ * <p>
+ * This step only depends on the database, thus it runs before the main step of the command reads the history.
+ */
+public class FullHistoryCommandStep extends AbstractHelperCommandStep {
+
+    @Override
+    public String[][] defineCommandNames() {
+        return new String[][]{
+                {"status"},
+                {"unexpectedChangesets"},
+                {"rollback"},
+                {"rollbackSql"},
+                {"rollbackToDate"},
+                {"rollbackToDateSql"}
+        };
+    }
+
+    @Override
+    public List<Class<?>> requiredDependencies() {
+        return Collections.singletonList(Database.class);
+    }
+
+    @Override
+    public void run(final CommandResultsBuilder resultsBuilder) {
+        final var database = (Database) resultsBuilder.getCommandScope().getDependency(Database.class);
+        final var historyService = Scope.getCurrentScope().getSingleton(ChangeLogHistoryServiceFactory.class).getChangeLogService(database);
+        if (historyService instanceof OpenSearchHistoryService openSearchHistoryService) {
+            openSearchHistoryService.requireFullHistory();
+        }
+    }
+}
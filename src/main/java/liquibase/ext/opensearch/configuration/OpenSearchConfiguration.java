@@ -0,0 +1,310 @@
+package liquibase.ext.opensearch.configuration;
+
+import liquibase.configuration.AutoloadedConfigurations;
+import liquibase.configuration.ConfigurationDefinition;
+import liquibase.configuration.ConfigurationValueConverter;
+import liquibase.util.ObjectUtil;
+
+/**
+ * Configuration settings of the OpenSearch extension. All settings can be provided like any other liquibase setting,
+ * e.g. as system properties ({@code -Dliquibase.opensearch.historyPageSize=5000}), environment variables
+ * ({@code LIQUIBASE_OPENSEARCH_HISTORY_PAGE_SIZE=5000}) or in the {@code liquibase.properties} file.
+ */
+public class OpenSearchConfiguration implements AutoloadedConfigurations {
+
+    public static final String LIQUIBASE_OPENSEARCH_NAMESPACE = "liquibase.opensearch";
+
+    public static final ConfigurationDefinition<Integer> HISTORY_PAGE_SIZE;
+    public static final ConfigurationDefinition<Integer> HISTORY_SLICES;
+    public static final ConfigurationDefinition<String> HISTORY_PIT_KEEP_ALIVE;
+    public static final ConfigurationDefinition<Boolean> HISTORY_WRITE_BEHIND;
+    public static final ConfigurationDefinition<Integer> HISTORY_WRITE_BEHIND_BATCH_SIZE;
+    public static final ConfigurationDefinition<Integer> HISTORY_WRITE_BEHIND_FLUSH_INTERVAL;
+    public static final ConfigurationDefinition<HistoryFetchMode> HISTORY_FETCH_MODE;
+    public static final ConfigurationDefinition<String> HISTORY_CACHE_DIRECTORY;
+    public static final ConfigurationDefinition<Boolean> HISTORY_DIGEST;
+    public static final ConfigurationDefinition<LockScope> LOCK_SCOPE;
+    public static final ConfigurationDefinition<String> LOCK_NAME;
+    public static final ConfigurationDefinition<Integer> LOCK_LEASE_DURATION;
+    public static final ConfigurationDefinition<LockWaitMode> LOCK_WAIT_MODE;
+    public static final ConfigurationDefinition<Integer> LOCK_WAIT_INITIAL_INTERVAL;
+    public static final ConfigurationDefinition<Integer> LOCK_WAIT_MAX_INTERVAL;
+    public static final ConfigurationDefinition<Integer> LOCK_WATCH_INTERVAL;
+    public static final ConfigurationDefinition<Integer> EXECUTION_CONCURRENCY;
+    public static final ConfigurationDefinition<Boolean> ASYNC_TASKS;
+    public static final ConfigurationDefinition<Integer> TASK_TIMEOUT;
+    public static final ConfigurationDefinition<Integer> TASK_POLL_MAX_INTERVAL;
+    public static final ConfigurationDefinition<Double> REINDEX_REQUESTS_PER_SECOND;
+    public static final ConfigurationDefinition<Integer> FAST_INGEST_HEALTH_TIMEOUT;
+    public static final ConfigurationDefinition<Boolean> COALESCE_REQUESTS;
+    public static final ConfigurationDefinition<Integer> RETRY_MAX_ATTEMPTS;
+    public static final ConfigurationDefinition<Integer> RETRY_INITIAL_INTERVAL;
+    public static final ConfigurationDefinition<Integer> RETRY_MAX_INTERVAL;
+    public static final ConfigurationDefinition<Boolean> RETRY_NON_IDEMPOTENT;
+    public static final ConfigurationDefinition<Integer> RETRY_BUDGET;
+    public static final ConfigurationDefinition<Integer> CIRCUIT_BREAKER_THRESHOLD;
+    public static final ConfigurationDefinition<Integer> CIRCUIT_BREAKER_OPEN_DURATION;
+
+    /**
+     * How the changelog history is loaded.
+     */
+    public enum HistoryFetchMode {
+        /**
+         * Load the complete history.
+         */
+        FULL,
+        /**
+         * Only load the history entries of the changesets in the current changelog (by their id). Commands which need the
+         * complete history (e.g. to list unexpected changesets) still load the complete history.
+         */
+        TARGETED
+    }
+
+    /**
+     * What the changelog lock protects, each scope uses its own lock entry in the lock index.
+     */
+    public enum LockScope {
+        /**
+         * A single lock for everything using the lock index.
+         */
+        GLOBAL,
+        /**
+         * One lock per history index.
+         */
+        HISTORY_INDEX,
+        /**
+         * One lock per (root) changelog file.
+         */
+        CHANGELOG,
+        /**
+         * One lock per {@link #LOCK_NAME}.
+         */
+        NAME
+    }
+
+    /**
+     * How long to wait between attempts to acquire the changelog lock.
+     */
+    public enum LockWaitMode {
+        /**
+         * Always wait for liquibase's {@code changelogLockPollRate}.
+         */
+        FIXED,
+        /**
+         * Exponential backoff with jitter between {@link #LOCK_WAIT_INITIAL_INTERVAL} and {@link #LOCK_WAIT_MAX_INTERVAL}.
+         */
+        BACKOFF
+    }
+
+    static {
+        final var builder = new ConfigurationDefinition.Builder(LIQUIBASE_OPENSEARCH_NAMESPACE);
+
+        HISTORY_PAGE_SIZE = builder.define("historyPageSize", Integer.class)
+                .setDescription("Number of changelog history entries fetched per request when loading the history, also the number "
+                        + "of ids per _mget request of the targeted history fetch. Must be at least 1")
+                .setDefaultValue(1000)
+                .setValueHandler(atLeastOne("historyPageSize"))
+                .build();
+
+        HISTORY_SLICES = builder.define("historySlices", Integer.class)
+                .setDescription("Number of slices in which the changelog history is fetched in parallel. 1 disables sliced fetching")
+                .setDefaultValue(1)
+                .setValueHandler(atLeastOne("historySlices"))
+                .build();
+
+        HISTORY_PIT_KEEP_ALIVE = builder.define("historyPitKeepAlive", String.class)
+                .setDescription("Keep-alive of the point in time used to page through the changelog history (e.g. 1m)")
+                .setDefaultValue("1m")
+                .build();
+
+        HISTORY_WRITE_BEHIND = builder.define("historyWriteBehind", Boolean.class)
+                .setDescription("Buffer changelog history entries and write them in batches using the bulk API instead of one request per changeset. "
+                        + "Buffered entries are written at the latest before the lock is released, before the update is reported as done "
+                        + "and before a change is executed which can't safely be executed again. If the process gets killed the buffered "
+                        + "changesets (which only consist of repeatable changes) will be executed again on the next run")
+                .setDefaultValue(false)
+                .build();
+
+        HISTORY_WRITE_BEHIND_BATCH_SIZE = builder.define("historyWriteBehindBatchSize", Integer.class)
+                .setDescription("Maximum number of buffered changelog history entries before they are written (only used with historyWriteBehind)")
+                .setDefaultValue(100)
+                .build();
+
+        HISTORY_WRITE_BEHIND_FLUSH_INTERVAL = builder.define("historyWriteBehindFlushInterval", Integer.class)
+                .setDescription("Maximum time in seconds a changelog history entry stays buffered, checked whenever a new entry is recorded (only used with historyWriteBehind)")
+                .setDefaultValue(10)
+                .build();
+
+        HISTORY_FETCH_MODE = builder.define("historyFetchMode", HistoryFetchMode.class)
+                .setDescription("FULL loads the complete changelog history. TARGETED only fetches the history entries of the changesets "
+                        + "in the current changelog by their id, which is faster if the history index is shared by many changelogs. "
+                        + "Commands which need the complete history (status, unexpected-changesets, rollback) always load it completely")
+                .setDefaultValue(HistoryFetchMode.FULL)
+                .build();
+
+        HISTORY_CACHE_DIRECTORY = builder.define("historyCacheDirectory", String.class)
+                .setDescription("Directory in which a local copy of the changelog history is kept. It is only used if it still matches "
+                        + "the history index (same number of entries and same highest orderExecuted/dateExecuted), which is much cheaper "
+                        + "to check than reading the complete history. Not set by default, which disables the cache")
+                .build();
+
+        HISTORY_DIGEST = builder.define("historyDigest", Boolean.class)
+                .setDescription("Maintain a digest (number of entries and a hash over changelog path, id, author and checksum of all "
+                        + "entries) of the changelog history in the history index. If it matches the changelog, checking whether "
+                        + "the changelog is up to date only needs a single request instead of reading the history. "
+                        + "Only helps if the history index is not shared with other changelogs")
+                .setDefaultValue(false)
+                .build();
+
+        LOCK_SCOPE = builder.define("lockScope", LockScope.class)
+                .setDescription("GLOBAL uses a single changelog lock for everything using the lock index. HISTORY_INDEX uses one lock "
+                        + "per history index, CHANGELOG one per changelog file and NAME one per lockName, so that changelogs which "
+                        + "don't depend on each other can be applied at the same time. All processes using the same history index "
+                        + "must use the same scope")
+                .setDefaultValue(LockScope.GLOBAL)
+                .build();
+
+        LOCK_NAME = builder.define("lockName", String.class)
+                .setDescription("Name of the changelog lock (only used with lockScope=NAME)")
+                .build();
+
+        LOCK_LEASE_DURATION = builder.define("lockLeaseDuration", Integer.class)
+                .setDescription("Duration in seconds of the lease on the changelog lock. The lease is renewed in the background every "
+                        + "third of its duration while the lock is held, a lock whose lease has expired (e.g. because the process "
+                        + "holding it got killed) is taken over by the next process trying to acquire it. "
+                        + "0 disables leases, the lock is then held until it gets released")
+                .setDefaultValue(0)
+                .build();
+
+        LOCK_WAIT_MODE = builder.define("lockWaitMode", LockWaitMode.class)
+                .setDescription("FIXED waits for changelogLockPollRate seconds between attempts to acquire the changelog lock. "
+                        + "BACKOFF starts with lockWaitInitialInterval and doubles the interval up to lockWaitMaxInterval, "
+                        + "with a random jitter so that waiting processes don't retry at the same time")
+                .setDefaultValue(LockWaitMode.FIXED)
+                .build();
+
+        LOCK_WAIT_INITIAL_INTERVAL = builder.define("lockWaitInitialInterval", Integer.class)
+                .setDescription("First interval in milliseconds between attempts to acquire the changelog lock (only used with lockWaitMode=BACKOFF)")
+                .setDefaultValue(100)
+                .build();
+
+        LOCK_WAIT_MAX_INTERVAL = builder.define("lockWaitMaxInterval", Integer.class)
+                .setDescription("Maximum interval in milliseconds between attempts to acquire the changelog lock (only used with lockWaitMode=BACKOFF)")
+                .setDefaultValue(10_000)
+                .build();
+
+        LOCK_WATCH_INTERVAL = builder.define("lockWatchInterval", Integer.class)
+                .setDescription("Interval in milliseconds in which the lock entry is read while waiting for the changelog lock, "
+                        + "so that the next attempt to acquire it is made as soon as it has been released. 0 disables watching")
+                .setDefaultValue(0)
+                .build();
+
+        EXECUTION_CONCURRENCY = builder.define("executionConcurrency", Integer.class)
+                .setDescription("Maximum number of httpRequest changes executed at the same time. Requests of different changesets "
+                        + "run in parallel unless they work on the same index (the first segment of the path), one changeset "
+                        + "lists the other in dependsOn or the index can't be determined from the path (e.g. _bulk or cluster "
+                        + "APIs, alias changes) or the request uses fastIngestIndex, in which case the request waits for everything "
+                        + "before it. Requests using different names for the same data (e.g. an alias and its index) need dependsOn. "
+                        + "History entries are written in the order in which the changesets complete. 1 executes all changes one "
+                        + "after the other")
+                .setDefaultValue(1)
+                .build();
+
+        ASYNC_TASKS = builder.define("asyncTasks", Boolean.class)
+                .setDescription("Execute httpRequest changes calling _reindex, _update_by_query, _delete_by_query or _forcemerge "
+                        + "(with POST and without wait_for_completion) as a task and poll the tasks API until it has completed, "
+                        + "instead of waiting for the response of a single request. If the task of a request is still running "
+                        + "from a previous run it is awaited instead of starting the request again")
+                .setDefaultValue(true)
+                .build();
+
+        TASK_TIMEOUT = builder.define("taskTimeout", Integer.class)
+                .setDescription("Maximum time in seconds to wait for a task started by an httpRequest change (only used with asyncTasks). "
+                        + "The task is cancelled and the changeset fails once it has been exceeded. 0 waits without a limit")
+                .setDefaultValue(0)
+                .build();
+
+        TASK_POLL_MAX_INTERVAL = builder.define("taskPollMaxInterval", Integer.class)
+                .setDescription("Maximum interval in milliseconds between requests for the state of a task (only used with asyncTasks). "
+                        + "The interval starts at 500 milliseconds and doubles with every request")
+                .setDefaultValue(30_000)
+                .build();
+
+        REINDEX_REQUESTS_PER_SECOND = builder.define("reindexRequestsPerSecond", Double.class)
+                .setDescription("Throttle of reindex changes in requests per second, overrides their requestsPerSecond. It is read "
+                        + "again whenever the state of the task is polled and applied to the running task with _rethrottle if it "
+                        + "has been changed. -1 disables throttling. Not set by default")
+                .build();
+
+        FAST_INGEST_HEALTH_TIMEOUT = builder.define("fastIngestHealthTimeout", Integer.class)
+                .setDescription("Maximum time in seconds to wait for an index to get back to the health it had before a change with "
+                        + "fastIngestIndex, once its settings have been restored. The changeset fails once it has been exceeded, "
+                        + "the settings stay restored. 0 waits without a limit")
+                .setDefaultValue(1800)
+                .build();
+
+        COALESCE_REQUESTS = builder.define("coalesceRequests", Boolean.class)
+                .setDescription("Combine consecutive httpRequest changes of a changeset into fewer requests: single document "
+                        + "writes (PUT/POST /<index>/_doc[/<id>]) are sent as one _bulk request, mapping updates adding "
+                        + "properties and settings updates of the same index are merged unless they touch the same field or "
+                        + "setting. The changes and their checksums stay as they are. Only used with executionConcurrency=1")
+                .setDefaultValue(false)
+                .build();
+
+        RETRY_MAX_ATTEMPTS = builder.define("retryMaxAttempts", Integer.class)
+                .setDescription("Maximum number of attempts of an httpRequest change which fails transiently: 429 and connection "
+                        + "failures are retried for all methods, 502, 503, 504 and other I/O errors (e.g. a connection reset) only "
+                        + "for GET, HEAD, PUT, DELETE and OPTIONS unless retryNonIdempotent is set. 1 disables retries")
+                .setDefaultValue(4)
+                .build();
+
+        RETRY_INITIAL_INTERVAL = builder.define("retryInitialInterval", Integer.class)
+                .setDescription("Interval in milliseconds before the first retry of an httpRequest change, it doubles with every "
+                        + "retry up to retryMaxInterval, with a random jitter. A Retry-After of the response takes precedence")
+                .setDefaultValue(200)
+                .build();
+
+        RETRY_MAX_INTERVAL = builder.define("retryMaxInterval", Integer.class)
+                .setDescription("Maximum interval in milliseconds between retries of an httpRequest change")
+                .setDefaultValue(10_000)
+                .build();
+
+        RETRY_NON_IDEMPOTENT = builder.define("retryNonIdempotent", Boolean.class)
+                .setDescription("Also retry POST and PATCH requests after a 502, 503, 504 or an I/O error, even though they might "
+                        + "have been executed already")
+                .setDefaultValue(false)
+                .build();
+
+        RETRY_BUDGET = builder.define("retryBudget", Integer.class)
+                .setDescription("Maximum number of retries which can be made in a row, shared by all requests. Every request "
+                        + "which succeeds on its first attempt adds a tenth of a retry, up to this number. Once it is used up "
+                        + "transient failures aren't retried anymore")
+                .setDefaultValue(20)
+                .build();
+
+        CIRCUIT_BREAKER_THRESHOLD = builder.define("circuitBreakerThreshold", Integer.class)
+                .setDescription("Number of consecutive transiently failed attempts after which httpRequest changes fail right "
+                        + "away for circuitBreakerOpenDuration, afterwards a single request is sent to find out whether the "
+                        + "cluster has recovered. 0 disables the circuit breaker")
+                .setDefaultValue(10)
+                .build();
+
+        CIRCUIT_BREAKER_OPEN_DURATION = builder.define("circuitBreakerOpenDuration", Integer.class)
+                .setDescription("Time in seconds in which httpRequest changes fail right away once the circuit breaker has opened")
+                .setDefaultValue(30)
+                .build();
+    }
+
+    /**
+     * Converts the value to an integer and rejects values below 1.
+     */
+    static ConfigurationValueConverter<Integer> atLeastOne(final String name) {
+        return value -> {
+            final var converted = ObjectUtil.convert(value, Integer.class);
+            if (converted != null && converted < 1) {
+                throw new IllegalArgumentException("%s.%s must be at least 1 but is %d".formatted(LIQUIBASE_OPENSEARCH_NAMESPACE, name, converted));
+            }
+            return converted;
+        };
+    }
+}
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.apache.hc.client5.http.auth.AuthScope;
 import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
 import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
 import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
@@ -15,8 +16,11 @@ import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
 import org.apache.hc.client5.http.ssl.TrustAllStrategy;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.reactor.ssl.TlsDetails;
 import org.apache.hc.core5.ssl.SSLContextBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.opensearch.client.json.jackson.JacksonJsonpMapper;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.opensearch.core.InfoResponse;
@@ -25,6 +29,8 @@ import org.opensearch.client.transport.httpclient5.ApacheHttpClient5TransportBui
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -34,6 +40,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.ResourceBundle;
 import java.util.stream.Collectors;
 
 import static liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase.OPENSEARCH_PREFIX;
@@ -52,6 +59,38 @@ public class OpenSearchConnection extends AbstractNoSqlConnection {
     ///  connection properties from liquibase used to connect to OpenSearch. not present if an existing `OpenSearchClient` is passed instead
     private Optional<Properties> connectionProperties = Optional.empty();
 
+    ///  connection property enabling gzip compression of request bodies with at least `compressionThreshold` bytes
+    public static final String COMPRESSION_PROPERTY = "compression";
+    ///  connection property with the minimum size in bytes of a request body to compress it
+    public static final String COMPRESSION_THRESHOLD_PROPERTY = "compressionThreshold";
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    ///  connection property with the maximum number of connections to all nodes
+    public static final String MAX_CONNECTIONS_PROPERTY = "maxConnections";
+    public static final int DEFAULT_MAX_CONNECTIONS = 30;
+    ///  connection property with the maximum number of connections to a single node
+    public static final String MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "maxConnectionsPerRoute";
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    ///  connection property with the timeout in milliseconds to establish a connection, 0 for none
+    public static final String CONNECT_TIMEOUT_PROPERTY = "connectTimeout";
+    public static final int DEFAULT_CONNECT_TIMEOUT = 180_000;
+    ///  connection property with the timeout in milliseconds while waiting for data on a connection, 0 for none
+    public static final String SOCKET_TIMEOUT_PROPERTY = "socketTimeout";
+    ///  connection property with the timeout in milliseconds until the response to a request starts, 0 for none
+    public static final String RESPONSE_TIMEOUT_PROPERTY = "responseTimeout";
+    ///  connection property with the milliseconds an idle connection is kept alive unless the node sends `Keep-Alive`
+    public static final String KEEP_ALIVE_PROPERTY = "keepAlive";
+    public static final int DEFAULT_KEEP_ALIVE = 180_000;
+    ///  connection property with the maximum lifetime of a connection in milliseconds, 0 for unlimited
+    public static final String CONNECTION_TIME_TO_LIVE_PROPERTY = "connectionTimeToLive";
+    ///  connection property with the number of I/O reactor threads, the number of processors by default
+    public static final String IO_THREADS_PROPERTY = "ioThreads";
+
+    private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("liquibase/i18n/liquibase-opensearch");
+
+    ///  whether request bodies of bulk loads, bulk requests and `httpRequest` changes are sent gzip compressed
+    private boolean compression;
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
     /**
      * Construct a new liquibase connection with an existing OpenSearchClient. Use this when you wish to re-use
      * an existing connection and/or use special client configuration, e.g. authentication other than basic auth.
@@ -78,19 +117,90 @@ public class OpenSearchConnection extends AbstractNoSqlConnection {
             realUrl = realUrl.substring(OPENSEARCH_PREFIX.length());
         }
 
-        this.connectionProperties = Optional.of(driverProperties);
-
         try {
+            final var properties = withUrlProperties(realUrl, driverProperties);
+            this.connectionProperties = Optional.of(properties);
             this.uris = Optional.of(Arrays.stream(realUrl.split(OPENSEARCH_URI_SEPARATOR))
+                    .map(uri -> uri.split("\\?", 2)[0])
                     .map(this::toUri)
                     .filter(Objects::nonNull)
                     .toList());
+            this.compression = booleanProperty(properties, COMPRESSION_PROPERTY, false);
+            this.compressionThreshold = intProperty(properties, COMPRESSION_THRESHOLD_PROPERTY, DEFAULT_COMPRESSION_THRESHOLD, 0);
             this.connect();
         } catch (final Exception e) {
             throw new DatabaseException("Could not open connection to database: " + realUrl, e);
         }
     }
 
+    /**
+     * Connection properties can also be passed as query parameters of the URL(s), e.g.
+     * {@code opensearch:http://localhost:9200?maxConnectionsPerRoute=20}. The driver properties take precedence.
+     *
+     * @return the driver properties with the query parameters of the URL(s).
+     */
+    static Properties withUrlProperties(final String url, final Properties driverProperties) {
+        final var properties = new Properties();
+        for (final var uri : url.split(OPENSEARCH_URI_SEPARATOR)) {
+            final var query = uri.split("\\?", 2);
+            if (query.length < 2) {
+                continue;
+            }
+            for (final var parameter : query[1].split("&")) {
+                final var nameAndValue = parameter.split("=", 2);
+                if (!nameAndValue[0].isEmpty()) {
+                    properties.setProperty(URLDecoder.decode(nameAndValue[0], StandardCharsets.UTF_8),
+                            nameAndValue.length > 1 ? URLDecoder.decode(nameAndValue[1], StandardCharsets.UTF_8) : "");
+                }
+            }
+        }
+        if (driverProperties != null) {
+            driverProperties.stringPropertyNames().forEach(name -> properties.setProperty(name, driverProperties.getProperty(name)));
+        }
+        return properties;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the property is set to anything else than {@code true} or {@code false}.
+     */
+    static boolean booleanProperty(final Properties properties, final String name, final boolean defaultValue) {
+        final var value = Optional.ofNullable(properties).map(p -> p.getProperty(name)).map(String::trim).orElse(null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException(String.format(resourceBundle.getString("connection.property.invalid.boolean"), value, name, describe(name)));
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the property isn't an integer of at least {@code min}.
+     */
+    static int intProperty(final Properties properties, final String name, final int defaultValue, final int min) {
+        final var value = Optional.ofNullable(properties).map(p -> p.getProperty(name)).map(String::trim).orElse(null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            final var parsed = Integer.parseInt(value);
+            if (parsed >= min) {
+                return parsed;
+            }
+        } catch (final NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(String.format(resourceBundle.getString("connection.property.invalid.integer"), value, name, describe(name), min));
+    }
+
+    /**
+     * @return the description of the connection property from the resource bundle, which documents all of them.
+     */
+    private static String describe(final String name) {
+        final var key = "connection.property." + name;
+        return resourceBundle.containsKey(key) ? resourceBundle.getString(key) : name;
+    }
+
     private URI toUri(String uri) {
         try {
             return URI.create(uri);
@@ -150,6 +260,20 @@ public class OpenSearchConnection extends AbstractNoSqlConnection {
         final var hosts = this.uris.get().stream().map(HttpHost::create).toList();
         final var hostsArray = hosts.toArray(HttpHost[]::new);
 
+        final var properties = this.connectionProperties.orElse(null);
+        final var maxConnections = intProperty(properties, MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS, 1);
+        final var maxConnectionsPerRoute = intProperty(properties, MAX_CONNECTIONS_PER_ROUTE_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_ROUTE, 1);
+        final var responseTimeout = intProperty(properties, RESPONSE_TIMEOUT_PROPERTY, 0, 0);
+        final var keepAlive = intProperty(properties, KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE, 1);
+        final var timeToLive = intProperty(properties, CONNECTION_TIME_TO_LIVE_PROPERTY, 0, 0);
+        final var ioThreads = intProperty(properties, IO_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors(), 1);
+        // a timeout of 0 disables it
+        final var connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(intProperty(properties, CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT, 0)))
+                .setSocketTimeout(Timeout.ofMilliseconds(intProperty(properties, SOCKET_TIMEOUT_PROPERTY, 0, 0)))
+                .setTimeToLive(timeToLive > 0 ? TimeValue.ofMilliseconds(timeToLive) : null)
+                .build();
+
         final var transport = ApacheHttpClient5TransportBuilder
                 .builder(hostsArray)
                 .setHttpClientConfigCallback(httpClientBuilder -> {
@@ -174,11 +298,19 @@ public class OpenSearchConnection extends AbstractNoSqlConnection {
 
                     final PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
                             .setTlsStrategy(tlsStrategy)
+                            .setMaxConnTotal(maxConnections)
+                            .setMaxConnPerRoute(maxConnectionsPerRoute)
+                            .setDefaultConnectionConfig(connectionConfig)
                             .build();
 
                     return httpClientBuilder
-                            .setConnectionManager(connectionManager);
+                            .setConnectionManager(connectionManager)
+                            .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(ioThreads).build());
                 })
+                .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+                        // unless set, the socket timeout applies while waiting for the response
+                        .setResponseTimeout(responseTimeout > 0 ? Timeout.ofMilliseconds(responseTimeout) : null)
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAlive)))
                 .setMapper(new JacksonJsonpMapper())
                 .build();
 
@@ -202,6 +334,13 @@ public class OpenSearchConnection extends AbstractNoSqlConnection {
         return Integer.parseInt(version.split("\\.")[1]);
     }
 
+    /**
+     * @return the UUID of the cluster, which (unlike its name or URL) uniquely identifies it.
+     */
+    public String getClusterUuid() throws DatabaseException {
+        return this.getOpenSearchInfo().clusterUuid();
+    }
+
     private InfoResponse getOpenSearchInfo() throws DatabaseException {
         if (this.openSearchInfo.isEmpty()) {
             try {
@@ -0,0 +1,125 @@
+package liquibase.ext.opensearch.database;
+
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.json.JsonData;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.mapping.TypeMapping;
+import org.opensearch.client.transport.httpclient5.ResponseException;
+import org.opensearch.client.util.ObjectBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Mapping and settings of an index managed by the extension (changelog history and lock). The indices are created with
+ * their mapping in a single request. A hash of the mapping is stored in the {@code _meta} of the index, so that the
+ * mapping only gets updated (which is a cluster state update) if it has changed.
+ */
+public class OpenSearchIndexDefinition {
+
+    static final String MAPPING_HASH_META_KEY = "liquibaseMappingHash";
+
+    /**
+     * State of the index as found by {@link #getState}.
+     */
+    public enum State {
+        MISSING,
+        /**
+         * The index exists but has been created with a different (or without a hashed) mapping.
+         */
+        OUTDATED,
+        UP_TO_DATE
+    }
+
+    private final TypeMapping mapping;
+    private final String mappingHash;
+
+    public OpenSearchIndexDefinition(final Function<TypeMapping.Builder, ObjectBuilder<TypeMapping>> mapping) {
+        final var typeMapping = TypeMapping.of(mapping);
+        this.mappingHash = hash(typeMapping.toJsonString());
+        this.mapping = TypeMapping.of(m -> m.properties(typeMapping.properties())
+                .meta(MAPPING_HASH_META_KEY, JsonData.of(this.mappingHash)));
+    }
+
+    String getMappingHash() {
+        return this.mappingHash;
+    }
+
+    /**
+     * Reads the mapping of the index, which doesn't modify the cluster state.
+     */
+    public State getState(final OpenSearchClient client, final String index) throws IOException {
+        try {
+            final var response = client.indices().getMapping(r -> r.index(index));
+            // the index might be an alias, in which case the result is keyed by the name of the actual index
+            final var hash = response.result().values().stream().findFirst()
+                    .map(record -> record.mappings().meta().get(MAPPING_HASH_META_KEY))
+                    .map(value -> value.to(String.class));
+            return hash.filter(this.mappingHash::equals).isPresent() ? State.UP_TO_DATE : State.OUTDATED;
+        } catch (final ResponseException e) {
+            if (e.status() == HttpStatus.SC_NOT_FOUND) {
+                return State.MISSING;
+            }
+            throw e;
+        } catch (final OpenSearchException e) {
+            if (e.status() == HttpStatus.SC_NOT_FOUND) {
+                return State.MISSING;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the index with its mapping, a single primary shard and up to one replica (the indices are tiny, more
+     * shards would only add overhead).
+     *
+     * @return {@code false} if the index has been created concurrently by somebody else, its mapping might then still
+     * have to be updated.
+     */
+    public boolean create(final OpenSearchClient client, final String index) throws IOException {
+        try {
+            client.indices().create(r -> r.index(index)
+                    .settings(s -> s.numberOfShards(1).autoExpandReplicas("0-1"))
+                    .mappings(this.mapping));
+            return true;
+        } catch (final ResponseException e) {
+            if (isAlreadyExists(e.status(), e.getMessage())) {
+                return false;
+            }
+            throw e;
+        } catch (final OpenSearchException e) {
+            if (isAlreadyExists(e.status(), Optional.ofNullable(e.error().type()).orElse(""))) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Updates the mapping of an existing index, including the hash.
+     */
+    public void putMapping(final OpenSearchClient client, final String index) throws IOException {
+        client.indices().putMapping(r -> r.index(index)
+                .properties(this.mapping.properties())
+                .meta(this.mapping.meta()));
+    }
+
+    private static boolean isAlreadyExists(final int status, final String message) {
+        return status == HttpStatus.SC_BAD_REQUEST && message != null && message.contains("resource_already_exists_exception");
+    }
+
+    private static String hash(final String value) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package liquibase.ext.opensearch.database;
 
 import liquibase.CatalogAndSchema;
+import liquibase.Scope;
+import liquibase.exception.DatabaseException;
 import liquibase.exception.LiquibaseException;
+import liquibase.executor.ExecutorService;
+import liquibase.ext.opensearch.executor.OpenSearchExecutor;
 import liquibase.nosql.database.AbstractNoSqlDatabase;
 import lombok.NoArgsConstructor;
 
@@ -22,6 +26,41 @@ public class OpenSearchLiquibaseDatabase extends AbstractNoSqlDatabase {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Liquibase commits at the end of every changeset (unless it has {@code runInTransaction: false}), the requests
+     * which have been held back to be coalesced are executed then so that their failure fails the changeset.
+     */
+    @Override
+    public void commit() throws DatabaseException {
+        final var executor = this.getOpenSearchExecutor();
+        if (executor != null) {
+            executor.flushCoalescedRequests();
+        }
+        super.commit();
+    }
+
+    /**
+     * Called if a changeset fails, the requests which have been held back came before the failure and are still
+     * executed (a failure of them is only logged, the changeset has failed already).
+     */
+    @Override
+    public void rollback() throws DatabaseException {
+        final var executor = this.getOpenSearchExecutor();
+        if (executor != null) {
+            try {
+                executor.flushCoalescedRequests();
+            } catch (final DatabaseException e) {
+                Scope.getCurrentScope().getLog(getClass()).warning("failed to execute the coalesced requests", e);
+            }
+        }
+        super.rollback();
+    }
+
+    private OpenSearchExecutor getOpenSearchExecutor() {
+        final var executor = Scope.getCurrentScope().getSingleton(ExecutorService.class).getExecutor(OpenSearchExecutor.EXECUTOR_NAME, this);
+        return executor instanceof OpenSearchExecutor openSearchExecutor ? openSearchExecutor : null;
+    }
+
     @Override
     public String getDefaultDriver(final String url) {
         if (OpenSearchClientDriver.isOpenSearchURL(url)) {
@@ -21,10 +21,13 @@ package liquibase.ext.opensearch.executor;
  */
 
 import liquibase.Scope;
+import liquibase.changelog.ChangeSet;
 import liquibase.database.Database;
 import liquibase.exception.DatabaseException;
 import liquibase.executor.AbstractExecutor;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
 import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import liquibase.ext.opensearch.statement.HttpRequestStatement;
 import liquibase.ext.opensearch.statement.OpenSearchExecuteStatement;
 import liquibase.logging.Logger;
 import liquibase.servicelocator.LiquibaseService;
@@ -37,6 +40,8 @@ import org.opensearch.client.opensearch.generic.OpenSearchClientException;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.Collections.emptyList;
 
@@ -47,6 +52,21 @@ public class OpenSearchExecutor extends AbstractExecutor {
     public static final String EXECUTOR_NAME = "jdbc"; // needed because of AbstractJdbcDatabase#execute
     private final Logger log = Scope.getCurrentScope().getLog(getClass());
 
+    /**
+     * Requests which are executed in parallel, {@code null} if there are none (see {@link OpenSearchConfiguration#EXECUTION_CONCURRENCY}).
+     */
+    private ParallelExecution parallelExecution;
+
+    /**
+     * The first failure of a request executed in parallel which hasn't been raised yet, see {@link #raiseParallelFailure()}.
+     */
+    private DatabaseException parallelFailure;
+
+    /**
+     * Requests which are held back to be combined with the following ones (see {@link OpenSearchConfiguration#COALESCE_REQUESTS}).
+     */
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
     private OpenSearchLiquibaseDatabase getDatabase() {
         return (OpenSearchLiquibaseDatabase)this.database;
     }
@@ -125,15 +145,37 @@ public class OpenSearchExecutor extends AbstractExecutor {
     @Override
     public void execute(final SqlStatement sql, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
         if (sql instanceof OpenSearchExecuteStatement statement) {
-            try {
-                statement.execute(getDatabase());
-            } catch (final OpenSearchClientException e) {
-                try (var r = e.response()) {
-                    throw new DatabaseException("Could not execute: %s".formatted(r.getBody().map(Body::bodyAsString).orElse("")), e);
-                } catch (IOException ex) {
-                    throw new DatabaseException("Could not execute", e);
+            final int concurrency = OpenSearchConfiguration.EXECUTION_CONCURRENCY.getCurrentValue();
+            if (concurrency <= 1 && OpenSearchConfiguration.COALESCE_REQUESTS.getCurrentValue()
+                    && statement instanceof HttpRequestStatement request && this.coalesce(request)) {
+                return;
+            }
+            this.flushCoalescedRequests();
+            this.writeBufferedHistoryBefore(statement);
+
+            if (concurrency > 1 && statement instanceof HttpRequestStatement request && request.getChangeSet() != null
+                    && request.getFastIngestIndex() == null) {
+                if (this.parallelExecution == null) {
+                    this.parallelExecution = new ParallelExecution(concurrency);
+                    if (this.parallelFailure != null) {
+                        // the request is skipped and its changeset isn't recorded
+                        this.parallelExecution.fail(this.parallelFailure);
+                    }
                 }
+                this.parallelExecution.submit(request.getChangeSet(), request.getPath(), request.getBody(),
+                        Optional.ofNullable(request.getDependsOn()).orElse(emptyList()),
+                        () -> this.executeStatement(request));
+                return;
+            }
+
+            // everything else runs on its own once everything before it has completed
+            this.awaitParallelRequests();
+            if (this.parallelFailure != null) {
+                // nothing new is started once a request has failed, the failure itself is raised after the update
+                throw new DatabaseException("Not executed because a changeset executed in parallel has failed: %s"
+                        .formatted(this.parallelFailure.getMessage()), this.parallelFailure);
             }
+            this.executeStatement(statement);
         } else {
             throw new DatabaseException("liquibase-opensearch extension cannot execute changeset \n" +
                     "Unknown type: " + sql.getClass().getName() +
@@ -145,6 +187,98 @@ public class OpenSearchExecutor extends AbstractExecutor {
         }
     }
 
+    /**
+     * @return whether the request has been held back, either with the requests before it or on its own after those have
+     * been executed.
+     */
+    private boolean coalesce(final HttpRequestStatement request) throws DatabaseException {
+        if (this.coalescer.add(request)) {
+            return true;
+        }
+        this.flushCoalescedRequests();
+        return this.coalescer.add(request);
+    }
+
+    /**
+     * Executes the requests which have been held back to be coalesced. Must be called at the end of every changeset
+     * (see {@link OpenSearchLiquibaseDatabase#commit()}), so that they are executed as part of it.
+     */
+    public void flushCoalescedRequests() throws DatabaseException {
+        final var statement = this.coalescer.drain();
+        if (statement.isPresent()) {
+            this.awaitParallelRequests();
+            this.writeBufferedHistoryBefore(statement.get());
+            this.executeStatement(statement.get());
+        }
+    }
+
+    /**
+     * Writes the history entries buffered with {@link OpenSearchConfiguration#HISTORY_WRITE_BEHIND} unless the statement
+     * can safely be executed again, so that a crash can only cause repeatable statements to be executed again.
+     */
+    private void writeBufferedHistoryBefore(final OpenSearchExecuteStatement statement) throws DatabaseException {
+        if (OpenSearchConfiguration.HISTORY_WRITE_BEHIND.getCurrentValue() && !statement.isRepeatable()) {
+            this.getDatabase().writeBufferedChangeLogHistory();
+        }
+    }
+
+    private void executeStatement(final OpenSearchExecuteStatement statement) throws DatabaseException {
+        try {
+            statement.execute(getDatabase());
+        } catch (final OpenSearchClientException e) {
+            try (var r = e.response()) {
+                throw new DatabaseException("Could not execute: %s".formatted(r.getBody().map(Body::bodyAsString).orElse("")), e);
+            } catch (IOException ex) {
+                throw new DatabaseException("Could not execute", e);
+            }
+        }
+    }
+
+    /**
+     * @return the completion of the requests of the changeset which are executed in parallel, empty if nothing is
+     * executed in parallel. The history entry of the changeset must only be written once it has completed successfully.
+     */
+    public Optional<CompletableFuture<Void>> getParallelCompletion(final ChangeSet changeSet) {
+        return Optional.ofNullable(this.parallelExecution).map(execution -> execution.getCompletion(changeSet));
+    }
+
+    /**
+     * Waits until all requests which are executed in parallel have completed and executes the requests which have been
+     * held back to be coalesced. A failure of a request executed in parallel is not thrown, see
+     * {@link #raiseParallelFailure()}.
+     */
+    public void awaitParallelExecution() throws DatabaseException {
+        this.awaitParallelRequests();
+        this.flushCoalescedRequests();
+    }
+
+    /**
+     * Throws the first failure of a request executed in parallel if it hasn't been raised yet. Must only be called
+     * outside of changesets (see {@link liquibase.ext.opensearch.changelog.OpenSearchHistoryService#flush()}): the failure
+     * doesn't belong to the changeset running when it is noticed, which would also swallow it with
+     * {@code failOnError: false}.
+     */
+    public void raiseParallelFailure() throws DatabaseException {
+        this.awaitParallelRequests();
+        final var failure = this.parallelFailure;
+        if (failure != null) {
+            this.parallelFailure = null;
+            throw failure;
+        }
+    }
+
+    private void awaitParallelRequests() {
+        if (this.parallelExecution == null) {
+            return;
+        }
+        final var execution = this.parallelExecution;
+        this.parallelExecution = null;
+        execution.awaitCompletion();
+        if (this.parallelFailure == null) {
+            this.parallelFailure = execution.getFailure().orElse(null);
+        }
+    }
+
     @Override
     public int update(final SqlStatement sql) throws DatabaseException {
         return update(sql, emptyList());
@@ -0,0 +1,267 @@
+package liquibase.ext.opensearch.executor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.Scope;
+import liquibase.ScopeManager;
+import liquibase.changelog.ChangeSet;
+import liquibase.exception.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes requests of changesets concurrently on a fixed number of threads (see
+ * {@link liquibase.ext.opensearch.configuration.OpenSearchConfiguration#EXECUTION_CONCURRENCY}). A request only starts
+ * once all requests it depends on have completed successfully:
+ * <ul>
+ *     <li>the previous request of the same changeset,</li>
+ *     <li>the previous request against the same index (the first segment of the path),</li>
+ *     <li>the requests of the changesets listed in {@code dependsOn},</li>
+ *     <li>all previous requests if the index can't be determined from the path (e.g. {@code /_bulk} or
+ *     {@code /index-a,index-b/_search}), which in turn must complete before any later request starts. The same
+ *     applies to requests which change aliases (including index creations declaring {@code aliases}) and to date
+ *     math index names.</li>
+ * </ul>
+ * Requests which address the same data through different names (e.g. an index and an alias or data stream pointing at
+ * it) are not recognized as related, they must be ordered with {@code dependsOn}. If a request fails, all requests depending on it and all requests which haven't started yet are skipped. Submitting
+ * and querying is done by a single thread (the one executing the changelog), only the requests themselves run on the
+ * threads of the pool, each one in a child of the {@link Scope} it has been submitted in.
+ */
+class ParallelExecution {
+
+    /**
+     * A request to execute.
+     */
+    @FunctionalInterface
+    interface Task {
+        void run() throws DatabaseException;
+    }
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ExecutorService pool;
+
+    /**
+     * Last request per index since the last request which isn't bound to an index.
+     */
+    private final Map<String, CompletableFuture<Void>> lastByIndex = new HashMap<>();
+
+    /**
+     * All requests since the last request which isn't bound to an index.
+     */
+    private final List<CompletableFuture<Void>> sinceBarrier = new ArrayList<>();
+
+    private CompletableFuture<Void> barrier = CompletableFuture.completedFuture(null);
+
+    /**
+     * Last request per changeset, i.e. the completion of the whole changeset as its requests run one after the other.
+     */
+    private final Map<ChangeSet, CompletableFuture<Void>> byChangeSet = new HashMap<>();
+
+    private final Map<String, CompletableFuture<Void>> byChangeSetId = new HashMap<>();
+
+    private final List<CompletableFuture<Void>> all = new ArrayList<>();
+
+    /**
+     * The first failed request, requests which have been skipped because of it are not recorded.
+     */
+    private final AtomicReference<DatabaseException> failure = new AtomicReference<>();
+
+    ParallelExecution(final int concurrency) {
+        final var poolNumber = POOL_COUNTER.incrementAndGet();
+        final var threadCounter = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            final var thread = new Thread(runnable, "liquibase-opensearch-executor-%d-%d".formatted(poolNumber, threadCounter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.pool = Executors.newFixedThreadPool(concurrency, threadFactory);
+    }
+
+    /**
+     * Schedules the task once everything it depends on has completed.
+     *
+     * @param path      the path of the request, used to infer which index it works on.
+     * @param body      the body of the request, if it declares {@code aliases} the request waits for everything before it.
+     * @param dependsOn IDs of changesets (earlier in the changelog) which must have completed before. IDs of changesets
+     *                  which have not been submitted (e.g. because they had been executed before) are ignored.
+     */
+    void submit(final ChangeSet changeSet, final String path, final String body, final Collection<String> dependsOn, final Task task) {
+        final var scope = Scope.getCurrentScope();
+        final var dependencies = new ArrayList<CompletableFuture<Void>>();
+        final var index = declaresAliases(body) ? null : indexOf(path);
+        if (index == null) {
+            dependencies.addAll(this.sinceBarrier);
+            dependencies.add(this.barrier);
+        } else {
+            dependencies.add(this.lastByIndex.getOrDefault(index, this.barrier));
+        }
+        final var previousOfChangeSet = this.byChangeSet.get(changeSet);
+        if (previousOfChangeSet != null) {
+            dependencies.add(previousOfChangeSet);
+        }
+        for (final var id : dependsOn) {
+            final var dependency = this.byChangeSetId.get(id);
+            if (dependency != null) {
+                dependencies.add(dependency);
+            }
+        }
+
+        final var future = CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new))
+                .thenRunAsync(() -> this.run(scope, changeSet, task), this.pool);
+
+        if (index == null) {
+            this.barrier = future;
+            this.sinceBarrier.clear();
+            this.lastByIndex.clear();
+        } else {
+            this.sinceBarrier.add(future);
+            this.lastByIndex.put(index, future);
+        }
+        this.byChangeSet.put(changeSet, future);
+        if (changeSet.getId() != null) {
+            this.byChangeSetId.put(changeSet.getId(), future);
+        }
+        this.all.add(future);
+    }
+
+    private void run(final Scope scope, final ChangeSet changeSet, final Task task) {
+        final var firstFailure = this.failure.get();
+        if (firstFailure != null) {
+            // nothing new is started once a request has failed
+            throw new CompletionException(firstFailure);
+        }
+        // the threads of the pool would otherwise see whatever scope the thread executing the changelog is in right now
+        Scope.setScopeManager(new TaskScopeManager(scope));
+        try {
+            Scope.child(Map.of(), task::run);
+        } catch (final Exception e) {
+            this.failure.compareAndSet(null, new DatabaseException("Could not execute changeset %s: %s".formatted(changeSet, e.getMessage()), e));
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Scope manager of a thread of the pool while it runs a task, starting at the scope the task has been submitted in.
+     * Liquibase keeps the scope manager per thread, so each task gets its own one.
+     */
+    private static final class TaskScopeManager extends ScopeManager {
+
+        private Scope currentScope;
+
+        private TaskScopeManager(final Scope scope) {
+            this.currentScope = scope;
+        }
+
+        @Override
+        public synchronized Scope getCurrentScope() {
+            return this.currentScope;
+        }
+
+        @Override
+        protected synchronized void setCurrentScope(final Scope scope) {
+            this.currentScope = scope;
+        }
+
+        @Override
+        protected Scope init(final Scope scope) {
+            return scope;
+        }
+    }
+
+    /**
+     * @return the completion of all requests submitted for the changeset, an already completed future if there were none.
+     */
+    CompletableFuture<Void> getCompletion(final ChangeSet changeSet) {
+        return this.byChangeSet.getOrDefault(changeSet, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Skips all requests which haven't started yet, e.g. because a request of a previous execution has failed.
+     */
+    void fail(final DatabaseException failure) {
+        this.failure.compareAndSet(null, failure);
+    }
+
+    /**
+     * @return the first failed request, if any.
+     */
+    Optional<DatabaseException> getFailure() {
+        return Optional.ofNullable(this.failure.get());
+    }
+
+    /**
+     * Waits until all submitted requests have completed or have been skipped and stops the threads. A failure is not
+     * thrown, see {@link #getFailure()}.
+     */
+    void awaitCompletion() {
+        try {
+            CompletableFuture.allOf(this.all.stream()
+                            .map(future -> future.exceptionally(e -> null))
+                            .toArray(CompletableFuture[]::new))
+                    .join();
+        } finally {
+            this.pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the index the request works on (the first segment of the path), {@code null} if it can't be determined:
+     * APIs which are not bound to an index (e.g. {@code /_bulk} or {@code /_cluster/settings}), multiple indices,
+     * wildcards, date math names or APIs which change aliases or roll them over (e.g. {@code /index-a/_alias/alias-a}).
+     */
+    static String indexOf(final String path) {
+        if (path == null) {
+            return null;
+        }
+        var index = path.startsWith("/") ? path.substring(1) : path;
+        final var query = index.indexOf('?');
+        if (query >= 0) {
+            index = index.substring(0, query);
+        }
+        final var end = index.indexOf('/');
+        final var api = end >= 0 ? index.substring(end + 1) : "";
+        if (end >= 0) {
+            index = index.substring(0, end);
+        }
+        if (index.isEmpty() || index.startsWith("_") || index.contains(",") || index.contains("*")
+                || index.startsWith("<") || index.toLowerCase(Locale.ROOT).startsWith("%3c")) {
+            return null;
+        }
+        if (api.startsWith("_alias") || api.startsWith("_rollover")) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * @return whether the body is an object declaring {@code aliases}, e.g. an index creation which adds the index to
+     * an alias other requests might use. A body which isn't valid JSON is treated as declaring aliases to be safe.
+     */
+    static boolean declaresAliases(final String body) {
+        if (body == null || body.isBlank()) {
+            return false;
+        }
+        try {
+            final var aliases = MAPPER.readTree(body).get("aliases");
+            return aliases != null && !aliases.isEmpty();
+        } catch (final JsonProcessingException e) {
+            return true;
+        }
+    }
+}
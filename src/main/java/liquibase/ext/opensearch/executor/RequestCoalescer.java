@@ -0,0 +1,168 @@
+package liquibase.ext.opensearch.executor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import liquibase.ext.opensearch.statement.CoalescedWritesStatement;
+import liquibase.ext.opensearch.statement.HttpRequestStatement;
+import liquibase.ext.opensearch.statement.OpenSearchExecuteStatement;
+import org.apache.hc.core5.http.ContentType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Collects consecutive {@link HttpRequestStatement}s of a changeset which can be combined into a single request:
+ * <ul>
+ *     <li>single document writes are sent as one bulk request (see {@link CoalescedWritesStatement}),</li>
+ *     <li>mapping updates of the same index which only add {@code properties} are merged if they don't touch the same
+ *     field,</li>
+ *     <li>settings updates of the same index are merged if they don't change the same setting.</li>
+ * </ul>
+ * Everything else ends the current group. Only the statements are combined, the changes and thus the checksums stay
+ * as they are.
+ */
+class RequestCoalescer {
+
+    static final int MAX_COALESCED_REQUESTS = 1000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Pattern INDEX_API_PATH = Pattern.compile("/?([^/_?%+*,][^/?%+*,]*)/(_mapping|_settings)");
+
+    private enum Kind {
+        DOCUMENTS, MAPPING, SETTINGS
+    }
+
+    /**
+     * A request which can be coalesced, with the index and the (flattened for settings) body for updates of an index.
+     */
+    private record Candidate(Kind kind, HttpRequestStatement request, String index, ObjectNode body) {
+    }
+
+    private final List<Candidate> group = new ArrayList<>();
+
+    /**
+     * @return {@code true} if the request has been added to the current group, {@code false} if it can't be coalesced
+     * with it (the group must be drained before the request is added again) or at all.
+     */
+    boolean add(final HttpRequestStatement request) {
+        final var candidate = candidateOf(request);
+        if (candidate.isEmpty()) {
+            return false;
+        }
+        if (!this.group.isEmpty() && !this.fits(candidate.get())) {
+            return false;
+        }
+        this.group.add(candidate.get());
+        return true;
+    }
+
+    /**
+     * @return the statement executing the requests of the current group, which is then empty again. A group of a single
+     * request is returned as it is.
+     */
+    Optional<OpenSearchExecuteStatement> drain() {
+        if (this.group.isEmpty()) {
+            return Optional.empty();
+        }
+        final var candidates = List.copyOf(this.group);
+        this.group.clear();
+        final var first = candidates.get(0);
+        if (candidates.size() == 1) {
+            return Optional.of(first.request());
+        }
+        if (first.kind() == Kind.DOCUMENTS) {
+            return Optional.of(new CoalescedWritesStatement(candidates.stream().map(Candidate::request).toList()));
+        }
+
+        final var body = MAPPER.createObjectNode();
+        final var merged = first.kind() == Kind.MAPPING ? body.putObject("properties") : body;
+        for (final var candidate : candidates) {
+            merged.setAll(first.kind() == Kind.MAPPING ? (ObjectNode) candidate.body().get("properties") : candidate.body());
+        }
+        final var request = first.request();
+        return Optional.of(new HttpRequestStatement(request.getMethod(), request.getContentType(), request.getPath(),
+                body.toString(), null, null, request.getChangeSet(), request.getDependsOn(), null, null, request.getCompress()));
+    }
+
+    private boolean fits(final Candidate candidate) {
+        final var first = this.group.get(0);
+        if (this.group.size() >= MAX_COALESCED_REQUESTS || candidate.kind() != first.kind()
+                || candidate.request().getChangeSet() != first.request().getChangeSet()) {
+            return false;
+        }
+        if (candidate.kind() == Kind.DOCUMENTS) {
+            return true;
+        }
+        if (!candidate.index().equals(first.index())) {
+            return false;
+        }
+        final var fields = candidate.kind() == Kind.MAPPING ? candidate.body().get("properties") : candidate.body();
+        for (final var existing : this.group) {
+            final var existingFields = candidate.kind() == Kind.MAPPING ? existing.body().get("properties") : existing.body();
+            for (final var field : fields.properties()) {
+                if (existingFields.has(field.getKey())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Optional<Candidate> candidateOf(final HttpRequestStatement request) {
+        if (CoalescedWritesStatement.isCoalescible(request)) {
+            return Optional.of(new Candidate(Kind.DOCUMENTS, request, null, null));
+        }
+        if (request.getBody() == null || request.getBodyFile() != null || request.getFastIngestIndex() != null
+                || (request.getContentType() != null && !request.getContentType().startsWith(ContentType.APPLICATION_JSON.getMimeType()))) {
+            return Optional.empty();
+        }
+        final var matcher = INDEX_API_PATH.matcher(Optional.ofNullable(request.getPath()).orElse(""));
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        final ObjectNode body;
+        try {
+            if (!(MAPPER.readTree(request.getBody()) instanceof ObjectNode object)) {
+                return Optional.empty();
+            }
+            body = object;
+        } catch (final JsonProcessingException e) {
+            return Optional.empty();
+        }
+        final var method = request.getMethod().toUpperCase(Locale.ROOT);
+        final var index = matcher.group(1);
+        if (matcher.group(2).equals("_mapping")) {
+            if ((method.equals("PUT") || method.equals("POST")) && body.size() == 1 && body.get("properties") instanceof ObjectNode) {
+                return Optional.of(new Candidate(Kind.MAPPING, request, index, body));
+            }
+            return Optional.empty();
+        }
+        if (method.equals("PUT") && !body.has("settings")) {
+            final var settings = MAPPER.createObjectNode();
+            flatten("", body, settings);
+            return Optional.of(new Candidate(Kind.SETTINGS, request, index, settings));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Flattens the settings into {@code index.}-prefixed keys, so that the different ways of writing the same setting
+     * ({@code {"index": {"refresh_interval": "1s"}}}, {@code {"refresh_interval": "1s"}}) are recognized.
+     */
+    static void flatten(final String prefix, final JsonNode settings, final ObjectNode flat) {
+        for (final var setting : settings.properties()) {
+            final var key = prefix + setting.getKey();
+            if (setting.getValue() instanceof ObjectNode nested) {
+                flatten(key + ".", nested, flat);
+            } else {
+                flat.set(key.startsWith("index.") ? key : "index." + key, setting.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package liquibase.ext.opensearch.lockservice;
+
+import liquibase.lockservice.DatabaseChangeLogLock;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Lock entry as stored in the lock index. In addition to {@link DatabaseChangeLogLock} it carries the expiry of the
+ * lease if the lock has been acquired with {@link liquibase.ext.opensearch.configuration.OpenSearchConfiguration#LOCK_LEASE_DURATION},
+ * the name of the lock and the history index of the lock holder.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class OpenSearchChangeLogLock extends DatabaseChangeLogLock {
+
+    /**
+     * End of the lease, {@code null} if the lock is held until it gets released.
+     */
+    private Date lockExpires;
+
+    /**
+     * Name of the lock, {@code null} for the global lock (see {@link liquibase.ext.opensearch.configuration.OpenSearchConfiguration#LOCK_SCOPE}).
+     */
+    private String lockName;
+
+    /**
+     * History index the lock holder writes to, {@code null} for entries written by older versions.
+     */
+    private String historyIndex;
+
+    public OpenSearchChangeLogLock(final int id, final Date lockGranted, final String lockedBy, final Date lockExpires) {
+        super(id, lockGranted, lockedBy);
+        this.lockExpires = lockExpires;
+    }
+
+    /**
+     * @return whether the lease has expired at the given time, a lock without a lease never expires.
+     */
+    public boolean isExpired(final Date now) {
+        return this.lockExpires != null && this.lockExpires.before(now);
+    }
+}
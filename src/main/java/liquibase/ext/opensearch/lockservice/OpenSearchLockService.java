@@ -1,36 +1,92 @@
 package liquibase.ext.opensearch.lockservice;
 
 import liquibase.Scope;
+import liquibase.changelog.ChangeLogHistoryServiceFactory;
+import liquibase.changelog.DatabaseChangeLog;
 import liquibase.database.Database;
 import liquibase.exception.DatabaseException;
+import liquibase.exception.LockException;
+import liquibase.ext.opensearch.changelog.OpenSearchHistoryService;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
 import liquibase.ext.opensearch.database.OpenSearchConnection;
+import liquibase.ext.opensearch.database.OpenSearchIndexDefinition;
 import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
 import liquibase.lockservice.DatabaseChangeLogLock;
 import liquibase.logging.Logger;
 import liquibase.nosql.lockservice.AbstractNoSqlLockService;
+import liquibase.nosql.lockservice.LockWaitStrategy;
 import liquibase.util.NetUtil;
 import org.apache.hc.core5.http.HttpStatus;
 import org.opensearch.client.opensearch.OpenSearchClient;
-import org.opensearch.client.opensearch._types.Refresh;
+import org.opensearch.client.opensearch._types.FieldValue;
+import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch.core.GetResponse;
 import org.opensearch.client.opensearch.core.search.Hit;
-import org.opensearch.client.opensearch.indices.PutMappingRequest;
 import org.opensearch.client.transport.httpclient5.ResponseException;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class OpenSearchLockService extends AbstractNoSqlLockService<OpenSearchLiquibaseDatabase> {
 
     /**
-     * Magic ID: there will only ever be 0 or 1 entries in the lock index (we use the `create` API to ensure that it fails if the ID already exists)
+     * Magic ID: there will only ever be 0 or 1 entries per lock scope in the lock index (we use the `create` API to
+     * ensure that it fails if the ID already exists). The global lock uses it as document ID, named locks (see
+     * {@link OpenSearchConfiguration#LOCK_SCOPE}) use their name.
      */
     private static final int LOCK_ENTRY_ID = 1;
 
+    private static final int MAX_LISTED_LOCKS = 10_000;
+
+    /**
+     * Mapping of the lock index, the properties must match {@link OpenSearchChangeLogLock}.
+     */
+    private static final OpenSearchIndexDefinition INDEX_DEFINITION = new OpenSearchIndexDefinition(m -> m
+            .properties("id", p -> p.keyword(k -> k))
+            .properties("lockGranted", p -> p.date(d -> d))
+            .properties("lockedBy", p -> p.text(t -> t))
+            .properties("lockExpires", p -> p.date(d -> d))
+            .properties("lockName", p -> p.keyword(k -> k))
+            .properties("historyIndex", p -> p.keyword(k -> k)));
+
+    /**
+     * Prefix of the names of the locks of the {@code CHANGELOG} scope.
+     */
+    private static final String CHANGELOG_LOCK_PREFIX = "changelog:";
+
     private final Logger log = Scope.getCurrentScope().getLog(getClass());
 
+    private OpenSearchIndexDefinition.State indexState;
+
+    /**
+     * {@code _seq_no} and {@code _primary_term} of the lock entry created by this service. They are used to only remove
+     * the lock entry if it is still the one we've created.
+     */
+    private Long lockSeqNo;
+    private Long lockPrimaryTerm;
+
+    /**
+     * Name of the lock held by this service, {@code null} for the global lock.
+     */
+    private String lockName;
+
+    /**
+     * Lease of the lock held by this service ({@code null} if it is held without a lease), see
+     * {@link OpenSearchConfiguration#LOCK_LEASE_DURATION}.
+     */
+    private Duration leaseDuration;
+    private Date lockGranted;
+    private volatile Instant leaseValidUntil;
+    private volatile boolean leaseLost;
+    private ScheduledExecutorService heartbeat;
+
     private OpenSearchClient getOpenSearchClient() {
         final var connection = (OpenSearchConnection) this.getDatabase().getConnection();
         return connection.getOpenSearchClient();
@@ -44,35 +100,38 @@ public class OpenSearchLockService extends AbstractNoSqlLockService<OpenSearchLi
     @Override
     protected boolean existsRepository() throws DatabaseException {
         try {
-            return this.getOpenSearchClient().indices().exists(r -> r.index(this.getDatabaseChangeLogLockTableName())).value();
+            this.indexState = INDEX_DEFINITION.getState(this.getOpenSearchClient(), this.getDatabaseChangeLogLockTableName());
+            return this.indexState != OpenSearchIndexDefinition.State.MISSING;
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
     }
 
+    /**
+     * Creates the index with its mapping, see {@link OpenSearchIndexDefinition}.
+     */
     @Override
     protected void createRepository() throws DatabaseException {
-        // note: the mapping will be created in adjustRepository
-
         try {
-            this.getOpenSearchClient().indices().create(r -> r.index(this.getDatabaseChangeLogLockTableName()));
+            this.indexState = INDEX_DEFINITION.create(this.getOpenSearchClient(), this.getDatabaseChangeLogLockTableName())
+                    ? OpenSearchIndexDefinition.State.UP_TO_DATE
+                    : OpenSearchIndexDefinition.State.OUTDATED;
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
     }
 
+    /**
+     * Updates the mapping of an existing index, unless it has already been created with the current mapping.
+     */
     @Override
     protected void adjustRepository() throws DatabaseException {
-        // properties must match DatabaseChangeLogLock
-        final var request = new PutMappingRequest.Builder()
-                .index(this.getDatabaseChangeLogLockTableName())
-                .properties("id", p -> p.keyword(k -> k))
-                .properties("lockGranted", p -> p.date(d -> d))
-                .properties("lockedBy", p -> p.text(t -> t))
-                .build();
-
+        if (this.indexState == OpenSearchIndexDefinition.State.UP_TO_DATE) {
+            return;
+        }
         try {
-            this.getOpenSearchClient().indices().putMapping(request);
+            INDEX_DEFINITION.putMapping(this.getOpenSearchClient(), this.getDatabaseChangeLogLockTableName());
+            this.indexState = OpenSearchIndexDefinition.State.UP_TO_DATE;
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
@@ -80,6 +139,7 @@ public class OpenSearchLockService extends AbstractNoSqlLockService<OpenSearchLi
 
     @Override
     protected void dropRepository() throws DatabaseException {
+        this.indexState = null;
         try {
             this.getOpenSearchClient().indices().delete(r -> r.index(this.getDatabaseChangeLogLockTableName()));
         } catch (final IOException e) {
@@ -87,20 +147,133 @@ public class OpenSearchLockService extends AbstractNoSqlLockService<OpenSearchLi
         }
     }
 
+    /**
+     * A lock whose lease has expired counts as unlocked, it will be taken over by {@link #createLock()}.
+     */
     @Override
     protected boolean isLocked() throws DatabaseException {
-        return !this.queryLocks().isEmpty(); // ignore the fact that there should be exactly 0 or 1 entry here to be more conservative
+        final var now = Date.from(this.getClock().instant());
+        // ignore the fact that there should be exactly 0 or 1 entry here to be more conservative
+        return this.queryLocks().stream().anyMatch(lock -> !((OpenSearchChangeLogLock) lock).isExpired(now));
     }
 
+    /**
+     * Creates the lock entry right away without reading it first: creating fails with a conflict if it already exists
+     * (see {@link #createLock()}), thus each attempt to acquire the lock is a single request.
+     */
     @Override
-    protected boolean createLock() throws DatabaseException {
-        final var lockEntry = new DatabaseChangeLogLock(LOCK_ENTRY_ID, new Date(), getLockedBy());
+    protected boolean tryCreateLock() throws DatabaseException {
+        return this.createLock();
+    }
+
+    @Override
+    protected synchronized boolean createLock() throws DatabaseException {
+        final int leaseSeconds = OpenSearchConfiguration.LOCK_LEASE_DURATION.getCurrentValue();
+        final var lease = leaseSeconds > 0 ? Duration.ofSeconds(leaseSeconds) : null;
+        final var now = this.getClock().instant();
+        final var lockEntry = new OpenSearchChangeLogLock(LOCK_ENTRY_ID, Date.from(now), getLockedBy(),
+                lease == null ? null : Date.from(now.plus(lease)));
+        final var name = this.resolveLockName();
+        if (name == null) {
+            throw new DatabaseException("the changelog lock scope %s needs a changelog".formatted(OpenSearchConfiguration.LOCK_SCOPE.getCurrentValue()));
+        }
+        lockEntry.setLockName(name.orElse(null));
+        lockEntry.setHistoryIndex(this.getDatabase().getDatabaseChangeLogTableName());
         try {
-            this.getOpenSearchClient()
+            // no refresh needed: the lock entry is only ever read by its id, which is realtime
+            final var response = this.getOpenSearchClient()
                     .create(r -> r.index(this.getDatabaseChangeLogLockTableName())
-                            .id(String.valueOf(LOCK_ENTRY_ID))
+                            .id(lockEntryId(lockEntry.getLockName()))
+                            .document(lockEntry));
+            return this.lockCreated(response.seqNo(), response.primaryTerm(), lockEntry, lease);
+        } catch (final ResponseException e) {
+            if (e.status() == HttpStatus.SC_CONFLICT) {
+                // without a lease this process doesn't take over locks, so there's no need to read the lock entry
+                return lease != null && this.takeOverExpiredLock(lockEntry, lease);
+            }
+            throw new DatabaseException(e);
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    /**
+     * Completes acquiring the lock once its entry has been written, unless another lock holder writes to the same
+     * history index: the lock scopes other than {@code GLOBAL} only keep processes with the same lock away, but two
+     * processes writing to the same history index at the same time would hand out the same {@code orderExecuted} values
+     * and invalidate each other's view of the history. The lock entry granted first wins, the other one is removed
+     * again and its process keeps waiting.
+     */
+    private boolean lockCreated(final Long seqNo, final Long primaryTerm, final OpenSearchChangeLogLock lockEntry, final Duration lease) throws DatabaseException {
+        final var competingLock = this.findCompetingLock(lockEntry);
+        if (competingLock.isPresent()) {
+            getLogger().info("the history index %s is in use by the lock %s of %s, waiting for it to be released".formatted(
+                    lockEntry.getHistoryIndex(), lockEntryId(competingLock.get().getLockName()), competingLock.get().getLockedBy()));
+            try {
+                this.getOpenSearchClient()
+                        .delete(r -> r.index(this.getDatabaseChangeLogLockTableName())
+                                .id(lockEntryId(lockEntry.getLockName()))
+                                .ifSeqNo(seqNo)
+                                .ifPrimaryTerm(primaryTerm));
+            } catch (final ResponseException e) {
+                if (e.status() != HttpStatus.SC_CONFLICT) {
+                    throw new DatabaseException(e);
+                }
+            } catch (final IOException e) {
+                throw new DatabaseException(e);
+            }
+            return false;
+        }
+        this.lockAcquired(seqNo, primaryTerm, lockEntry, lease);
+        return true;
+    }
+
+    /**
+     * @return an unexpired entry of another lock whose holder writes to the same history index and which has been granted
+     * before the given one (ties are broken by the id, so exactly one of them wins).
+     */
+    private Optional<OpenSearchChangeLogLock> findCompetingLock(final OpenSearchChangeLogLock lockEntry) throws DatabaseException {
+        final var id = lockEntryId(lockEntry.getLockName());
+        try {
+            // the other entries are searched for, which needs a refresh first
+            this.getOpenSearchClient().indices().refresh(r -> r.index(this.getDatabaseChangeLogLockTableName()));
+            final var response = this.getOpenSearchClient()
+                    .search(r -> r.index(this.getDatabaseChangeLogLockTableName())
+                            .size(MAX_LISTED_LOCKS)
+                            .query(q -> q.term(t -> t.field("historyIndex").value(FieldValue.of(lockEntry.getHistoryIndex())))),
+                            OpenSearchChangeLogLock.class);
+            return response.hits().hits().stream()
+                    .filter(hit -> !id.equals(hit.id()))
+                    .filter(hit -> !hit.source().isExpired(lockEntry.getLockGranted()))
+                    .filter(hit -> hit.source().getLockGranted().before(lockEntry.getLockGranted())
+                            || (hit.source().getLockGranted().equals(lockEntry.getLockGranted()) && hit.id().compareTo(id) < 0))
+                    .map(Hit::source)
+                    .findFirst();
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    /**
+     * Replaces the existing lock entry if its lease has expired. This is a compare-and-set on its
+     * {@code _seq_no}/{@code _primary_term}, thus only one of several processes trying to take over succeeds and a lease
+     * which got renewed in the meantime is not taken over.
+     */
+    private boolean takeOverExpiredLock(final OpenSearchChangeLogLock lockEntry, final Duration lease) throws DatabaseException {
+        try {
+            final var current = this.getLockEntry(lockEntry.getLockName());
+            if (!current.found() || !current.source().isExpired(lockEntry.getLockGranted())) {
+                return false;
+            }
+            getLogger().warning("taking over the changelog lock of %s whose lease expired at %s".formatted(
+                    current.source().getLockedBy(), current.source().getLockExpires().toInstant()));
+            final var response = this.getOpenSearchClient()
+                    .index(r -> r.index(this.getDatabaseChangeLogLockTableName())
+                            .id(lockEntryId(lockEntry.getLockName()))
                             .document(lockEntry)
-                            .refresh(Refresh.WaitFor));
+                            .ifSeqNo(current.seqNo())
+                            .ifPrimaryTerm(current.primaryTerm()));
+            return this.lockCreated(response.seqNo(), response.primaryTerm(), lockEntry, lease);
         } catch (final ResponseException e) {
             if (e.status() == HttpStatus.SC_CONFLICT) {
                 return false;
@@ -109,34 +282,263 @@ public class OpenSearchLockService extends AbstractNoSqlLockService<OpenSearchLi
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
-        return true;
+    }
+
+    private void lockAcquired(final Long seqNo, final Long primaryTerm, final OpenSearchChangeLogLock lockEntry, final Duration lease) {
+        this.lockSeqNo = seqNo;
+        this.lockPrimaryTerm = primaryTerm;
+        this.lockName = lockEntry.getLockName();
+        this.lockGranted = lockEntry.getLockGranted();
+        this.leaseDuration = lease;
+        this.leaseLost = false;
+        if (lease == null) {
+            this.leaseValidUntil = null;
+            return;
+        }
+
+        this.leaseValidUntil = lockEntry.getLockExpires().toInstant();
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            final var thread = new Thread(r, "liquibase-opensearch-lock-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long interval = Math.max(1, lease.toMillis() / 3);
+        this.heartbeat.scheduleWithFixedDelay(this::renewLease, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Extends the lease of the lock held by this service, runs periodically on the heartbeat thread. The lock entry is
+     * only replaced if it is still the one written by this service, otherwise the lease has been taken over by another
+     * process after it had expired and the lock is lost.
+     */
+    private synchronized void renewLease() {
+        if (this.lockSeqNo == null || this.leaseLost) {
+            return;
+        }
+        final var now = this.getClock().instant();
+        final var lockEntry = new OpenSearchChangeLogLock(LOCK_ENTRY_ID, this.lockGranted, getLockedBy(), Date.from(now.plus(this.leaseDuration)));
+        lockEntry.setLockName(this.lockName);
+        lockEntry.setHistoryIndex(this.getDatabase().getDatabaseChangeLogTableName());
+        try {
+            final var response = this.getOpenSearchClient()
+                    .index(r -> r.index(this.getDatabaseChangeLogLockTableName())
+                            .id(lockEntryId(this.lockName))
+                            .document(lockEntry)
+                            .ifSeqNo(this.lockSeqNo)
+                            .ifPrimaryTerm(this.lockPrimaryTerm));
+            this.lockSeqNo = response.seqNo();
+            this.lockPrimaryTerm = response.primaryTerm();
+            this.leaseValidUntil = lockEntry.getLockExpires().toInstant();
+        } catch (final ResponseException e) {
+            if (e.status() == HttpStatus.SC_CONFLICT) {
+                getLogger().severe("the lease of the changelog lock has been taken over by another process");
+                this.leaseLost = true;
+                this.heartbeat.shutdown();
+                return;
+            }
+            getLogger().warning("failed to renew the lease of the changelog lock, retrying", e);
+        } catch (final IOException | RuntimeException e) {
+            // exceptions must not escape, otherwise no further renewals would be scheduled
+            getLogger().warning("failed to renew the lease of the changelog lock, retrying", e);
+        }
     }
 
     @Override
-    protected void removeLock() throws DatabaseException {
+    protected LockWaitStrategy getLockWaitStrategy() {
+        if (OpenSearchConfiguration.LOCK_WAIT_MODE.getCurrentValue() == OpenSearchConfiguration.LockWaitMode.BACKOFF) {
+            return LockWaitStrategy.exponentialBackoff(
+                    Duration.ofMillis(OpenSearchConfiguration.LOCK_WAIT_INITIAL_INTERVAL.getCurrentValue()),
+                    Duration.ofMillis(OpenSearchConfiguration.LOCK_WAIT_MAX_INTERVAL.getCurrentValue()));
+        }
+        return super.getLockWaitStrategy();
+    }
+
+    /**
+     * With {@link OpenSearchConfiguration#LOCK_WATCH_INTERVAL} the lock entry is read in that interval (a realtime
+     * {@code GET} by id, which is much cheaper than an attempt to acquire the lock) and waiting ends as soon as it is
+     * gone or its lease has expired.
+     */
+    @Override
+    protected void awaitLockRelease(final Duration maxWait) throws InterruptedException, DatabaseException {
+        final int watchInterval = OpenSearchConfiguration.LOCK_WATCH_INTERVAL.getCurrentValue();
+        if (watchInterval <= 0) {
+            super.awaitLockRelease(maxWait);
+            return;
+        }
+
+        final var deadline = this.getClock().instant().plus(maxWait);
+        while (true) {
+            final var remaining = Duration.between(this.getClock().instant(), deadline);
+            if (remaining.isNegative() || remaining.isZero()) {
+                return;
+            }
+            //noinspection BusyWait
+            Thread.sleep(Math.min(watchInterval, remaining.toMillis()));
+            if (!this.isLocked()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Verifies that the lease of the lock held by this service is still valid. Writes which must only be done by the
+     * lock holder (e.g. history entries) call this first so that a process which lost its lease (e.g. because it has
+     * been paused for longer than the lease) doesn't interfere with the process which took over.
+     *
+     * @throws LockException if the lease has been taken over or expired without being renewed.
+     */
+    public void checkLease() throws LockException {
+        final var validUntil = this.leaseValidUntil;
+        if (this.leaseLost) {
+            throw new LockException("the lease of the changelog lock has been taken over by another process");
+        }
+        if (validUntil != null && this.getClock().instant().isAfter(validUntil)) {
+            throw new LockException("the lease of the changelog lock expired at %s without being renewed".formatted(validUntil));
+        }
+    }
+
+    private void stopHeartbeat() {
+        if (this.heartbeat != null) {
+            this.heartbeat.shutdownNow();
+            this.heartbeat = null;
+        }
+        this.leaseValidUntil = null;
+        this.leaseLost = false;
+    }
+
+    /**
+     * Removes the lock entry. If this service holds the lock only the entry it has created is removed, otherwise (e.g.
+     * when forcibly releasing the lock) the entry of the current scope is removed unconditionally, or all entries of the
+     * {@code CHANGELOG} scope for the history index if the changelog isn't known (e.g. for {@code release-locks}).
+     */
+    @Override
+    protected synchronized void removeLock() throws DatabaseException {
+        this.stopHeartbeat();
+        final var seqNo = this.lockSeqNo;
+        final var primaryTerm = this.lockPrimaryTerm;
+        final var name = seqNo != null ? Optional.ofNullable(this.lockName) : this.resolveLockName();
+        this.lockSeqNo = null;
+        this.lockPrimaryTerm = null;
+        this.lockName = null;
+        if (seqNo == null && name == null) {
+            this.removeAllLocks();
+            return;
+        }
         try {
             this.getOpenSearchClient()
                     .delete(r -> r.index(this.getDatabaseChangeLogLockTableName())
-                            .id(String.valueOf(LOCK_ENTRY_ID))
-                            .refresh(Refresh.WaitFor));
+                            .id(lockEntryId(name.orElse(null)))
+                            .ifSeqNo(seqNo)
+                            .ifPrimaryTerm(primaryTerm));
+        } catch (final ResponseException e) {
+            if (seqNo != null && e.status() == HttpStatus.SC_CONFLICT) {
+                getLogger().warning("the lock entry has been replaced by another process (%s), leaving it in place".formatted(e.getMessage()));
+                return;
+            }
+            throw new DatabaseException(e);
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
     }
 
+    /**
+     * Removes the locks of all changelogs writing to the history index of this database. Entries of older versions
+     * which don't record their history index are removed as well. The locks of other scopes are left alone.
+     */
+    private void removeAllLocks() throws DatabaseException {
+        final var historyIndex = this.getDatabase().getDatabaseChangeLogTableName();
+        getLogger().warning("the changelog isn't known, removing the locks of all changelogs using the history index %s".formatted(historyIndex));
+        try {
+            // delete by query only sees refreshed entries
+            this.getOpenSearchClient().indices().refresh(r -> r.index(this.getDatabaseChangeLogLockTableName()));
+            this.getOpenSearchClient()
+                    .deleteByQuery(r -> r.index(this.getDatabaseChangeLogLockTableName())
+                            .query(q -> q.bool(b -> b
+                                    .filter(f -> f.prefix(p -> p.field("lockName").value(CHANGELOG_LOCK_PREFIX)))
+                                    .should(s -> s.term(t -> t.field("historyIndex").value(FieldValue.of(historyIndex))))
+                                    .should(s -> s.bool(o -> o.mustNot(n -> n.exists(e -> e.field("historyIndex")))))
+                                    .minimumShouldMatch("1"))));
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    /**
+     * Reads the lock entry by its id. Unlike a search this is realtime and thus sees the lock entry even if the index
+     * has not been refreshed yet.
+     */
     @Override
     protected List<DatabaseChangeLogLock> queryLocks() throws DatabaseException {
+        final var name = this.resolveLockName();
+        if (name == null) {
+            return this.queryAllLocks();
+        }
         try {
+            final var response = this.getLockEntry(name.orElse(null));
+            return response.found() ? List.of(response.source()) : List.of();
+        } catch (final IOException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    /**
+     * Lists the entries of all lock scopes. This is a search and thus needs a refresh first.
+     */
+    @Override
+    protected List<DatabaseChangeLogLock> queryAllLocks() throws DatabaseException {
+        try {
+            this.getOpenSearchClient().indices().refresh(r -> r.index(this.getDatabaseChangeLogLockTableName()));
             final var response = this.getOpenSearchClient()
-                    .search(s -> s.index(this.getDatabaseChangeLogLockTableName()), DatabaseChangeLogLock.class);
+                    .search(r -> r.index(this.getDatabaseChangeLogLockTableName())
+                            .size(MAX_LISTED_LOCKS)
+                            .sort(so -> so.field(f -> f.field("lockGranted").order(SortOrder.Asc))), OpenSearchChangeLogLock.class);
             return response.hits().hits().stream()
                     .map(Hit::source)
+                    .<DatabaseChangeLogLock>map(lock -> lock)
                     .toList();
         } catch (final IOException e) {
             throw new DatabaseException(e);
         }
     }
 
+    private GetResponse<OpenSearchChangeLogLock> getLockEntry(final String name) throws IOException {
+        return this.getOpenSearchClient()
+                .get(r -> r.index(this.getDatabaseChangeLogLockTableName()).id(lockEntryId(name)), OpenSearchChangeLogLock.class);
+    }
+
+    /**
+     * @return the name of the lock of the configured {@link OpenSearchConfiguration#LOCK_SCOPE}, empty for the global
+     * lock and {@code null} if it can't be resolved because the changelog is not known.
+     */
+    @SuppressWarnings("OptionalAssignedToNull")
+    private Optional<String> resolveLockName() throws DatabaseException {
+        return switch (OpenSearchConfiguration.LOCK_SCOPE.getCurrentValue()) {
+            case GLOBAL -> Optional.empty();
+            case HISTORY_INDEX -> Optional.of("historyIndex:" + this.getDatabase().getDatabaseChangeLogTableName());
+            case CHANGELOG -> {
+                final var changeLog = ((OpenSearchHistoryService) Scope.getCurrentScope().getSingleton(ChangeLogHistoryServiceFactory.class)
+                        .getChangeLogService(this.getDatabase())).getDatabaseChangeLog();
+                yield changeLog == null ? null : Optional.of(CHANGELOG_LOCK_PREFIX + DatabaseChangeLog.normalizePath(changeLog.getFilePath()));
+            }
+            case NAME -> Optional.of(Optional.ofNullable(OpenSearchConfiguration.LOCK_NAME.getCurrentValue())
+                    .filter(name -> !name.isBlank())
+                    .orElseThrow(() -> new DatabaseException("%s must be set for the changelog lock scope NAME".formatted(OpenSearchConfiguration.LOCK_NAME.getKey()))));
+        };
+    }
+
+    private static String lockEntryId(final String lockName) {
+        return lockName == null ? String.valueOf(LOCK_ENTRY_ID) : lockName;
+    }
+
+    /**
+     * Also stops renewing the lease, if the lock is still held it will expire.
+     */
+    @Override
+    public synchronized void reset() {
+        this.stopHeartbeat();
+        super.reset();
+    }
+
     @Override
     public boolean supports(final Database database) {
         return OpenSearchLiquibaseDatabase.PRODUCT_NAME.equals(database.getDatabaseProductName());
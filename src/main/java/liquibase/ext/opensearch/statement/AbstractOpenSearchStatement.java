@@ -21,8 +21,11 @@ public abstract class AbstractOpenSearchStatement extends AbstractSqlStatement {
     public abstract String toString();
 
     protected OpenSearchClient getOpenSearchClient(final OpenSearchLiquibaseDatabase database) {
-        final var connection = (OpenSearchConnection)database.getConnection();
-        return connection.getOpenSearchClient();
+        return this.getConnection(database).getOpenSearchClient();
+    }
+
+    protected OpenSearchConnection getConnection(final OpenSearchLiquibaseDatabase database) {
+        return (OpenSearchConnection) database.getConnection();
     }
 
 }
@@ -0,0 +1,131 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.exception.DatabaseException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the items of a bulk request in NDJSON format (an action line, followed by a source line unless it's a
+ * {@code delete}) and groups them into batches which are bounded by their number of items and their size in bytes.
+ * Only one batch is kept in memory at a time, thus files of any size can be read.
+ */
+class BulkBatchReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final List<String> ACTIONS = List.of("index", "create", "update", "delete");
+
+    /**
+     * A single item of a bulk request.
+     *
+     * @param line   the line of the action in the file (starting at 1), used to report failures.
+     * @param action the action line.
+     * @param source the source line, {@code null} for {@code delete}.
+     */
+    record Item(long line, byte[] action, byte[] source) {
+
+        int size() {
+            return this.action.length + 1 + (this.source == null ? 0 : this.source.length + 1);
+        }
+
+        void writeTo(final ByteArrayOutputStream out) {
+            out.writeBytes(this.action);
+            out.write('\n');
+            if (this.source != null) {
+                out.writeBytes(this.source);
+                out.write('\n');
+            }
+        }
+    }
+
+    private final BufferedReader reader;
+    private final int maxItems;
+    private final int maxBytes;
+
+    private long lineNumber;
+
+    /**
+     * The item which didn't fit into the previous batch anymore.
+     */
+    private Item nextItem;
+
+    BulkBatchReader(final BufferedReader reader, final int maxItems, final int maxBytes) {
+        this.reader = reader;
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the next batch, {@code null} once all items have been read. A batch contains at least one item, even if
+     * that item alone is bigger than the maximum size.
+     */
+    List<Item> next() throws IOException, DatabaseException {
+        final var batch = new ArrayList<Item>();
+        int bytes = 0;
+        while (batch.size() < this.maxItems) {
+            final var item = this.nextItem != null ? this.nextItem : this.readItem();
+            this.nextItem = null;
+            if (item == null) {
+                break;
+            }
+            if (!batch.isEmpty() && bytes + item.size() > this.maxBytes) {
+                this.nextItem = item;
+                break;
+            }
+            batch.add(item);
+            bytes += item.size();
+        }
+        return batch.isEmpty() ? null : batch;
+    }
+
+    private Item readItem() throws IOException, DatabaseException {
+        final var action = this.readLine();
+        if (action == null) {
+            return null;
+        }
+        final var actionLine = this.lineNumber;
+        final var actionName = actionOf(action, actionLine);
+        if ("delete".equals(actionName)) {
+            return new Item(actionLine, action.getBytes(StandardCharsets.UTF_8), null);
+        }
+        final var source = this.readLine();
+        if (source == null) {
+            throw new DatabaseException("line %d: the %s action is not followed by a document".formatted(actionLine, actionName));
+        }
+        return new Item(actionLine, action.getBytes(StandardCharsets.UTF_8), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the next line which isn't blank, {@code null} at the end of the file.
+     */
+    private String readLine() throws IOException {
+        String line;
+        do {
+            line = this.reader.readLine();
+            this.lineNumber++;
+        } while (line != null && line.isBlank());
+        return line;
+    }
+
+    private static String actionOf(final String line, final long lineNumber) throws DatabaseException {
+        try {
+            final var node = MAPPER.readTree(line);
+            if (node != null && node.isObject() && node.size() == 1) {
+                final var action = node.fieldNames().next();
+                if (ACTIONS.contains(action)) {
+                    return action;
+                }
+            }
+        } catch (final JsonProcessingException e) {
+            throw new DatabaseException("line %d: invalid bulk action: %s".formatted(lineNumber, e.getOriginalMessage()), e);
+        }
+        throw new DatabaseException("line %d: expected a bulk action (one of %s) but got %s".formatted(lineNumber, String.join(", ", ACTIONS), line));
+    }
+}
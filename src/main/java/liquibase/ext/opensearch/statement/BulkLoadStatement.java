@@ -0,0 +1,265 @@
+package liquibase.ext.opensearch.statement;
+
+import liquibase.Scope;
+import liquibase.exception.DatabaseException;
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import liquibase.logging.Logger;
+import liquibase.resource.Resource;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.opensearch.client.opensearch.generic.Bodies;
+import org.opensearch.client.opensearch.generic.Body;
+import org.opensearch.client.opensearch.generic.OpenSearchGenericClient;
+import org.opensearch.client.opensearch.generic.Response;
+import org.opensearch.client.transport.httpclient5.ResponseException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the items of an NDJSON file with the bulk API. The file is streamed and split into batches (see
+ * {@link BulkBatchReader}), up to {@link #concurrency} batches are sent at the same time. Items which have been
+ * rejected because the cluster is overloaded are retried with exponential backoff, any other failed item fails the
+ * statement once the batches in flight have completed.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class BulkLoadStatement extends AbstractOpenSearchStatement implements OpenSearchExecuteStatement {
+
+    private static final Duration INITIAL_RETRY_DELAY = Duration.ofMillis(100);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(10);
+    private static final int MAX_REPORTED_FAILURES = 10;
+
+    private final Logger log = Scope.getCurrentScope().getLog(getClass());
+
+    private String file;
+
+    @EqualsAndHashCode.Exclude
+    private Resource resource;
+
+    /**
+     * Index used for items which don't specify one, {@code null} if all items specify their index.
+     */
+    private String index;
+
+    private int batchSize;
+    private int batchBytes;
+    private int concurrency;
+    private int maxRetries;
+
+    /**
+     * Indices whose settings are relaxed while the file is loaded (see {@link FastIngest}), {@code null} to load it as it
+     * is.
+     */
+    private String fastIngestIndex;
+
+    /**
+     * Number of segments to force merge the {@link #fastIngestIndex} to, {@code null} to not force merge it.
+     */
+    private Integer forceMergeSegments;
+
+    private record Failure(long line, String message) {
+    }
+
+    @Override
+    public String toString() {
+        return String.format("bulk load of %s into %s (batches of up to %d items and %d bytes, %d at a time)",
+                this.getFile(),
+                Optional.ofNullable(this.getIndex()).orElse("the indices given by the items"),
+                this.getBatchSize(),
+                this.getBatchBytes(),
+                this.getConcurrency());
+    }
+
+    @Override
+    public void execute(final OpenSearchLiquibaseDatabase database) throws DatabaseException {
+        log.info(this.toString());
+
+        if (this.getFastIngestIndex() != null) {
+            new FastIngest(this.getOpenSearchClient(database).generic(), this.getFastIngestIndex(), this.getForceMergeSegments(),
+                    "%s:%s".formatted(this.getFile(), this.getFastIngestIndex())).execute(() -> this.loadFile(database));
+            return;
+        }
+        this.loadFile(database);
+    }
+
+    private void loadFile(final OpenSearchLiquibaseDatabase database) throws DatabaseException {
+        final var openSearchClient = this.getOpenSearchClient(database);
+        final var httpClient = openSearchClient.generic();
+        final var connection = this.getConnection(database);
+        final var mapper = openSearchClient._transport().jsonpMapper();
+        final var endpoint = (this.getIndex() == null ? "/_bulk" : "/%s/_bulk".formatted(this.getIndex()))
+                + "?" + ResponseInspector.BULK_FILTER_PATH;
+
+        final var loaded = new AtomicLong();
+        final var batches = new AtomicLong();
+        final Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+        final var error = new AtomicReference<Exception>();
+        final var inFlight = new Semaphore(this.getConcurrency());
+        final ExecutorService pool = Executors.newFixedThreadPool(this.getConcurrency(), runnable -> {
+            final var thread = new Thread(runnable, "liquibase-opensearch-bulk-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (final var reader = new BufferedReader(new InputStreamReader(this.getResource().openInputStream(), StandardCharsets.UTF_8))) {
+            final var batchReader = new BulkBatchReader(reader, this.getBatchSize(), this.getBatchBytes());
+            // stop reading as soon as something failed, the batches in flight are still completed
+            while (failures.isEmpty() && error.get() == null) {
+                final var batch = batchReader.next();
+                if (batch == null) {
+                    break;
+                }
+                inFlight.acquire();
+                batches.incrementAndGet();
+                pool.execute(() -> {
+                    try {
+                        loaded.addAndGet(this.load(httpClient, connection, mapper, endpoint, batch, failures));
+                    } catch (final Exception e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(this.getConcurrency());
+        } catch (final IOException e) {
+            throw new DatabaseException("failed to read %s".formatted(this.getFile()), e);
+        } catch (final DatabaseException e) {
+            throw new DatabaseException("failed to read %s: %s".formatted(this.getFile(), e.getMessage()), e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("interrupted while loading %s".formatted(this.getFile()), e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (error.get() != null) {
+            throw new DatabaseException("failed to load %s: %s".formatted(this.getFile(), error.get().getMessage()), error.get());
+        }
+        if (!failures.isEmpty()) {
+            throw new DatabaseException(report(this.getFile(), failures));
+        }
+        log.info("loaded %d items of %s in %d batches".formatted(loaded.get(), this.getFile(), batches.get()));
+    }
+
+    /**
+     * Sends the batch and retries the items which have been rejected.
+     *
+     * @return the number of items which have been loaded successfully.
+     */
+    private long load(final OpenSearchGenericClient httpClient, final OpenSearchConnection connection, final JsonpMapper mapper, final String endpoint,
+                      final List<BulkBatchReader.Item> batch, final Queue<Failure> failures) throws IOException, DatabaseException, InterruptedException {
+        long loaded = 0;
+        var items = batch;
+        for (int attempt = 0; ; attempt++) {
+            final var rejected = new ArrayList<BulkBatchReader.Item>();
+            loaded += this.send(httpClient, connection, mapper, endpoint, items, rejected, failures);
+            if (rejected.isEmpty()) {
+                return loaded;
+            }
+            if (attempt >= this.getMaxRetries()) {
+                for (final var item : rejected) {
+                    failures.add(new Failure(item.line(), "still rejected after %d retries".formatted(this.getMaxRetries())));
+                }
+                return loaded;
+            }
+            Thread.sleep(retryDelay(attempt).toMillis());
+            items = rejected;
+        }
+    }
+
+    /**
+     * @return the number of items which have been loaded successfully, rejected and failed items are added to the
+     * given collections.
+     */
+    private long send(final OpenSearchGenericClient httpClient, final OpenSearchConnection connection, final JsonpMapper mapper, final String endpoint,
+                      final List<BulkBatchReader.Item> items, final List<BulkBatchReader.Item> rejected,
+                      final Queue<Failure> failures) throws IOException, DatabaseException {
+        final var body = new ByteArrayOutputStream(items.stream().mapToInt(BulkBatchReader.Item::size).sum());
+        items.forEach(item -> item.writeTo(body));
+
+        final var request = RequestCompression.request(connection, "POST", endpoint, body.toByteArray(), "application/x-ndjson");
+
+        final Response response;
+        try {
+            response = httpClient.execute(request);
+        } catch (final ResponseException e) {
+            // the transport throws on a 429 instead of returning the response, the whole batch has been rejected
+            if (e.status() == HttpStatus.SC_TOO_MANY_REQUESTS) {
+                rejected.addAll(items);
+                return 0;
+            }
+            throw e;
+        }
+        try (response) {
+            if (response.getStatus() >= HttpStatus.SC_BAD_REQUEST) {
+                throw new DatabaseException("bulk request failed with code %d: %s".formatted(response.getStatus(),
+                        response.getBody().map(Body::bodyAsString).orElse("")));
+            }
+            final var bulkResponse = Bodies.json(response.getBody().orElseThrow(), BulkResponse.class, mapper);
+            if (!bulkResponse.errors()) {
+                return items.size();
+            }
+
+            long loaded = 0;
+            // the items of the response are in the same order as the ones of the request
+            for (int i = 0; i < items.size(); i++) {
+                final var result = bulkResponse.items().get(i);
+                if (result.error() == null) {
+                    loaded++;
+                } else if (isRejected(result)) {
+                    rejected.add(items.get(i));
+                } else {
+                    failures.add(new Failure(items.get(i).line(), "%s %s/%s failed with code %d: %s: %s".formatted(
+                            result.operationType().jsonValue(), result.index(), result.id(), result.status(),
+                            result.error().type(), result.error().reason())));
+                }
+            }
+            return loaded;
+        }
+    }
+
+    private static boolean isRejected(final BulkResponseItem item) {
+        return item.status() == HttpStatus.SC_TOO_MANY_REQUESTS
+                || Optional.ofNullable(item.error().type()).filter(type -> type.endsWith("rejected_execution_exception")).isPresent();
+    }
+
+    static Duration retryDelay(final int attempt) {
+        final var delay = INITIAL_RETRY_DELAY.multipliedBy(1L << Math.min(attempt, 20));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+
+    private static String report(final String file, final Queue<Failure> failures) {
+        final var reported = failures.stream()
+                .sorted(Comparator.comparingLong(Failure::line))
+                .limit(MAX_REPORTED_FAILURES)
+                .map(failure -> "line %d: %s".formatted(failure.line(), failure.message()))
+                .collect(Collectors.joining("\n"));
+        final var more = failures.size() > MAX_REPORTED_FAILURES ? "\n... and %d more".formatted(failures.size() - MAX_REPORTED_FAILURES) : "";
+        return "failed to load %d items of %s:\n%s%s".formatted(failures.size(), file, reported, more);
+    }
+}
@@ -0,0 +1,240 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import liquibase.Scope;
+import liquibase.exception.DatabaseException;
+import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import liquibase.logging.Logger;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.opensearch.generic.Body;
+import org.opensearch.client.opensearch.generic.Requests;
+import org.opensearch.client.opensearch.generic.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Consecutive {@link HttpRequestStatement}s which each write a single document with an id ({@code PUT|POST
+ * /<index>/_doc/<id>}), sent as one bulk request. Every request becomes an {@code index} action. A bulk request doesn't
+ * stop at a failed item, thus the documents are read with {@code _mget} beforehand, and if an item fails the documents
+ * written by the items after it are restored (or deleted if they didn't exist). The statement then fails with the error
+ * of the failed item, leaving the documents as if the requests had been executed one after the other.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class CoalescedWritesStatement extends AbstractOpenSearchStatement implements OpenSearchExecuteStatement {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String BULK_ENDPOINT = "/_bulk?" + ResponseInspector.BULK_FILTER_PATH;
+
+    /**
+     * Index and optional id of a single document write, without a query string and without escaped characters.
+     */
+    private static final Pattern DOCUMENT_PATH = Pattern.compile("/?([^/_?%+*,][^/?%+*,]*)/_doc/([^/?%+]+)");
+
+    /**
+     * A document written by one of the requests.
+     */
+    private record Document(String index, String id) {
+    }
+
+    private final Logger log = Scope.getCurrentScope().getLog(getClass());
+
+    private List<HttpRequestStatement> requests;
+
+    /**
+     * @return whether the request writes a single document with an id and an inline JSON body and can be sent as part
+     * of a bulk request. Without an id the document couldn't be restored if an item before it fails.
+     */
+    public static boolean isCoalescible(final HttpRequestStatement request) {
+        if (request.getBody() == null || request.getBodyFile() != null || request.getFastIngestIndex() != null
+                || (request.getContentType() != null && !request.getContentType().startsWith(ContentType.APPLICATION_JSON.getMimeType()))) {
+            return false;
+        }
+        final var matcher = DOCUMENT_PATH.matcher(Optional.ofNullable(request.getPath()).orElse(""));
+        if (!matcher.matches()) {
+            return false;
+        }
+        final var method = request.getMethod().toUpperCase(Locale.ROOT);
+        if (!method.equals("POST") && !method.equals("PUT")) {
+            return false;
+        }
+        try {
+            return MAPPER.readTree(request.getBody()) instanceof ObjectNode;
+        } catch (final JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return this.getRequests().stream().allMatch(HttpRequestStatement::isRepeatable);
+    }
+
+    @Override
+    public String toString() {
+        return "bulk request with %d coalesced document writes".formatted(this.getRequests().size());
+    }
+
+    @Override
+    public void execute(final OpenSearchLiquibaseDatabase database) throws DatabaseException {
+        log.info(this.toString());
+
+        final var documents = new ArrayList<Document>(this.getRequests().size());
+        final var body = new ByteArrayOutputStream();
+        try {
+            for (final var request : this.getRequests()) {
+                final var matcher = DOCUMENT_PATH.matcher(request.getPath());
+                if (!matcher.matches()) {
+                    throw new DatabaseException("%s can't be coalesced".formatted(request));
+                }
+                documents.add(new Document(matcher.group(1), matcher.group(2)));
+                final var action = MAPPER.createObjectNode();
+                action.putObject("index").put("_index", matcher.group(1)).put("_id", matcher.group(2));
+                writeAction(body, action, request.getBody());
+            }
+        } catch (final IOException e) {
+            throw new DatabaseException("failed to build the %s".formatted(this), e);
+        }
+
+        try {
+            final var previousSources = this.readSources(database, documents);
+            final ResponseInspector.Inspection inspection;
+            try (final var response = this.bulk(database, body.toByteArray(), this.toString())) {
+                inspection = ResponseInspector.inspect(response);
+            }
+            if (inspection.status() >= HttpStatus.SC_BAD_REQUEST || inspection.error() != null) {
+                throw new DatabaseException("Could not execute the %s: %s".formatted(this, inspection.describe()));
+            }
+            if (!inspection.failures().isEmpty()) {
+                this.restore(database, documents, previousSources, (int) inspection.failures().get(0).item());
+            }
+            checkItems(this.getRequests(), inspection);
+        } catch (final IOException e) {
+            throw new DatabaseException("failed to execute the %s".formatted(this), e);
+        }
+    }
+
+    /**
+     * Sends a bulk request, transient failures are retried according to {@link RequestRetry} like the requests
+     * themselves would have been.
+     */
+    private Response bulk(final OpenSearchLiquibaseDatabase database, final byte[] body, final String description) throws IOException {
+        final var connection = this.getConnection(database);
+        final var httpClient = this.getOpenSearchClient(database).generic();
+        return RequestRetry.execute(connection, "POST", description,
+                () -> httpClient.execute(RequestCompression.request(connection, "POST", BULK_ENDPOINT, body, "application/x-ndjson")));
+    }
+
+    /**
+     * @return the current {@code _source} of the documents, {@code null} for the ones which don't exist.
+     */
+    private Map<Document, JsonNode> readSources(final OpenSearchLiquibaseDatabase database, final List<Document> documents)
+            throws IOException, DatabaseException {
+        final var distinct = List.copyOf(new LinkedHashSet<>(documents));
+        final var request = MAPPER.createObjectNode();
+        final var docs = request.putArray("docs");
+        distinct.forEach(document -> docs.addObject().put("_index", document.index()).put("_id", document.id()));
+
+        final var httpClient = this.getOpenSearchClient(database).generic();
+        final var body = MAPPER.writeValueAsBytes(request);
+        final JsonNode response;
+        try (final var mget = RequestRetry.execute(this.getConnection(database), "POST", "multi get of the documents of the %s".formatted(this),
+                () -> httpClient.execute(Requests.builder()
+                        .endpoint("/_mget")
+                        .method("POST")
+                        .body(Body.from(body, ContentType.APPLICATION_JSON.getMimeType()))
+                        .build()))) {
+            if (mget.getStatus() >= HttpStatus.SC_BAD_REQUEST) {
+                throw new DatabaseException("POST /_mget failed with code %d: %s".formatted(mget.getStatus(),
+                        mget.getBody().map(Body::bodyAsString).orElse("")));
+            }
+            response = LongRunningTask.readJson(mget).path("docs");
+        }
+
+        final var sources = new HashMap<Document, JsonNode>();
+        for (int i = 0; i < distinct.size(); i++) {
+            // documents of missing indices come with an error instead of "found": false
+            final var doc = response.path(i);
+            sources.put(distinct.get(i), doc.path("found").asBoolean() ? doc.get("_source") : null);
+        }
+        return sources;
+    }
+
+    /**
+     * Restores the documents written by the items after the failed one to their content before it: the one written by
+     * an item before it or else the one read before the bulk request.
+     */
+    private void restore(final OpenSearchLiquibaseDatabase database, final List<Document> documents,
+                         final Map<Document, JsonNode> previousSources, final int failedItem) throws IOException, DatabaseException {
+        final var restored = new LinkedHashSet<>(documents.subList(failedItem + 1, documents.size()));
+        if (restored.isEmpty()) {
+            return;
+        }
+        log.info("restoring %d documents written after the failed item %d of the %s".formatted(restored.size(), failedItem, this));
+
+        final var body = new ByteArrayOutputStream();
+        for (final var document : restored) {
+            final var written = documents.subList(0, failedItem).lastIndexOf(document);
+            final var source = written >= 0 ? this.getRequests().get(written).getBody() : Optional.ofNullable(previousSources.get(document))
+                    .map(JsonNode::toString)
+                    .orElse(null);
+            final var action = MAPPER.createObjectNode();
+            action.putObject(source != null ? "index" : "delete").put("_index", document.index()).put("_id", document.id());
+            writeAction(body, action, source);
+        }
+
+        try (final var response = this.bulk(database, body.toByteArray(), "restore of the documents of the %s".formatted(this))) {
+            // deleting a document which hasn't been written (because its item failed as well) isn't a failure
+            final var inspection = ResponseInspector.inspect(response);
+            if (inspection.failed()) {
+                throw new DatabaseException("Could not restore the documents written after the failed item %d of the %s: %s"
+                        .formatted(failedItem, this, inspection.describe()));
+            }
+        }
+    }
+
+    /**
+     * Writes an action and its source (if any) as lines of a bulk request.
+     */
+    private static void writeAction(final ByteArrayOutputStream body, final ObjectNode action, final String source) throws IOException {
+        body.write(MAPPER.writeValueAsBytes(action));
+        body.write('\n');
+        if (source != null) {
+            // line breaks can only be whitespace between the tokens, JSON strings can't contain them unescaped
+            body.write(source.replace('\n', ' ').replace('\r', ' ').getBytes(StandardCharsets.UTF_8));
+            body.write('\n');
+        }
+    }
+
+    /**
+     * @throws DatabaseException with the error of the first failed item, reported for the request it belongs to.
+     */
+    static void checkItems(final List<HttpRequestStatement> requests, final ResponseInspector.Inspection inspection) throws DatabaseException {
+        if (inspection.failures().isEmpty()) {
+            return;
+        }
+        final var failure = inspection.failures().get(0);
+        final var request = failure.item() >= 0 && failure.item() < requests.size() ? requests.get((int) failure.item()) : null;
+        throw new DatabaseException("Could not execute %s (coalesced into a bulk request): %s"
+                .formatted(request != null ? request : "a request", failure));
+    }
+}
@@ -0,0 +1,219 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import liquibase.Scope;
+import liquibase.exception.DatabaseException;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
+import liquibase.logging.Logger;
+import org.opensearch.client.opensearch.generic.OpenSearchGenericClient;
+import org.opensearch.client.opensearch.generic.Requests;
+import org.opensearch.client.transport.TransportOptions;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Relaxes the settings of indices which slow down ingesting many documents while a change is executed:
+ * <ol>
+ *     <li>the {@code number_of_replicas} and {@code refresh_interval} of every index and its health are recorded in the
+ *     {@code _meta} of the index,</li>
+ *     <li>the index is set to no replicas and no refreshes,</li>
+ *     <li>the change is executed,</li>
+ *     <li>the index is refreshed and optionally force merged (while it has no replicas, so that the replicas are recovered
+ *     from the merged segments),</li>
+ *     <li>the recorded settings are restored and the record is removed,</li>
+ *     <li>we wait until the index has the health it had before (i.e. its replicas have been recovered).</li>
+ * </ol>
+ * The settings are also restored if the change fails. If the process gets killed in between the record stays in the
+ * {@code _meta} of the index, the next fast ingest into the index (usually the one of the failed changeset, which is
+ * executed again) then restores the recorded settings instead of the relaxed ones it finds.
+ */
+class FastIngest {
+
+    static final String FAST_INGEST_META = "liquibase_fast_ingest";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final List<String> HEALTH_ORDER = List.of("red", "yellow", "green");
+    private static final Duration INITIAL_HEALTH_POLL_INTERVAL = Duration.ofMillis(500);
+    private static final Duration MAX_HEALTH_POLL_INTERVAL = Duration.ofSeconds(10);
+
+    private final Logger log = Scope.getCurrentScope().getLog(getClass());
+
+    /**
+     * The change executed in between.
+     */
+    @FunctionalInterface
+    interface Action {
+        void execute() throws DatabaseException;
+    }
+
+    private final OpenSearchGenericClient httpClient;
+    private final String indices;
+    private final Integer forceMergeSegments;
+    private final String owner;
+
+    /**
+     * @param httpClient         client which doesn't throw on HTTP errors.
+     * @param indices            index, comma separated indices or pattern.
+     * @param forceMergeSegments number of segments to force merge every index to, {@code null} to not force merge.
+     * @param owner              identifies the change, it is part of the {@code X-Opaque-Id} of the force merges.
+     */
+    FastIngest(final OpenSearchGenericClient httpClient, final String indices, final Integer forceMergeSegments, final String owner) {
+        this.httpClient = httpClient;
+        this.indices = indices;
+        this.forceMergeSegments = forceMergeSegments;
+        this.owner = owner;
+    }
+
+    void execute(final Action action) throws DatabaseException {
+        // index -> record, filled as the indices are relaxed so that we know what to restore if something fails
+        final var records = new LinkedHashMap<String, JsonNode>();
+        try {
+            this.relax(records);
+            action.execute();
+            for (final var index : records.keySet()) {
+                IndexRequests.request(this.httpClient, "POST", "/%s/_refresh".formatted(index), null);
+                if (this.forceMergeSegments != null) {
+                    this.forceMerge(index);
+                }
+            }
+        } catch (final IOException e) {
+            this.restoreAfterFailure(records, e);
+            throw new DatabaseException("fast ingest into %s failed".formatted(this.indices), e);
+        } catch (final DatabaseException | RuntimeException e) {
+            this.restoreAfterFailure(records, e);
+            throw e;
+        } catch (final InterruptedException e) {
+            this.restoreAfterFailure(records, e);
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("interrupted while force merging %s".formatted(this.indices), e);
+        }
+
+        try {
+            for (final var record : records.entrySet()) {
+                this.restore(record.getKey(), record.getValue());
+            }
+            for (final var record : records.entrySet()) {
+                this.awaitHealth(record.getKey(), record.getValue().path("health").asText());
+            }
+        } catch (final IOException e) {
+            throw new DatabaseException("failed to restore the settings of %s".formatted(this.indices), e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("interrupted while waiting for the health of %s".formatted(this.indices), e);
+        }
+    }
+
+    /**
+     * Records the settings of every index (unless there is a record left by an interrupted fast ingest) and relaxes them.
+     */
+    private void relax(final Map<String, JsonNode> records) throws IOException, DatabaseException {
+        final var settings = IndexRequests.request(this.httpClient, "GET", "/%s/_settings?flat_settings=true".formatted(this.indices), null);
+        for (final var entry : settings.properties()) {
+            final var index = entry.getKey();
+            var record = IndexRequests.getMeta(this.httpClient, index).path(FAST_INGEST_META);
+            if (record.isMissingNode()) {
+                record = recordOf(entry.getValue().path("settings"), this.healthOf(index));
+                IndexRequests.updateMeta(this.httpClient, index, FAST_INGEST_META, record);
+            } else {
+                log.warning("index %s has been left with relaxed settings by an interrupted fast ingest, %s will be restored afterwards"
+                        .formatted(index, record.path("settings")));
+            }
+            records.put(index, record);
+            log.info("relaxing the settings of %s for fast ingest".formatted(index));
+            IndexRequests.request(this.httpClient, "PUT", "/%s/_settings".formatted(index), MAPPER.createObjectNode()
+                    .put("index.number_of_replicas", 0)
+                    .put("index.refresh_interval", "-1"));
+        }
+    }
+
+    /**
+     * @param settings flat settings of the index.
+     * @return the record of the settings to restore ({@code null} resets a setting to its default) and the health of the
+     * index.
+     */
+    static ObjectNode recordOf(final JsonNode settings, final String health) {
+        final var record = MAPPER.createObjectNode();
+        final var restored = record.putObject("settings");
+        for (final var setting : new String[] {"index.number_of_replicas", "index.refresh_interval"}) {
+            restored.set(setting, settings.path(setting).isMissingNode() ? MAPPER.nullNode() : settings.get(setting));
+        }
+        return record.put("health", health);
+    }
+
+    private void restore(final String index, final JsonNode record) throws IOException, DatabaseException {
+        log.info("restoring %s of %s".formatted(record.path("settings"), index));
+        IndexRequests.request(this.httpClient, "PUT", "/%s/_settings".formatted(index), record.path("settings"));
+        IndexRequests.request(this.httpClient, "POST", "/%s/_refresh".formatted(index), null);
+        IndexRequests.updateMeta(this.httpClient, index, FAST_INGEST_META, null);
+    }
+
+    /**
+     * Restores the settings of the indices which have been relaxed, failures are added to the original one. An index
+     * whose settings couldn't be restored keeps its record, so they are restored by the next fast ingest.
+     */
+    private void restoreAfterFailure(final Map<String, JsonNode> records, final Exception failure) {
+        for (final var record : records.entrySet()) {
+            try {
+                this.restore(record.getKey(), record.getValue());
+            } catch (final IOException | DatabaseException | RuntimeException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    private void forceMerge(final String index) throws IOException, DatabaseException, InterruptedException {
+        final var description = "force merge of %s to %d segments".formatted(index, this.forceMergeSegments);
+        final var endpoint = "/%s/_forcemerge?max_num_segments=%d&wait_for_completion=false".formatted(index, this.forceMergeSegments);
+        // the documents have just been loaded, a force merge completed by an earlier run doesn't cover them
+        final var task = new LongRunningTask(this.httpClient, LongRunningTask.Api.FORCE_MERGE,
+                LongRunningTask.opaqueIdOf(this.owner, description), description, false);
+        final var taskId = task.startOrResume(headers -> {
+            final var transportOptions = TransportOptions.builder();
+            headers.forEach(transportOptions::addHeader);
+            return this.httpClient.withTransportOptions(transportOptions.build())
+                    .execute(Requests.builder().endpoint(endpoint).method("POST").build());
+        });
+        task.await(taskId);
+    }
+
+    private String healthOf(final String index) throws IOException, DatabaseException {
+        return IndexRequests.request(this.httpClient, "GET", "/_cluster/health/%s".formatted(index), null).path("status").asText();
+    }
+
+    /**
+     * Polls the health of the index with increasing intervals until it has (at least) the given health, at most
+     * {@link OpenSearchConfiguration#FAST_INGEST_HEALTH_TIMEOUT}. There is nothing to wait for if the index has been red
+     * before. The health isn't awaited by the cluster ({@code wait_for_status}) as the client fails on the 408 it
+     * responds with if the health hasn't been reached in time.
+     */
+    private void awaitHealth(final String index, final String health) throws IOException, DatabaseException, InterruptedException {
+        if (!"green".equals(health) && !"yellow".equals(health)) {
+            return;
+        }
+        final var timeout = Duration.ofSeconds(OpenSearchConfiguration.FAST_INGEST_HEALTH_TIMEOUT.getCurrentValue());
+        final var start = System.nanoTime();
+        var interval = INITIAL_HEALTH_POLL_INTERVAL;
+        while (true) {
+            final var current = this.healthOf(index);
+            if (HEALTH_ORDER.indexOf(current) >= HEALTH_ORDER.indexOf(health)) {
+                log.info("index %s is %s again".formatted(index, current));
+                return;
+            }
+            final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+            if (!timeout.isZero() && elapsed.compareTo(timeout) >= 0) {
+                throw new DatabaseException("index %s is still %s after %d seconds, it has been %s before the fast ingest"
+                        .formatted(index, current, elapsed.toSeconds(), health));
+            }
+            log.info("index %s is %s, waiting for it to become %s again".formatted(index, current, health));
+            Thread.sleep(interval.toMillis());
+            interval = interval.multipliedBy(2).compareTo(MAX_HEALTH_POLL_INTERVAL) > 0 ? MAX_HEALTH_POLL_INTERVAL : interval.multipliedBy(2);
+        }
+    }
+}
@@ -1,26 +1,48 @@
 package liquibase.ext.opensearch.statement;
 
 import liquibase.Scope;
+import liquibase.changelog.ChangeSet;
 import liquibase.exception.DatabaseException;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
 import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
 import liquibase.logging.Logger;
+import liquibase.resource.Resource;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.apache.hc.core5.http.ContentType;
-import org.opensearch.client.opensearch.generic.Bodies;
-import org.opensearch.client.opensearch.generic.OpenSearchGenericClient.ClientOptions;
+import org.opensearch.client.opensearch.generic.Body;
 import org.opensearch.client.opensearch.generic.Requests;
+import org.opensearch.client.opensearch.generic.Response;
 import org.opensearch.client.transport.TransportOptions;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 @AllArgsConstructor
 @Getter
 @EqualsAndHashCode(callSuper = true)
 public class HttpRequestStatement extends AbstractOpenSearchStatement implements OpenSearchExecuteStatement {
 
+    /**
+     * Paths to which a {@code PUT} creates or replaces something (a document, a mapping, settings, an alias, a template,
+     * a pipeline or a script), so that it can be sent again with the same result.
+     */
+    private static final Pattern REPLACING_PATH = Pattern.compile("/?(?:[^/_?][^/?]*/(?:_doc/[^/?]+|_mapping|_settings|_aliases?/[^/?]+)"
+            + "|_index_template/[^/?]+|_component_template/[^/?]+|_template/[^/?]+|_ingest/pipeline/[^/?]+|_scripts/[^/?]+"
+            + "|_cluster/settings)/?(?:\\?.*)?");
+
+    /**
+     * Path of an index, to which a {@code PUT} creates it and a {@code DELETE} deletes it.
+     */
+    private static final Pattern INDEX_PATH = Pattern.compile("/?[^/_?][^/?]*/?(?:\\?.*)?");
+
     private final Logger log = Scope.getCurrentScope().getLog(getClass());
 
     private String method;
@@ -28,42 +50,185 @@ public class HttpRequestStatement extends AbstractOpenSearchStatement implements
     private String path;
     private String body;
 
+    /**
+     * File the body is streamed from instead of {@link #body}, {@code null} if the body is given inline.
+     */
+    private String bodyFile;
+
+    @EqualsAndHashCode.Exclude
+    private Resource bodyResource;
+
+    /**
+     * Changeset the request belongs to, {@code null} if it is not executed as part of a changeset.
+     */
+    @EqualsAndHashCode.Exclude
+    private ChangeSet changeSet;
+
+    /**
+     * IDs of the changesets which must have been executed before this request (only relevant if requests are
+     * executed in parallel, see {@link liquibase.ext.opensearch.configuration.OpenSearchConfiguration#EXECUTION_CONCURRENCY}).
+     */
+    private List<String> dependsOn;
+
+    /**
+     * Indices whose settings are relaxed while the request is executed (see {@link FastIngest}), {@code null} to execute
+     * it as it is.
+     */
+    private String fastIngestIndex;
+
+    /**
+     * Number of segments to force merge the {@link #fastIngestIndex} to, {@code null} to not force merge it.
+     */
+    private Integer forceMergeSegments;
+
+    /**
+     * Whether to send the body gzip compressed (see {@link RequestCompression}), {@code null} to follow the connection.
+     */
+    private Boolean compress;
+
+    public HttpRequestStatement(final String method, final String contentType, final String path, final String body) {
+        this(method, contentType, path, body, null, null, null, List.of(), null, null, null);
+    }
+
     @Override
     public String toString() {
-        return String.format("HTTP %s request against %s (with a body of size %d and content type %s)",
+        return String.format("HTTP %s request against %s (with a body %s and content type %s)",
                 this.getMethod(),
                 this.getPath(),
-                Optional.ofNullable(this.getBody()).map(String::length).orElse(0),
+                this.getBodyFile() != null ? "from " + this.getBodyFile() : "of size " + Optional.ofNullable(this.getBody()).map(String::length).orElse(0),
                 Optional.ofNullable(this.getContentType()).orElse(ContentType.APPLICATION_JSON.getMimeType()));
     }
 
+    /**
+     * @return whether the request only reads or is a {@code PUT} which replaces what it writes, see {@link #REPLACING_PATH}.
+     */
+    @Override
+    public boolean isRepeatable() {
+        if (this.getFastIngestIndex() != null) {
+            return false;
+        }
+        final var method = this.getMethod().toUpperCase(Locale.ROOT);
+        final var path = Optional.ofNullable(this.getPath()).orElse("");
+        return method.equals("GET") || method.equals("HEAD")
+                || (method.equals("PUT") && REPLACING_PATH.matcher(path).matches() && !path.contains("op_type=create"));
+    }
+
     @Override
     public void execute(final OpenSearchLiquibaseDatabase database) throws DatabaseException {
         log.info(this.toString());
 
+        if (this.getFastIngestIndex() != null) {
+            new FastIngest(this.getOpenSearchClient(database).generic(), this.getFastIngestIndex(), this.getForceMergeSegments(),
+                    String.valueOf(this.getChangeSet())).execute(() -> this.executeRequest(database));
+            return;
+        }
+        this.executeRequest(database);
+    }
+
+    private void executeRequest(final OpenSearchLiquibaseDatabase database) throws DatabaseException {
+        final var api = OpenSearchConfiguration.ASYNC_TASKS.getCurrentValue()
+                ? LongRunningTask.apiOf(this.getMethod(), this.getPath())
+                : Optional.<LongRunningTask.Api>empty();
+        if (api.isPresent()) {
+            this.executeAsTask(database, api.get());
+            return;
+        }
+
+        final var attempts = new AtomicInteger();
+        try (final var response = this.execute(database, this.getPath(), Map.of(), attempts)) {
+            final var inspection = ResponseInspector.inspect(response);
+            if (inspection.failed() && attempts.get() > 1 && this.isExecutedByEarlierAttempt(inspection)) {
+                log.info("%s has been executed by an earlier attempt which failed transiently: %s".formatted(this, inspection.error()));
+                return;
+            }
+            if (inspection.failed()) {
+                throw new DatabaseException(String.format("HTTP request failed with code %d: %s", response.getStatus(), inspection.describe()));
+            }
+        } catch (final IOException e) {
+            throw new DatabaseException("failed to execute the HTTP request", e);
+        }
+    }
+
+    /**
+     * An attempt which failed transiently might still have created or deleted the index, then the retry fails because
+     * it exists already or doesn't exist anymore.
+     */
+    private boolean isExecutedByEarlierAttempt(final ResponseInspector.Inspection inspection) {
+        final var method = this.getMethod().toUpperCase(Locale.ROOT);
+        final var error = Optional.ofNullable(inspection.error()).orElse("");
+        if (!INDEX_PATH.matcher(Optional.ofNullable(this.getPath()).orElse("")).matches()) {
+            return false;
+        }
+        return (method.equals("PUT") && error.startsWith("resource_already_exists_exception"))
+                || (method.equals("DELETE") && error.startsWith("index_not_found_exception"));
+    }
+
+    private void executeAsTask(final OpenSearchLiquibaseDatabase database, final LongRunningTask.Api api) throws DatabaseException {
+        final var opaqueId = LongRunningTask.opaqueIdOf(String.valueOf(this.getChangeSet()), this.getMethod(), this.getPath(),
+                Optional.ofNullable(this.getBodyFile()).orElse(this.getBody()));
+        final var task = new LongRunningTask(this.getOpenSearchClient(database).generic(), api, opaqueId, this.toString(),
+                LongRunningTask.isResumable(this.getChangeSet()));
+        try {
+            final var taskId = task.startOrResume(headers -> this.execute(database, LongRunningTask.withoutWaiting(this.getPath()), headers, new AtomicInteger()));
+            task.await(taskId);
+        } catch (final IOException e) {
+            throw new DatabaseException("failed to execute the HTTP request", e);
+        } catch (final InterruptedException e) {
+            // the task keeps running and is picked up again by the next run
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("interrupted while waiting for the task of the HTTP request", e);
+        }
+    }
+
+    /**
+     * Executes the request, transient failures are retried according to {@link RequestRetry}.
+     *
+     * @param attempts counts the attempts made.
+     */
+    private Response execute(final OpenSearchLiquibaseDatabase database, final String path, final Map<String, String> headers,
+                             final AtomicInteger attempts) throws IOException {
+        final var inlineBody = this.getBodyResource() == null ? this.getBody().getBytes(StandardCharsets.UTF_8) : null;
+        final var compress = RequestCompression.isEnabled(this.getConnection(database), this.getCompress(),
+                inlineBody != null ? inlineBody.length : -1);
+
         final var transportOptionsBuilder = TransportOptions.builder();
         if (this.contentType != null) {
             transportOptionsBuilder.addHeader("Content-Type", this.getContentType());
         }
+        if (compress) {
+            transportOptionsBuilder.addHeader(RequestCompression.CONTENT_ENCODING.getKey(), RequestCompression.CONTENT_ENCODING.getValue());
+        }
+        headers.forEach(transportOptionsBuilder::addHeader);
         final var transportOptions = transportOptionsBuilder.build();
 
+        // the response is inspected instead of letting the client throw with the whole body in the message
         final var httpClient = this.getOpenSearchClient(database).generic()
-                .withClientOptions(ClientOptions.throwOnHttpErrors())
                 .withTransportOptions(transportOptions);
 
-        final var request = Requests.builder()
-                .endpoint(this.getPath())
-                .method(this.getMethod())
-                .body(Bodies.json(this.getBody()))
-                .build();
-
-        try (final var response = httpClient.execute(request)) {
-            if (response.getStatus() >= 400) {
-                throw new DatabaseException(String.format("HTTP request failed with code %d: %s", response.getStatus(), response));
+        return RequestRetry.execute(this.getConnection(database), this.getMethod(), "HTTP request %s %s".formatted(this.getMethod(), path), () -> {
+            attempts.incrementAndGet();
+            // the body is opened again for every attempt
+            try (final var body = this.openBody(inlineBody, compress)) {
+                return httpClient.execute(Requests.builder()
+                        .endpoint(path)
+                        .method(this.getMethod())
+                        .body(body)
+                        .build());
             }
-        } catch (final IOException e) {
-            throw new DatabaseException("failed to execute the HTTP request", e);
+        });
+    }
+
+    /**
+     * A body file is passed to the client as a stream, thus it is copied into the request once without being decoded
+     * into a {@link String}. It is compressed while it is streamed as well.
+     */
+    private Body openBody(final byte[] inlineBody, final boolean compress) throws IOException {
+        final var contentType = Optional.ofNullable(this.getContentType()).orElse(ContentType.APPLICATION_JSON.getMimeType());
+        if (inlineBody != null) {
+            return compress ? RequestCompression.compress(inlineBody, contentType) : Body.from(inlineBody, contentType);
         }
+        final var in = this.getBodyResource().openInputStream();
+        return compress ? RequestCompression.compress(in, contentType) : Body.from(in, contentType);
     }
 
 }
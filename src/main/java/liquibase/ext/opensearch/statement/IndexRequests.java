@@ -0,0 +1,72 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import liquibase.exception.DatabaseException;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.opensearch.generic.Body;
+import org.opensearch.client.opensearch.generic.OpenSearchGenericClient;
+import org.opensearch.client.opensearch.generic.Requests;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON requests against the index APIs which are shared by statements changing an index in several steps.
+ */
+final class IndexRequests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private IndexRequests() {
+    }
+
+    /**
+     * @param httpClient client which doesn't throw on HTTP errors.
+     * @param body       {@code null} to send the request without a body.
+     * @return the body of the response.
+     * @throws DatabaseException if the request failed.
+     */
+    static JsonNode request(final OpenSearchGenericClient httpClient, final String method, final String endpoint,
+                            final JsonNode body) throws IOException, DatabaseException {
+        final var request = Requests.builder().endpoint(endpoint).method(method);
+        if (body != null) {
+            request.body(Body.from(body.toString().getBytes(StandardCharsets.UTF_8), ContentType.APPLICATION_JSON.getMimeType()));
+        }
+        try (final var response = httpClient.execute(request.build())) {
+            if (response.getStatus() >= HttpStatus.SC_BAD_REQUEST) {
+                throw new DatabaseException("%s %s failed with code %d: %s".formatted(method, endpoint, response.getStatus(),
+                        response.getBody().map(Body::bodyAsString).orElse("")));
+            }
+            return LongRunningTask.readJson(response);
+        }
+    }
+
+    /**
+     * @return the {@code _meta} of the mapping of the index, a missing node if it has none.
+     */
+    static JsonNode getMeta(final OpenSearchGenericClient httpClient, final String index) throws IOException, DatabaseException {
+        return request(httpClient, "GET", "/%s/_mapping".formatted(index), null)
+                .path(index).path("mappings").path("_meta");
+    }
+
+    /**
+     * Sets (or removes if {@code null}) a key of the {@code _meta} of the mapping of the index, keeping the rest of it.
+     */
+    static void updateMeta(final OpenSearchGenericClient httpClient, final String index, final String key,
+                           final JsonNode value) throws IOException, DatabaseException {
+        final var meta = getMeta(httpClient, index) instanceof ObjectNode existing
+                ? existing.deepCopy()
+                : MAPPER.createObjectNode();
+        if (value == null) {
+            meta.remove(key);
+        } else {
+            meta.set(key, value);
+        }
+        final var mapping = MAPPER.createObjectNode();
+        mapping.set("_meta", meta);
+        request(httpClient, "PUT", "/%s/_mapping".formatted(index), mapping);
+    }
+}
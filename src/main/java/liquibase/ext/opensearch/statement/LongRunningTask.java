@@ -0,0 +1,384 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.Scope;
+import liquibase.changelog.ChangeSet;
+import liquibase.exception.DatabaseException;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
+import liquibase.logging.Logger;
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.opensearch.generic.Body;
+import org.opensearch.client.opensearch.generic.OpenSearchGenericClient;
+import org.opensearch.client.opensearch.generic.Requests;
+import org.opensearch.client.opensearch.generic.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * APIs which can run for longer than a request should take ({@code _reindex}, {@code _update_by_query},
+ * {@code _delete_by_query} and {@code _forcemerge}) are started as a task ({@code wait_for_completion=false}) and then
+ * polled using the tasks API until they have completed, so that they aren't bound by the socket timeout.
+ * <p>
+ * The request starting the task is sent with an {@code X-Opaque-Id} which identifies the request. If a task with the same
+ * ID is still running (e.g. because the previous run got killed while waiting for it) we wait for that task instead of
+ * starting a new one. The same applies to a task which has completed successfully in the meantime: its result is stored
+ * in the {@code .tasks} index (as it has been started with {@code wait_for_completion=false}) and used instead of
+ * executing the request again, unless completed tasks must not be resumed (e.g. for changesets which run every time).
+ */
+class LongRunningTask {
+
+    static final String OPAQUE_ID_HEADER = "X-Opaque-Id";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Number of the latest completed tasks of the API which are searched for the {@code X-Opaque-Id}, the headers of
+     * the stored tasks are not indexed.
+     */
+    private static final int COMPLETED_TASKS_SEARCHED = 100;
+
+    private static final Duration INITIAL_POLL_INTERVAL = Duration.ofMillis(500);
+    private static final Duration PROGRESS_REPORT_INTERVAL = Duration.ofSeconds(10);
+
+    private final Logger log = Scope.getCurrentScope().getLog(getClass());
+
+    /**
+     * The APIs which are executed as a task, with the action of their task.
+     */
+    enum Api {
+        REINDEX("_reindex", "indices:data/write/reindex"),
+        UPDATE_BY_QUERY("_update_by_query", "indices:data/write/update/byquery"),
+        DELETE_BY_QUERY("_delete_by_query", "indices:data/write/delete/byquery"),
+        FORCE_MERGE("_forcemerge", "indices:admin/forcemerge");
+
+        private final String endpoint;
+        private final String action;
+
+        Api(final String endpoint, final String action) {
+            this.endpoint = endpoint;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Sends the request which starts the task.
+     */
+    @FunctionalInterface
+    interface StartRequest {
+        Response execute(Map<String, String> headers) throws IOException;
+    }
+
+    /**
+     * Called after every poll of a task which hasn't completed yet.
+     */
+    @FunctionalInterface
+    interface PollListener {
+        void polled(String taskId) throws IOException, DatabaseException;
+    }
+
+    private final OpenSearchGenericClient httpClient;
+    private final Api api;
+    private final String opaqueId;
+    private final String description;
+    private final boolean resumeCompleted;
+
+    /**
+     * @param httpClient      client which doesn't throw on HTTP errors.
+     * @param description     used in log messages and errors.
+     * @param resumeCompleted whether the result of a task with the same {@code X-Opaque-Id} which has completed
+     *                        successfully is used instead of starting the task again, see {@link #isResumable(ChangeSet)}.
+     */
+    LongRunningTask(final OpenSearchGenericClient httpClient, final Api api, final String opaqueId, final String description,
+                    final boolean resumeCompleted) {
+        this.httpClient = httpClient;
+        this.api = api;
+        this.opaqueId = opaqueId;
+        this.description = description;
+        this.resumeCompleted = resumeCompleted;
+    }
+
+    /**
+     * @return whether a completed task of the changeset can be used instead of starting it again. Changesets which run
+     * every time or on every change are executed again on purpose, a task of an earlier run would have the same
+     * {@code X-Opaque-Id}.
+     */
+    static boolean isResumable(final ChangeSet changeSet) {
+        return changeSet == null || !(changeSet.isAlwaysRun() || changeSet.isRunOnChange());
+    }
+
+    /**
+     * @return the API which is called by the request, empty if it isn't one which is executed as a task. Requests which
+     * set {@code wait_for_completion} themselves are executed as they are.
+     */
+    static Optional<Api> apiOf(final String method, final String path) {
+        if (!"POST".equalsIgnoreCase(method) || path == null) {
+            return Optional.empty();
+        }
+        final var query = path.indexOf('?');
+        if (query >= 0 && path.substring(query + 1).contains("wait_for_completion")) {
+            return Optional.empty();
+        }
+        final var segments = (query >= 0 ? path.substring(0, query) : path).split("/");
+        final var lastSegment = segments.length == 0 ? "" : segments[segments.length - 1];
+        return Arrays.stream(Api.values()).filter(api -> api.endpoint.equals(lastSegment)).findFirst();
+    }
+
+    /**
+     * @return the path with {@code wait_for_completion=false} added to its query.
+     */
+    static String withoutWaiting(final String path) {
+        return path + (path.indexOf('?') >= 0 ? "&" : "?") + "wait_for_completion=false";
+    }
+
+    /**
+     * @return an {@code X-Opaque-Id} which identifies a request by the given parts (e.g. its changeset and content), so
+     * that its task can be found again by the next run.
+     */
+    static String opaqueIdOf(final String... parts) {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (final var part : parts) {
+            messageDigest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+        }
+        return "liquibase-" + HexFormat.of().formatHex(messageDigest.digest(), 0, 16);
+    }
+
+    /**
+     * Starts the task unless a task started by a previous run with the same {@code X-Opaque-Id} is still running or has
+     * completed successfully.
+     *
+     * @return the ID of the task.
+     */
+    String startOrResume(final StartRequest start) throws IOException, DatabaseException {
+        final var running = this.findRunning();
+        if (running.isPresent()) {
+            log.info("task %s of a previous run is still running, waiting for it instead of starting it again".formatted(running.get()));
+            return running.get();
+        }
+        final var completed = this.resumeCompleted ? this.findCompleted() : Optional.<String>empty();
+        if (completed.isPresent()) {
+            log.info("task %s of a previous run has completed, using its result instead of starting it again".formatted(completed.get()));
+            return completed.get();
+        }
+        try (final var response = start.execute(Map.of(OPAQUE_ID_HEADER, this.opaqueId))) {
+            if (response.getStatus() >= HttpStatus.SC_BAD_REQUEST) {
+                throw new DatabaseException(String.format("HTTP request failed with code %d: %s", response.getStatus(), response));
+            }
+            return taskIdOf(response);
+        }
+    }
+
+    /**
+     * @return the ID of the task which has been started by the given response.
+     */
+    private static String taskIdOf(final Response response) throws IOException, DatabaseException {
+        final var taskId = readJson(response).path("task");
+        if (!taskId.isTextual()) {
+            throw new DatabaseException("expected the ID of a task in the response of the request but got %s".formatted(response));
+        }
+        return taskId.asText();
+    }
+
+    /**
+     * @return the time at which the task has been started in milliseconds since the epoch (clock of the cluster).
+     */
+    long startTimeOf(final String taskId) throws IOException, DatabaseException {
+        return this.get("/_tasks/%s".formatted(taskId)).path("task").path("start_time_in_millis").asLong();
+    }
+
+    /**
+     * @return the ID of a task which has been started by a request with the same {@code X-Opaque-Id} and is still
+     * running.
+     */
+    private Optional<String> findRunning() throws IOException, DatabaseException {
+        final var tasks = this.get("/_tasks?detailed=true&actions=%s".formatted(this.api.action));
+        return StreamSupport.stream(tasks.path("nodes").spliterator(), false)
+                .flatMap(node -> node.path("tasks").properties().stream())
+                .filter(task -> task.getValue().path("parent_task_id").isMissingNode())
+                .filter(task -> this.opaqueId.equals(task.getValue().path("headers").path(OPAQUE_ID_HEADER).asText(null)))
+                .map(task -> task.getKey())
+                .findFirst();
+    }
+
+    /**
+     * @return the ID of the latest task which has been started by a request with the same {@code X-Opaque-Id} and has
+     * completed successfully, according to the results stored in the {@code .tasks} index.
+     */
+    private Optional<String> findCompleted() throws IOException {
+        final var query = MAPPER.createObjectNode();
+        query.put("size", COMPLETED_TASKS_SEARCHED);
+        final var bool = query.putObject("query").putObject("bool");
+        bool.putArray("filter")
+                .add(MAPPER.createObjectNode().set("term", MAPPER.createObjectNode().put("completed", true)))
+                .add(MAPPER.createObjectNode().set("term", MAPPER.createObjectNode().put("task.action", this.api.action)));
+        bool.putArray("must_not")
+                .add(MAPPER.createObjectNode().set("exists", MAPPER.createObjectNode().put("field", "task.parent_task_id")));
+        query.putArray("sort").addObject().put("task.start_time_in_millis", "desc");
+
+        final JsonNode hits;
+        try {
+            hits = IndexRequests.request(this.httpClient, "POST", "/.tasks/_search?ignore_unavailable=true", query).path("hits").path("hits");
+        } catch (final DatabaseException e) {
+            // e.g. no permission to read the task results, the task is started again as before
+            log.info("failed to look up completed tasks of %s: %s".formatted(this.description, e.getMessage()));
+            return Optional.empty();
+        }
+        return StreamSupport.stream(hits.spliterator(), false)
+                .map(hit -> hit.path("_source"))
+                .filter(result -> this.opaqueId.equals(result.path("task").path("headers").path(OPAQUE_ID_HEADER).asText(null)))
+                .filter(LongRunningTask::isSuccessful)
+                .map(result -> "%s:%d".formatted(result.path("task").path("node").asText(), result.path("task").path("id").asLong()))
+                .findFirst();
+    }
+
+    /**
+     * @return whether the completed task has neither failed nor been cancelled, see {@link #checkResult(String, JsonNode)}.
+     */
+    static boolean isSuccessful(final JsonNode result) {
+        final var response = result.path("response");
+        return result.path("error").isMissingNode() && !response.isMissingNode() && !response.hasNonNull("canceled")
+                && response.path("failures").isEmpty();
+    }
+
+    /**
+     * Polls the task with increasing intervals (up to {@link OpenSearchConfiguration#TASK_POLL_MAX_INTERVAL}) until it
+     * has completed and reports its progress in between. The task is cancelled if it doesn't complete within
+     * {@link OpenSearchConfiguration#TASK_TIMEOUT}.
+     *
+     * @return the response of the task.
+     * @throws DatabaseException if the task has failed, has been cancelled or timed out.
+     */
+    JsonNode await(final String taskId) throws IOException, DatabaseException, InterruptedException {
+        return this.await(taskId, id -> {
+        });
+    }
+
+    /**
+     * Like {@link #await(String)}, the listener is called after every poll while the task is still running.
+     */
+    JsonNode await(final String taskId, final PollListener pollListener) throws IOException, DatabaseException, InterruptedException {
+        final var timeout = Duration.ofSeconds(OpenSearchConfiguration.TASK_TIMEOUT.getCurrentValue());
+        final var maxInterval = Duration.ofMillis(OpenSearchConfiguration.TASK_POLL_MAX_INTERVAL.getCurrentValue());
+        final var start = System.nanoTime();
+        var nextReport = start + PROGRESS_REPORT_INTERVAL.toNanos();
+        var interval = INITIAL_POLL_INTERVAL;
+
+        log.info("waiting for task %s of %s".formatted(taskId, this.description));
+        while (true) {
+            final var result = this.get("/_tasks/%s".formatted(taskId));
+            final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+            if (result.path("completed").asBoolean()) {
+                checkResult(taskId, result);
+                log.info("task %s completed after %d seconds".formatted(taskId, elapsed.toSeconds()));
+                return result.path("response");
+            }
+            if (!timeout.isZero() && elapsed.compareTo(timeout) >= 0) {
+                this.cancel(taskId);
+                throw new DatabaseException("task %s of %s did not complete within %d seconds and has been cancelled"
+                        .formatted(taskId, this.description, timeout.toSeconds()));
+            }
+            if (System.nanoTime() >= nextReport) {
+                log.info("task %s: %s after %d seconds".formatted(taskId, progressOf(result.path("task").path("status")), elapsed.toSeconds()));
+                nextReport = System.nanoTime() + PROGRESS_REPORT_INTERVAL.toNanos();
+            }
+            pollListener.polled(taskId);
+
+            var sleep = interval;
+            if (!timeout.isZero() && timeout.minus(elapsed).compareTo(sleep) < 0) {
+                sleep = timeout.minus(elapsed);
+            }
+            Thread.sleep(Math.max(sleep.toMillis(), 1));
+            interval = interval.multipliedBy(2).compareTo(maxInterval) > 0 ? maxInterval : interval.multipliedBy(2);
+        }
+    }
+
+    private void checkResult(final String taskId, final JsonNode result) throws DatabaseException {
+        final var error = result.path("error");
+        if (!error.isMissingNode()) {
+            throw new DatabaseException("task %s of %s failed: %s: %s".formatted(taskId, this.description,
+                    error.path("type").asText(), error.path("reason").asText()));
+        }
+        final var response = result.path("response");
+        if (response.hasNonNull("canceled")) {
+            throw new DatabaseException("task %s of %s has been cancelled: %s".formatted(taskId, this.description,
+                    response.path("canceled").asText()));
+        }
+        final var failures = response.path("failures");
+        if (failures.isArray() && !failures.isEmpty()) {
+            throw new DatabaseException("task %s of %s completed with %d failures, the first one is: %s".formatted(taskId,
+                    this.description, failures.size(), failures.get(0)));
+        }
+    }
+
+    /**
+     * @return the progress of a task of the bulk by scroll APIs (reindex, update and delete by query), including the
+     * progress of each slice for sliced tasks. Other tasks don't report their progress.
+     */
+    static String progressOf(final JsonNode status) {
+        if (!status.has("total")) {
+            return "still running";
+        }
+        final var progress = "%d of %d documents processed".formatted(processedOf(status), status.path("total").asLong());
+        final var slices = StreamSupport.stream(status.path("slices").spliterator(), false)
+                .filter(slice -> slice.has("total"))
+                .map(slice -> "slice %d: %d of %d".formatted(slice.path("slice_id").asInt(), processedOf(slice), slice.path("total").asLong()))
+                .collect(Collectors.joining(", "));
+        return slices.isEmpty() ? progress : "%s (%s)".formatted(progress, slices);
+    }
+
+    /**
+     * @return the number of documents processed by a task (or the response) of the bulk by scroll APIs.
+     */
+    static long processedOf(final JsonNode status) {
+        return status.path("created").asLong() + status.path("updated").asLong() + status.path("deleted").asLong()
+                + status.path("noops").asLong() + status.path("version_conflicts").asLong();
+    }
+
+    private void cancel(final String taskId) throws IOException {
+        try (final var response = this.httpClient.execute(Requests.builder()
+                .endpoint("/_tasks/%s/_cancel".formatted(taskId))
+                .method("POST")
+                .build())) {
+            if (response.getStatus() >= HttpStatus.SC_BAD_REQUEST) {
+                log.warning("failed to cancel task %s: %s".formatted(taskId, response.getBody().map(Body::bodyAsString).orElse("")));
+            }
+        }
+    }
+
+    private JsonNode get(final String endpoint) throws IOException, DatabaseException {
+        try (final var response = this.httpClient.execute(Requests.builder().endpoint(endpoint).method("GET").build())) {
+            if (response.getStatus() >= HttpStatus.SC_BAD_REQUEST) {
+                throw new DatabaseException("GET %s failed with code %d: %s".formatted(endpoint, response.getStatus(),
+                        response.getBody().map(Body::bodyAsString).orElse("")));
+            }
+            return readJson(response);
+        }
+    }
+
+    static JsonNode readJson(final Response response) throws IOException {
+        final var body = response.getBody();
+        if (body.isEmpty()) {
+            return MAPPER.missingNode();
+        }
+        try (final InputStream in = body.get().body()) {
+            return MAPPER.readTree(in);
+        }
+    }
+}
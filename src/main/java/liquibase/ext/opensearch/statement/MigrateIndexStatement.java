@@ -0,0 +1,245 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import liquibase.Scope;
+import liquibase.changelog.ChangeSet;
+import liquibase.exception.DatabaseException;
+import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import liquibase.logging.Logger;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.opensearch.generic.OpenSearchGenericClient;
+import org.opensearch.client.opensearch.generic.Requests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migrates the index behind an alias to a new index (e.g. to change its mapping) while the alias stays in use:
+ * <ol>
+ *     <li>the new index is created without replicas and without refreshes,</li>
+ *     <li>the documents are copied with a (sliced) reindex,</li>
+ *     <li>if there is a {@link #timestampField} the documents modified in the meantime are copied with a delta reindex,</li>
+ *     <li>the replicas and the refresh interval are restored,</li>
+ *     <li>the alias is moved to the new index with a single {@code _aliases} request,</li>
+ *     <li>if there is a {@link #timestampField} the documents which have been modified in the old index until the alias
+ *     has been moved are copied with a final delta reindex.</li>
+ * </ol>
+ * The reindexes before the alias is moved use external versioning, so a document is only copied if it is newer than its
+ * copy in the new index. Once the alias has been moved the documents in the new index get their own (internal) versions,
+ * thus the final delta reindex only creates documents which don't exist in the new index yet ({@code op_type: create})
+ * and never overwrites writes made through the alias. Every step can be repeated, thus an
+ * interrupted migration is continued by executing the statement again (a reindex which is still running is awaited, see
+ * {@link LongRunningTask}). The state needed for the final delta reindex is kept in the {@code _meta} of the new index
+ * until it has completed.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class MigrateIndexStatement extends AbstractOpenSearchStatement implements OpenSearchExecuteStatement {
+
+    static final String MIGRATION_META = "liquibase_migration";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final List<String> RESTORED_SETTINGS = List.of("number_of_replicas", "refresh_interval");
+
+    private final Logger log = Scope.getCurrentScope().getLog(getClass());
+
+    private String alias;
+    private String newIndex;
+
+    /**
+     * Settings and mappings of the new index (the body of the create index API), {@code null} to create it without any.
+     */
+    private String body;
+
+    /**
+     * Field with the time of the last modification of a document, {@code null} if writes to the old index are stopped
+     * during the migration.
+     */
+    private String timestampField;
+
+    /**
+     * Painless script applied to every document, {@code null} to copy the documents as they are.
+     */
+    private String script;
+
+    private String slices;
+    private Double requestsPerSecond;
+
+    @EqualsAndHashCode.Exclude
+    private ChangeSet changeSet;
+
+    @Override
+    public String toString() {
+        return String.format("migration of alias %s to index %s", this.getAlias(), this.getNewIndex());
+    }
+
+    @Override
+    public void execute(final OpenSearchLiquibaseDatabase database) throws DatabaseException {
+        log.info(this.toString());
+
+        final var httpClient = this.getOpenSearchClient(database).generic();
+        try {
+            final var aliased = IndexRequests.request(httpClient, "GET", "/_alias/%s".formatted(this.getAlias()), null);
+            final var indices = new ArrayList<String>();
+            aliased.fieldNames().forEachRemaining(indices::add);
+
+            if (indices.equals(List.of(this.getNewIndex()))) {
+                this.finishMigration(database, httpClient);
+                return;
+            }
+            if (indices.size() != 1) {
+                throw new DatabaseException("alias %s must point to exactly one index but points to %s".formatted(this.getAlias(), indices));
+            }
+            final var oldIndex = indices.get(0);
+            final var writeIndex = aliased.path(oldIndex).path("aliases").path(this.getAlias()).path("is_write_index");
+
+            final var restoredSettings = this.getRestoredSettings(httpClient, oldIndex);
+            this.createNewIndex(httpClient);
+
+            final var reindex = new ReindexStatement(oldIndex, this.getNewIndex(), null, this.getScript(),
+                    this.getSlices(), this.getRequestsPerSecond(), this.getChangeSet());
+            final var startTime = reindex.reindex(database, this.reindexBody(reindex, null, false),
+                    "reindex of %s into %s".formatted(oldIndex, this.getNewIndex()));
+
+            if (this.getTimestampField() != null) {
+                final var deltaStartTime = reindex.reindex(database, this.reindexBody(reindex, startTime, false),
+                        "delta reindex of %s into %s".formatted(oldIndex, this.getNewIndex()));
+                // written before the alias is moved, so that the final delta reindex is also done if we get interrupted
+                IndexRequests.updateMeta(httpClient, this.getNewIndex(), MIGRATION_META, MAPPER.createObjectNode()
+                        .put("source_index", oldIndex)
+                        .put("modified_since", deltaStartTime));
+            }
+
+            log.info("restoring %s of %s".formatted(restoredSettings, this.getNewIndex()));
+            IndexRequests.request(httpClient, "PUT", "/%s/_settings".formatted(this.getNewIndex()), restoredSettings);
+            IndexRequests.request(httpClient, "POST", "/%s/_refresh".formatted(this.getNewIndex()), null);
+
+            final var actions = MAPPER.createObjectNode();
+            final var actionList = actions.putArray("actions");
+            actionList.addObject().putObject("remove").put("index", oldIndex).put("alias", this.getAlias());
+            final var add = actionList.addObject().putObject("add").put("index", this.getNewIndex()).put("alias", this.getAlias());
+            if (writeIndex.isBoolean()) {
+                add.put("is_write_index", writeIndex.asBoolean());
+            }
+            IndexRequests.request(httpClient, "POST", "/_aliases", actions);
+            log.info("moved alias %s from %s to %s".formatted(this.getAlias(), oldIndex, this.getNewIndex()));
+
+            if (this.getTimestampField() != null) {
+                this.finishMigration(database, httpClient);
+            }
+        } catch (final IOException e) {
+            throw new DatabaseException("failed to execute the %s".formatted(this), e);
+        }
+    }
+
+    /**
+     * Executes the final delta reindex once the alias has been moved, unless it has been done already.
+     */
+    private void finishMigration(final OpenSearchLiquibaseDatabase database, final OpenSearchGenericClient httpClient) throws IOException, DatabaseException {
+        final var migration = IndexRequests.getMeta(httpClient, this.getNewIndex()).path(MIGRATION_META);
+        if (migration.isMissingNode()) {
+            log.info("alias %s already points to %s, nothing to migrate".formatted(this.getAlias(), this.getNewIndex()));
+            return;
+        }
+        final var oldIndex = migration.path("source_index").asText();
+        final var reindex = new ReindexStatement(oldIndex, this.getNewIndex(), null, this.getScript(),
+                this.getSlices(), this.getRequestsPerSecond(), this.getChangeSet());
+        reindex.reindex(database, this.reindexBody(reindex, migration.path("modified_since").asLong(), true),
+                "final delta reindex of %s into %s".formatted(oldIndex, this.getNewIndex()));
+        IndexRequests.updateMeta(httpClient, this.getNewIndex(), MIGRATION_META, null);
+    }
+
+    /**
+     * @param modifiedSince only copy the documents whose {@link #timestampField} is at or after this time (milliseconds
+     *                      since the epoch), {@code null} to copy all documents.
+     * @param aliasMoved    whether writes go to the new index already, then existing documents are never replaced.
+     */
+    ObjectNode reindexBody(final ReindexStatement reindex, final Long modifiedSince, final boolean aliasMoved) throws DatabaseException {
+        final var body = reindex.buildBody();
+        // conflicts are expected: copies which are up-to-date (or, once the alias has been moved, exist at all)
+        body.put("conflicts", "proceed");
+        if (aliasMoved) {
+            ((ObjectNode) body.get("dest")).put("op_type", "create");
+        } else {
+            ((ObjectNode) body.get("dest")).put("version_type", "external");
+        }
+        if (modifiedSince != null) {
+            ((ObjectNode) body.get("source")).putObject("query").putObject("range").putObject(this.getTimestampField())
+                    .put("gte", modifiedSince)
+                    .put("format", "epoch_millis");
+        }
+        return body;
+    }
+
+    /**
+     * Creates the new index without replicas and refreshes, if it exists already (because the migration has been
+     * interrupted) only its settings are changed.
+     */
+    private void createNewIndex(final OpenSearchGenericClient httpClient) throws IOException, DatabaseException {
+        try (final var response = httpClient.execute(Requests.builder().endpoint("/%s".formatted(this.getNewIndex())).method("HEAD").build())) {
+            if (response.getStatus() == HttpStatus.SC_OK) {
+                log.info("index %s exists already, continuing the migration".formatted(this.getNewIndex()));
+                IndexRequests.request(httpClient, "PUT", "/%s/_settings".formatted(this.getNewIndex()), withFastIngestSettings(MAPPER.createObjectNode()));
+                return;
+            }
+        }
+        final var body = this.parseBody();
+        withFastIngestSettings(body.withObjectProperty("settings"));
+        IndexRequests.request(httpClient, "PUT", "/%s".formatted(this.getNewIndex()), body);
+    }
+
+    private static ObjectNode withFastIngestSettings(final ObjectNode settings) {
+        for (final var setting : RESTORED_SETTINGS) {
+            settings.remove(setting);
+            settings.remove("index." + setting);
+            if (settings.get("index") instanceof ObjectNode index) {
+                index.remove(setting);
+            }
+        }
+        return settings.put("index.number_of_replicas", 0).put("index.refresh_interval", "-1");
+    }
+
+    /**
+     * @return the settings which are restored once the documents have been copied: the ones of the body of the new
+     * index, or the ones of the old index if the body doesn't contain them ({@code null} resets them to the default).
+     */
+    ObjectNode getRestoredSettings(final OpenSearchGenericClient httpClient, final String oldIndex) throws IOException, DatabaseException {
+        final var settings = this.parseBody().path("settings");
+        final var oldSettings = IndexRequests.request(httpClient, "GET", "/%s/_settings?flat_settings=true".formatted(oldIndex), null)
+                .path(oldIndex).path("settings");
+        final var restored = MAPPER.createObjectNode();
+        for (final var setting : RESTORED_SETTINGS) {
+            var value = settings.path("index." + setting);
+            if (value.isMissingNode()) {
+                value = settings.path("index").path(setting);
+            }
+            if (value.isMissingNode()) {
+                value = settings.path(setting);
+            }
+            if (value.isMissingNode()) {
+                value = oldSettings.path("index." + setting);
+            }
+            restored.set("index." + setting, value.isMissingNode() ? MAPPER.nullNode() : value);
+        }
+        return restored;
+    }
+
+    private ObjectNode parseBody() throws DatabaseException {
+        if (this.getBody() == null) {
+            return MAPPER.createObjectNode();
+        }
+        try {
+            return (ObjectNode) MAPPER.readTree(this.getBody());
+        } catch (final JsonProcessingException | ClassCastException e) {
+            throw new DatabaseException("invalid body of index %s: %s".formatted(this.getNewIndex(), e.getMessage()), e);
+        }
+    }
+}
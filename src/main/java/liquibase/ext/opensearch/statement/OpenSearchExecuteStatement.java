@@ -27,4 +27,13 @@ public interface OpenSearchExecuteStatement {
 
    void execute(final OpenSearchLiquibaseDatabase database) throws DatabaseException;
 
+   /**
+    * @return whether executing the statement again after it has been executed already has the same result and doesn't
+    * fail. Buffered history entries (see {@link liquibase.ext.opensearch.configuration.OpenSearchConfiguration#HISTORY_WRITE_BEHIND})
+    * are written before a statement which isn't repeatable is executed, so that it can't be executed again after a crash.
+    */
+   default boolean isRepeatable() {
+      return false;
+   }
+
 }
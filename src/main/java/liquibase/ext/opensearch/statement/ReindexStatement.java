@@ -0,0 +1,197 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import liquibase.Scope;
+import liquibase.changelog.ChangeSet;
+import liquibase.exception.DatabaseException;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
+import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import liquibase.logging.Logger;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.opensearch.generic.Body;
+import org.opensearch.client.opensearch.generic.OpenSearchGenericClient;
+import org.opensearch.client.opensearch.generic.Requests;
+import org.opensearch.client.transport.TransportOptions;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies documents from one index to another with the reindex API. The reindex is executed as a task (see
+ * {@link LongRunningTask}), optionally sliced and throttled. The throttle can be changed while the task is running with
+ * {@link OpenSearchConfiguration#REINDEX_REQUESTS_PER_SECOND}. Once the task has completed the counts of its response
+ * are checked, every document of the source must have been processed.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class ReindexStatement extends AbstractOpenSearchStatement implements OpenSearchExecuteStatement {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Logger log = Scope.getCurrentScope().getLog(getClass());
+
+    /**
+     * Index (or comma separated indices) to copy the documents from.
+     */
+    private String sourceIndex;
+    private String destIndex;
+
+    /**
+     * Query selecting the documents to copy (JSON), {@code null} to copy all documents.
+     */
+    private String query;
+
+    /**
+     * Painless script applied to every document, {@code null} to copy the documents as they are.
+     */
+    private String script;
+
+    /**
+     * Number of slices or {@code auto}, {@code null} to not slice the reindex.
+     */
+    private String slices;
+
+    /**
+     * Throttle of the reindex, {@code null} or -1 to not throttle it.
+     */
+    private Double requestsPerSecond;
+
+    /**
+     * Changeset the reindex belongs to, {@code null} if it is not executed as part of a changeset.
+     */
+    @EqualsAndHashCode.Exclude
+    private ChangeSet changeSet;
+
+    @Override
+    public String toString() {
+        return String.format("reindex of %s into %s (%s, %s)",
+                this.getSourceIndex(),
+                this.getDestIndex(),
+                this.getSlices() == null ? "not sliced" : "slices: " + this.getSlices(),
+                "requests per second: " + formatRequestsPerSecond(this.getRequestsPerSecond()));
+    }
+
+    @Override
+    public void execute(final OpenSearchLiquibaseDatabase database) throws DatabaseException {
+        log.info(this.toString());
+        this.reindex(database, this.buildBody(), this.toString());
+    }
+
+    /**
+     * Executes a reindex with the given body (see {@link #buildBody()}) as a task, with the slices and the throttle of
+     * this statement, and checks the counts of its response.
+     *
+     * @param description identifies the reindex within the changeset, it is part of its {@code X-Opaque-Id}.
+     * @return the time at which the task has been started in milliseconds since the epoch (clock of the cluster).
+     */
+    long reindex(final OpenSearchLiquibaseDatabase database, final ObjectNode body, final String description) throws DatabaseException {
+        final var httpClient = this.getOpenSearchClient(database).generic();
+        final var task = new LongRunningTask(httpClient, LongRunningTask.Api.REINDEX,
+                LongRunningTask.opaqueIdOf(String.valueOf(this.getChangeSet()), description, body.toString()), description,
+                LongRunningTask.isResumable(this.getChangeSet()));
+
+        final var requestsPerSecond = Optional.ofNullable(OpenSearchConfiguration.REINDEX_REQUESTS_PER_SECOND.getCurrentValue())
+                .orElse(this.getRequestsPerSecond());
+        final var endpoint = new StringBuilder("/_reindex?wait_for_completion=false&requests_per_second=")
+                .append(formatRequestsPerSecond(requestsPerSecond));
+        if (this.getSlices() != null) {
+            endpoint.append("&slices=").append(this.getSlices());
+        }
+
+        try {
+            final var taskId = task.startOrResume(headers -> {
+                final var transportOptions = TransportOptions.builder();
+                headers.forEach(transportOptions::addHeader);
+                return httpClient.withTransportOptions(transportOptions.build()).execute(Requests.builder()
+                        .endpoint(endpoint.toString())
+                        .method("POST")
+                        .body(Body.from(body.toString().getBytes(StandardCharsets.UTF_8), ContentType.APPLICATION_JSON.getMimeType()))
+                        .build());
+            });
+            final var startTime = task.startTimeOf(taskId);
+
+            final var throttle = new AtomicReference<>(requestsPerSecond);
+            final var response = task.await(taskId, id -> throttle.set(this.rethrottle(httpClient, id, throttle.get())));
+
+            final var total = response.path("total").asLong();
+            final var processed = LongRunningTask.processedOf(response);
+            if (processed != total) {
+                throw new DatabaseException("%s processed only %d of %d documents".formatted(description, processed, total));
+            }
+            log.info("%s: %d documents (%d created, %d updated, %d deleted, %d noops, %d version conflicts) in %d ms".formatted(
+                    description, total, response.path("created").asLong(), response.path("updated").asLong(),
+                    response.path("deleted").asLong(), response.path("noops").asLong(),
+                    response.path("version_conflicts").asLong(), response.path("took").asLong()));
+            return startTime;
+        } catch (final IOException e) {
+            throw new DatabaseException("failed to execute the %s".formatted(description), e);
+        } catch (final InterruptedException e) {
+            // the task keeps running and is picked up again by the next run
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("interrupted while waiting for the %s".formatted(description), e);
+        }
+    }
+
+    /**
+     * Applies {@link OpenSearchConfiguration#REINDEX_REQUESTS_PER_SECOND} to the running task if it has been changed.
+     *
+     * @return the throttle of the task.
+     */
+    private Double rethrottle(final OpenSearchGenericClient httpClient, final String taskId, final Double current) throws IOException, DatabaseException {
+        final var configured = OpenSearchConfiguration.REINDEX_REQUESTS_PER_SECOND.getCurrentValue();
+        if (configured == null || Objects.equals(formatRequestsPerSecond(configured), formatRequestsPerSecond(current))) {
+            return current;
+        }
+        final var endpoint = "/_reindex/%s/_rethrottle?requests_per_second=%s".formatted(taskId, formatRequestsPerSecond(configured));
+        try (final var response = httpClient.execute(Requests.builder().endpoint(endpoint).method("POST").build())) {
+            if (response.getStatus() >= HttpStatus.SC_BAD_REQUEST) {
+                throw new DatabaseException("failed to rethrottle task %s with code %d: %s".formatted(taskId, response.getStatus(),
+                        response.getBody().map(Body::bodyAsString).orElse("")));
+            }
+        }
+        log.info("rethrottled task %s to %s requests per second".formatted(taskId, formatRequestsPerSecond(configured)));
+        return configured;
+    }
+
+    /**
+     * @return the body of the reindex request.
+     */
+    ObjectNode buildBody() throws DatabaseException {
+        final var body = MAPPER.createObjectNode();
+        final var source = body.putObject("source").put("index", this.getSourceIndex());
+        if (this.getQuery() != null) {
+            try {
+                source.set("query", MAPPER.readTree(this.getQuery()));
+            } catch (final JsonProcessingException e) {
+                throw new DatabaseException("invalid query: %s".formatted(e.getOriginalMessage()), e);
+            }
+        }
+        body.putObject("dest").put("index", this.getDestIndex());
+        if (this.getScript() != null) {
+            body.putObject("script").put("lang", "painless").put("source", this.getScript());
+        }
+        return body;
+    }
+
+    /**
+     * @return the value of {@code requests_per_second}, -1 (unthrottled) for {@code null} and values which aren't
+     * positive.
+     */
+    static String formatRequestsPerSecond(final Double requestsPerSecond) {
+        if (requestsPerSecond == null || requestsPerSecond <= 0) {
+            return "-1";
+        }
+        return BigDecimal.valueOf(requestsPerSecond).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,121 @@
+package liquibase.ext.opensearch.statement;
+
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import org.opensearch.client.opensearch.generic.Body;
+import org.opensearch.client.opensearch.generic.Request;
+import org.opensearch.client.opensearch.generic.Requests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compression of request bodies, enabled for a connection with its {@code compression} property (see
+ * {@link OpenSearchConnection#COMPRESSION_PROPERTY}). Compressed responses are negotiated by the HTTP client anyway.
+ */
+final class RequestCompression {
+
+    static final Map.Entry<String, String> CONTENT_ENCODING = Map.entry("Content-Encoding", "gzip");
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private RequestCompression() {
+    }
+
+    /**
+     * @param override whether to compress the body regardless of the connection, {@code null} to follow it.
+     * @param size     of the body in bytes, -1 if it isn't known (a streamed body is compressed regardless of its
+     *                 size).
+     */
+    static boolean isEnabled(final OpenSearchConnection connection, final Boolean override, final long size) {
+        if (!Optional.ofNullable(override).orElse(connection.isCompression())) {
+            return false;
+        }
+        return size < 0 || size >= connection.getCompressionThreshold();
+    }
+
+    /**
+     * @return the request with the body, compressed if it is enabled for the connection.
+     */
+    static Request request(final OpenSearchConnection connection, final String method, final String endpoint,
+                           final byte[] body, final String contentType) throws IOException {
+        final var request = Requests.builder().endpoint(endpoint).method(method);
+        if (isEnabled(connection, null, body.length)) {
+            return request.body(compress(body, contentType)).headers(List.of(CONTENT_ENCODING)).build();
+        }
+        return request.body(Body.from(body, contentType)).build();
+    }
+
+    static Body compress(final byte[] body, final String contentType) throws IOException {
+        final var compressed = new ByteArrayOutputStream(body.length / 4);
+        try (final var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return Body.from(compressed.toByteArray(), contentType);
+    }
+
+    /**
+     * @return the body compressed as it is read, so that a streamed body isn't loaded into memory.
+     */
+    static Body compress(final InputStream body, final String contentType) {
+        return Body.from(gzip(body), contentType);
+    }
+
+    /**
+     * The JDK only compresses into an output stream, thus the gzip format (a header, the deflated data and a trailer with
+     * its checksum and size) is put together from a {@link DeflaterInputStream}.
+     */
+    static InputStream gzip(final InputStream in) {
+        final var crc = new CRC32();
+        final var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final var deflated = new DeflaterInputStream(new CheckedInputStream(in, crc), deflater);
+        final var parts = new Enumeration<InputStream>() {
+            private int part;
+
+            @Override
+            public boolean hasMoreElements() {
+                return this.part < 3;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return switch (this.part++) {
+                    case 0 -> new ByteArrayInputStream(GZIP_HEADER);
+                    case 1 -> deflated;
+                    // only requested once the deflated data has been read completely
+                    default -> new ByteArrayInputStream(trailer(crc.getValue(), deflater.getBytesRead()));
+                };
+            }
+        };
+        return new SequenceInputStream(parts) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    private static byte[] trailer(final long crc, final long size) {
+        final var trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (crc >>> (8 * i));
+            trailer[4 + i] = (byte) (size >>> (8 * i));
+        }
+        return trailer;
+    }
+}
@@ -0,0 +1,318 @@
+package liquibase.ext.opensearch.statement;
+
+import liquibase.Scope;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import liquibase.logging.Logger;
+import liquibase.nosql.lockservice.LockWaitStrategy;
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.opensearch.generic.OpenSearchClientException;
+import org.opensearch.client.opensearch.generic.Response;
+import org.opensearch.client.transport.httpclient5.ResponseException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries requests which failed because the cluster was (temporarily) unavailable or overloaded, with exponential
+ * backoff and jitter (or as long as the cluster asks for with {@code Retry-After}):
+ * <ul>
+ *     <li>429 (the request has been rejected) and failures to connect are retried for all methods,</li>
+ *     <li>502, 503, 504 and other I/O errors (e.g. a connection reset) only for idempotent methods, unless
+ *     {@link OpenSearchConfiguration#RETRY_NON_IDEMPOTENT} is set, as the request might have been executed.</li>
+ * </ul>
+ * A {@code Retry-After} is capped at {@link OpenSearchConfiguration#RETRY_MAX_INTERVAL}.
+ * <p>
+ * All requests of a connection share a retry budget and a circuit breaker, so that a cluster which keeps failing isn't
+ * flooded with retries: every retry takes a token from the budget of {@link OpenSearchConfiguration#RETRY_BUDGET}
+ * tokens, every request which succeeds on its first attempt adds a tenth of a token. After
+ * {@link OpenSearchConfiguration#CIRCUIT_BREAKER_THRESHOLD} consecutive failed attempts the circuit breaker opens and
+ * requests fail right away for {@link OpenSearchConfiguration#CIRCUIT_BREAKER_OPEN_DURATION}, afterwards a single
+ * request is let through to find out whether the cluster has recovered.
+ */
+public final class RequestRetry {
+
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(HttpStatus.SC_TOO_MANY_REQUESTS, HttpStatus.SC_BAD_GATEWAY,
+            HttpStatus.SC_SERVICE_UNAVAILABLE, HttpStatus.SC_GATEWAY_TIMEOUT);
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+    private static final double BUDGET_DEPOSIT_PER_REQUEST = 0.1;
+    private static final String RETRY_AFTER = "Retry-After";
+
+    private static final Logger log = Scope.getCurrentScope().getLog(RequestRetry.class);
+
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong attempts = new AtomicLong();
+    private static final AtomicLong retries = new AtomicLong();
+    private static final AtomicLong budgetExhausted = new AtomicLong();
+    private static final AtomicLong circuitBreakerRejections = new AtomicLong();
+
+    /**
+     * State of the retry budget and the circuit breaker per connection, a new connection starts with a full budget and
+     * a closed circuit breaker.
+     */
+    private static final Map<OpenSearchConnection, RequestRetry> CONNECTIONS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private Double budget;
+    private int budgetCapacity;
+    private int consecutiveFailures;
+    private Instant openUntil;
+    private boolean probing;
+
+    /**
+     * Counts of all requests executed with retries since the start of the process.
+     *
+     * @param requests                 requests executed.
+     * @param attempts                 attempts, i.e. requests plus retries.
+     * @param retries                  retries after a transient failure.
+     * @param budgetExhausted          transient failures which weren't retried as the retry budget had been used up.
+     * @param circuitBreakerRejections requests which failed right away as the circuit breaker was open.
+     */
+    public record Metrics(long requests, long attempts, long retries, long budgetExhausted, long circuitBreakerRejections) {
+    }
+
+    /**
+     * Sends the request.
+     */
+    @FunctionalInterface
+    interface Attempt {
+        Response execute() throws IOException;
+    }
+
+    private RequestRetry() {
+    }
+
+    public static Metrics getMetrics() {
+        return new Metrics(requests.get(), attempts.get(), retries.get(), budgetExhausted.get(), circuitBreakerRejections.get());
+    }
+
+    /**
+     * Executes the request and retries it as long as it fails with a transient failure and the retry policy allows it.
+     *
+     * @param connection  the retry budget and the circuit breaker of which are used.
+     * @param description used in log messages.
+     * @return the response of the last attempt.
+     * @throws IOException                 if the last attempt failed, also if the circuit breaker is open.
+     * @throws OpenSearchClientException   if the last attempt failed with an HTTP error (with a client throwing on them).
+     */
+    static Response execute(final OpenSearchConnection connection, final String method, final String description,
+                            final Attempt attempt) throws IOException {
+        final var retry = CONNECTIONS.computeIfAbsent(connection, ignored -> new RequestRetry());
+        final var maxAttempts = Math.max(1, OpenSearchConfiguration.RETRY_MAX_ATTEMPTS.getCurrentValue());
+        final var maxInterval = Duration.ofMillis(OpenSearchConfiguration.RETRY_MAX_INTERVAL.getCurrentValue());
+        final var backoff = LockWaitStrategy.exponentialBackoff(
+                Duration.ofMillis(OpenSearchConfiguration.RETRY_INITIAL_INTERVAL.getCurrentValue()), maxInterval);
+        final var idempotent = IDEMPOTENT_METHODS.contains(method.toUpperCase(Locale.ROOT))
+                || OpenSearchConfiguration.RETRY_NON_IDEMPOTENT.getCurrentValue();
+
+        retry.acquirePermission(description);
+        requests.incrementAndGet();
+        for (int i = 0; ; i++) {
+            attempts.incrementAndGet();
+            Response response = null;
+            Exception failure = null;
+            int status;
+            Optional<Duration> retryAfter;
+            try {
+                response = attempt.execute();
+                status = response.getStatus();
+                retryAfter = retryAfterOf(response);
+            } catch (final ResponseException e) {
+                // the transport fails on 429, 502, 503 and 504 whether the client throws on HTTP errors or not
+                failure = e;
+                status = e.status();
+                retryAfter = retryAfterOf(e);
+            } catch (final OpenSearchClientException e) {
+                failure = e;
+                status = e.status();
+                retryAfter = retryAfterOf(e.response());
+            } catch (final IOException e) {
+                failure = e;
+                status = 0;
+                retryAfter = Optional.empty();
+            }
+
+            final boolean ioFailure = failure != null && status == 0;
+            final boolean transientFailure = ioFailure || RETRYABLE_STATUS.contains(status);
+            final boolean retryable = ioFailure
+                    ? idempotent || isConnectFailure((IOException) failure)
+                    : status == HttpStatus.SC_TOO_MANY_REQUESTS || (transientFailure && idempotent);
+            retry.recordOutcome(!transientFailure, i == 0);
+
+            final var reason = ioFailure ? failure.toString() : "code " + status;
+            if (retryable && i + 1 < maxAttempts && !retry.isOpen() && retry.takeFromBudget(description, reason)) {
+                final var delay = retryDelay(retryAfter, maxInterval, backoff.nextDelay(i));
+                log.info("%s failed with %s, retrying in %d ms (attempt %d of %d)"
+                        .formatted(description, reason, delay.toMillis(), i + 2, maxAttempts));
+                closeQuietly(response, failure);
+                sleep(delay);
+                retries.incrementAndGet();
+                continue;
+            }
+
+            if (failure instanceof IOException e) {
+                throw e;
+            }
+            if (failure != null) {
+                throw (OpenSearchClientException) failure;
+            }
+            return response;
+        }
+    }
+
+    /**
+     * @throws IOException if the circuit breaker is open.
+     */
+    private synchronized void acquirePermission(final String description) throws IOException {
+        if (this.openUntil == null) {
+            return;
+        }
+        if (Instant.now().isBefore(this.openUntil) || this.probing) {
+            circuitBreakerRejections.incrementAndGet();
+            throw new IOException("not executing the %s, the circuit breaker is open after %d consecutive failed attempts"
+                    .formatted(description, this.consecutiveFailures));
+        }
+        // half open, this request finds out whether the cluster has recovered
+        this.probing = true;
+    }
+
+    private synchronized boolean isOpen() {
+        return this.openUntil != null;
+    }
+
+    private synchronized void recordOutcome(final boolean success, final boolean firstAttempt) {
+        final int capacity = OpenSearchConfiguration.RETRY_BUDGET.getCurrentValue();
+        if (this.budget == null || capacity != this.budgetCapacity) {
+            // the capacity is a setting of the current scope, a different one starts a new budget
+            this.budget = (double) capacity;
+            this.budgetCapacity = capacity;
+        }
+        this.probing = false;
+        if (success) {
+            this.consecutiveFailures = 0;
+            if (this.openUntil != null) {
+                log.info("closing the circuit breaker, the cluster responds again");
+                this.openUntil = null;
+            }
+            if (firstAttempt) {
+                this.budget = Math.min(capacity, this.budget + BUDGET_DEPOSIT_PER_REQUEST);
+            }
+            return;
+        }
+        this.consecutiveFailures++;
+        final var threshold = OpenSearchConfiguration.CIRCUIT_BREAKER_THRESHOLD.getCurrentValue();
+        if (threshold > 0 && (this.consecutiveFailures >= threshold || this.openUntil != null)) {
+            final var openDuration = Duration.ofSeconds(OpenSearchConfiguration.CIRCUIT_BREAKER_OPEN_DURATION.getCurrentValue());
+            if (this.openUntil == null) {
+                log.warning("opening the circuit breaker for %d seconds after %d consecutive failed attempts"
+                        .formatted(openDuration.toSeconds(), this.consecutiveFailures));
+            }
+            this.openUntil = Instant.now().plus(openDuration);
+        }
+    }
+
+    private synchronized boolean takeFromBudget(final String description, final String failure) {
+        if (this.budget == null || this.budget < 1) {
+            budgetExhausted.incrementAndGet();
+            log.warning("%s failed with %s, not retrying it as the retry budget has been used up".formatted(description, failure));
+            return false;
+        }
+        this.budget--;
+        return true;
+    }
+
+    /**
+     * Resets the budgets and the circuit breakers of all connections.
+     */
+    static void reset() {
+        CONNECTIONS.clear();
+    }
+
+    /**
+     * @return the delay requested by the cluster, but at most {@code maxInterval}, or else the one of the backoff.
+     */
+    static Duration retryDelay(final Optional<Duration> retryAfter, final Duration maxInterval, final Duration backoffDelay) {
+        return retryAfter.filter(after -> after.compareTo(Duration.ZERO) > 0)
+                .map(after -> after.compareTo(maxInterval) > 0 ? maxInterval : after)
+                .orElse(backoffDelay);
+    }
+
+    private static boolean isConnectFailure(final IOException e) {
+        return e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof UnknownHostException;
+    }
+
+    /**
+     * @return the delay requested by the {@code Retry-After} header (in seconds or as an HTTP date), empty if there is
+     * none.
+     */
+    static Optional<Duration> retryAfterOf(final Response response) {
+        return response.getHeaders().stream()
+                .filter(header -> header.getKey().equalsIgnoreCase(RETRY_AFTER))
+                .findFirst()
+                .flatMap(header -> parseRetryAfter(header.getValue().trim()));
+    }
+
+    /**
+     * The response of a {@link ResponseException} is of a type which isn't public, thus its header is read reflectively.
+     * The delay is left to the backoff if that isn't possible.
+     */
+    private static Optional<Duration> retryAfterOf(final ResponseException e) {
+        try {
+            final Object response = e.getResponse();
+            final var getHeader = response.getClass().getMethod("getHeader", String.class);
+            getHeader.setAccessible(true);
+            return Optional.ofNullable((String) getHeader.invoke(response, RETRY_AFTER))
+                    .flatMap(value -> parseRetryAfter(value.trim()));
+        } catch (final ReflectiveOperationException | RuntimeException ignored) {
+            return Optional.empty();
+        }
+    }
+
+    static Optional<Duration> parseRetryAfter(final String value) {
+        try {
+            return Optional.of(Duration.ofSeconds(Long.parseLong(value)));
+        } catch (final NumberFormatException e) {
+            try {
+                return Optional.of(Duration.between(Instant.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()));
+            } catch (final DateTimeParseException ignored) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    private static void closeQuietly(final Response response, final Exception failure) {
+        try {
+            if (response != null) {
+                response.close();
+            }
+            if (failure instanceof OpenSearchClientException e) {
+                e.response().close();
+            }
+        } catch (final IOException ignored) {
+            // the response is discarded anyway
+        }
+    }
+
+    private static void sleep(final Duration delay) throws InterruptedIOException {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting to retry");
+        }
+    }
+}
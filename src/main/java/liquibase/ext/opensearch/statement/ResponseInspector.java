@@ -0,0 +1,255 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.hc.core5.http.HttpStatus;
+import org.opensearch.client.opensearch.generic.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Inspects the body of a response with the streaming parser for the fields which tell whether the request has failed:
+ * the {@code error} of an error response, the failed {@code items} of a bulk response (which responds with 200 and
+ * {@code "errors": true} if some of its items have failed) and the {@code failures} of by-query and reindex responses.
+ * Only the first {@link #MAX_FAILURES} failures are kept, everything else is skipped without being read into strings or
+ * a tree, so that inspecting the response of a large bulk request takes no more memory than a small one.
+ */
+final class ResponseInspector {
+
+    static final int MAX_FAILURES = 10;
+
+    /**
+     * Query string for the bulk requests of this extension, which limits their responses to what is inspected (and
+     * what {@code BulkResponse} requires). The client reads a response completely before it is inspected, without the
+     * filter the response to a big bulk request would be held in memory with all of its fields.
+     */
+    static final String BULK_FILTER_PATH = "filter_path=took,errors,error,items.*._index,items.*._id,items.*.status,items.*.error";
+
+    /**
+     * Maximum length of the texts taken from the response, longer ones are cut off.
+     */
+    static final int MAX_TEXT_LENGTH = 1000;
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * A failed item of a bulk request or a failure of a by-query or reindex request.
+     *
+     * @param item   position of the item in the request, -1 for failures which don't belong to an item.
+     * @param status 0 if the failure has no status.
+     */
+    record Failure(long item, int status, String index, String id, String error) {
+
+        @Override
+        public String toString() {
+            final var target = this.id() != null ? "%s/%s".formatted(this.index(), this.id()) : this.index();
+            return "%s%sfailed%s: %s".formatted(
+                    this.item() >= 0 ? "item " + this.item() + " " : "",
+                    target != null ? "(" + target + ") " : "",
+                    this.status() > 0 ? " with code " + this.status() : "",
+                    this.error());
+        }
+    }
+
+    /**
+     * @param error        the {@code error} of the response, {@code null} if it has none.
+     * @param failureCount number of all failures, of which only the first are in {@code failures}.
+     */
+    record Inspection(int status, String error, long failureCount, List<Failure> failures) {
+
+        boolean failed() {
+            return this.status() >= HttpStatus.SC_BAD_REQUEST || this.error() != null || this.failureCount() > 0;
+        }
+
+        String describe() {
+            final var description = new StringBuilder(this.error() != null ? this.error() : "");
+            if (this.failureCount() > 0) {
+                if (!description.isEmpty()) {
+                    description.append(", ");
+                }
+                description.append("%d %s".formatted(this.failureCount(), this.failureCount() == 1 ? "failure" : "failures"));
+                if (this.failureCount() > this.failures().size()) {
+                    description.append(" (the first %d)".formatted(this.failures().size()));
+                }
+                description.append(": ").append(this.failures());
+            }
+            return description.isEmpty() ? "no error in the response" : description.toString();
+        }
+    }
+
+    private ResponseInspector() {
+    }
+
+    /**
+     * Consumes the body of the response.
+     */
+    static Inspection inspect(final Response response) throws IOException {
+        final var body = response.getBody();
+        if (body.isEmpty()) {
+            return new Inspection(response.getStatus(), null, 0, List.of());
+        }
+        try (final var in = body.get().body()) {
+            final var contentType = body.get().contentType();
+            if (contentType != null && !contentType.toLowerCase(Locale.ROOT).contains("json")) {
+                return new Inspection(response.getStatus(), response.getStatus() >= HttpStatus.SC_BAD_REQUEST ? head(in) : null, 0, List.of());
+            }
+            return inspect(response.getStatus(), in);
+        }
+    }
+
+    static Inspection inspect(final int status, final InputStream body) throws IOException {
+        final var failures = new Failures();
+        String error = null;
+        try (final var parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return new Inspection(status, null, 0, List.of());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final var field = parser.currentName();
+                final var value = parser.nextToken();
+                if (field.equals("error")) {
+                    error = errorOf(parser);
+                } else if ((field.equals("items") || field.equals("failures")) && value == JsonToken.START_ARRAY) {
+                    readFailures(parser, field.equals("items"), failures);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (final JsonProcessingException e) {
+            if (status < HttpStatus.SC_BAD_REQUEST) {
+                // not for us to judge, the request has succeeded
+                return new Inspection(status, null, 0, List.of());
+            }
+            error = "(the response isn't valid JSON: %s)".formatted(e.getOriginalMessage());
+        }
+        return new Inspection(status, error, failures.count, List.copyOf(failures.first));
+    }
+
+    /**
+     * Failures found so far, of which the first are kept.
+     */
+    private static final class Failures {
+        private final List<Failure> first = new ArrayList<>();
+        private long count;
+
+        boolean full() {
+            return this.first.size() >= MAX_FAILURES;
+        }
+    }
+
+    /**
+     * Reads the elements of {@code items} (the result of every item is wrapped in an object named after its action,
+     * only items with an {@code error} have failed) or {@code failures} (every element is a failure with a
+     * {@code cause} or {@code reason}).
+     */
+    private static void readFailures(final JsonParser parser, final boolean items, final Failures failures) throws IOException {
+        long position = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+            } else if (items) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    if (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readFailure(parser, position, failures, false);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                readFailure(parser, -1, failures, true);
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Reads the object the parser is at, which is a failure if it has an error (or always if {@code failure}).
+     */
+    private static void readFailure(final JsonParser parser, final long position, final Failures failures,
+                                    final boolean failure) throws IOException {
+        // the texts are only read if the failure is kept, which is only known once the object has been read
+        final var keep = !failures.full();
+        int status = 0;
+        String index = null;
+        String id = null;
+        String error = null;
+        boolean failed = failure;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            final var value = parser.nextToken();
+            switch (field) {
+                case "status" -> status = value.isNumeric() ? parser.getIntValue() : status;
+                case "_index", "index" -> index = keep && value == JsonToken.VALUE_STRING ? truncate(parser.getText()) : index;
+                case "_id", "id" -> id = keep && value == JsonToken.VALUE_STRING ? truncate(parser.getText()) : id;
+                case "error", "cause", "reason" -> {
+                    failed |= value != JsonToken.VALUE_NULL;
+                    if (keep) {
+                        error = errorOf(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (failed) {
+            failures.count++;
+            if (keep) {
+                failures.first.add(new Failure(position, status, index, id, error));
+            }
+        }
+    }
+
+    /**
+     * @return {@code <type>: <reason>} of an error object, the text of any other error.
+     */
+    private static String errorOf(final JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            final var text = parser.currentToken().isScalarValue() && parser.currentToken() != JsonToken.VALUE_NULL ? parser.getText() : null;
+            parser.skipChildren();
+            return text != null ? truncate(text) : null;
+        }
+        String type = null;
+        String reason = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            final var value = parser.nextToken();
+            if (field.equals("type") && value == JsonToken.VALUE_STRING) {
+                type = truncate(parser.getText());
+            } else if (field.equals("reason") && value == JsonToken.VALUE_STRING) {
+                reason = truncate(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return type == null ? reason : reason == null ? type : type + ": " + reason;
+    }
+
+    private static String truncate(final String text) {
+        return text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) + "..." : text;
+    }
+
+    /**
+     * @return the beginning of a body which isn't JSON.
+     */
+    private static String head(final InputStream in) throws IOException {
+        final Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        final var buffer = new char[MAX_TEXT_LENGTH + 1];
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        return truncate(new String(buffer, 0, length));
+    }
+}
@@ -21,8 +21,10 @@ package liquibase.nosql.changelog;
  */
 
 import liquibase.Scope;
+import liquibase.change.CheckSum;
 import liquibase.changelog.AbstractChangeLogHistoryService;
 import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
 import liquibase.changelog.RanChangeSet;
 import liquibase.exception.DatabaseException;
 import liquibase.exception.DatabaseHistoryException;
@@ -38,7 +40,10 @@ import lombok.Setter;
 
 import java.time.Clock;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import static java.util.Collections.unmodifiableList;
@@ -49,6 +54,17 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
     @Getter
     private List<RanChangeSet> ranChangeSetList;
 
+    /**
+     * Index of {@link #ranChangeSetList} by changelog path, id and author, so that looking up a changeset does not
+     * require scanning the whole history.
+     */
+    private Map<RanChangeSetKey, RanChangeSet> ranChangeSetIndex;
+
+    /**
+     * Normalizing a path is rather expensive while a history only contains a few distinct changelog paths.
+     */
+    private final Map<String, String> normalizedChangeLogPaths = new HashMap<>();
+
     private boolean serviceInitialized;
 
     private static final ResourceBundle resourceBundle = ResourceBundle.getBundle("liquibase/i18n/liquibase-opensearch");
@@ -98,10 +114,20 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
         return (OpenSearchExecutor) executor;
     }
 
+    /**
+     * Discards the history read so far so that it is read again, unlike {@link #reset()} (which liquibase calls once a
+     * command has completed) it keeps what is known about the current command.
+     */
+    public void resetHistory() {
+        this.reset();
+    }
+
     @Override
     public void reset() {
         super.reset();
         this.ranChangeSetList = null;
+        this.ranChangeSetIndex = null;
+        this.normalizedChangeLogPaths.clear();
         this.serviceInitialized = false;
         this.hasDatabaseChangeLogTable = null;
         this.adjustedChangeLogTable = false;
@@ -153,6 +179,9 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
 
         if (isNull(this.ranChangeSetList)) {
             this.ranChangeSetList = queryRanChangeSets();
+            this.ranChangeSetIndex = new HashMap<>();
+            // like a linear scan the first matching entry wins if the history contains duplicates
+            this.ranChangeSetList.forEach(ranChangeSet -> this.ranChangeSetIndex.putIfAbsent(keyOf(ranChangeSet), ranChangeSet));
         }
         return unmodifiableList(ranChangeSetList);
     }
@@ -160,20 +189,31 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
     @Override
     public void replaceChecksum(final ChangeSet changeSet) throws DatabaseException {
 
-        updateCheckSum(changeSet);
+        final CheckSum checkSum = updateCheckSum(changeSet);
 
         getLogger().info(String.format("Replace checksum executed. ChangeSet: [filename: %s, id: %s, author: %s]"
                 , changeSet.getFilePath(), changeSet.getId(), changeSet.getAuthor()));
 
-        reset();
+        // update the cached entry instead of reloading the whole history
+        if (this.ranChangeSetIndex != null) {
+            final RanChangeSet ranChangeSet = this.ranChangeSetIndex.get(keyOf(changeSet));
+            if (ranChangeSet != null) {
+                ranChangeSet.setLastCheckSum(checkSum);
+            }
+        }
     }
 
+    /**
+     * Same semantics as {@link AbstractChangeLogHistoryService#getRanChangeSet(ChangeSet)} (which uses
+     * {@link RanChangeSet#isSameAs(ChangeSet)}) but uses a hash lookup instead of scanning the whole history.
+     */
     @Override
     public RanChangeSet getRanChangeSet(final ChangeSet changeSet) throws DatabaseException, DatabaseHistoryException {
         if (!hasDatabaseChangeLogTable()) {
             return null;
         }
-        return super.getRanChangeSet(changeSet);
+        getRanChangeSets();
+        return this.ranChangeSetIndex.get(keyOf(changeSet));
     }
 
     @Override
@@ -185,7 +225,11 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
 
         getDatabase().commit();
         if (this.ranChangeSetList != null) {
-            this.ranChangeSetList.add(new RanChangeSet(changeSet, execType, null, null));
+            final RanChangeSet ranChangeSet = new RanChangeSet(changeSet, execType, null, null);
+            ranChangeSet.setOrderExecuted(nextSequenceValue);
+            this.ranChangeSetList.add(ranChangeSet);
+            // the stored entry has been replaced, thus the new entry wins over an existing one
+            this.ranChangeSetIndex.put(keyOf(ranChangeSet), ranChangeSet);
         }
     }
 
@@ -196,6 +240,13 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
 
         if (this.ranChangeSetList != null) {
             this.ranChangeSetList.remove(new RanChangeSet(changeSet));
+            final RanChangeSetKey key = keyOf(changeSet);
+            this.ranChangeSetIndex.remove(key);
+            // re-index a remaining duplicate (if any)
+            this.ranChangeSetList.stream()
+                    .filter(ranChangeSet -> key.equals(keyOf(ranChangeSet)))
+                    .findFirst()
+                    .ifPresent(ranChangeSet -> this.ranChangeSetIndex.put(key, ranChangeSet));
         }
     }
 
@@ -229,6 +280,7 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
 
         tagLast(tagString);
 
+        // the entries are shared with ranChangeSetIndex, thus there's no need to update it
         if (this.ranChangeSetList != null) {
             ranChangeSetList.get(ranChangeSetList.size() - 1).setTag(tagString);
         }
@@ -252,12 +304,28 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
             } else {
                 getLogger().warning("Cannot Drop Collection Database Change Log as not found: " + getDatabaseChangeLogTableName());
             }
-            reset();
+            resetHistory();
         } catch (final DatabaseException e) {
             throw new UnexpectedLiquibaseException(e);
         }
     }
 
+    /**
+     * Writes history entries which have been recorded but not yet persisted. Implementations which don't buffer
+     * history entries don't need to override this.
+     */
+    public void flush() throws DatabaseException {
+        // nothing buffered by default
+    }
+
+    /**
+     * Writes history entries which have been recorded but not yet persisted, without waiting for anything else (unlike
+     * {@link #flush()}). Called before a change is executed which must not be executed again if the process gets killed.
+     */
+    public void writeBufferedEntries() throws DatabaseException {
+        // nothing buffered by default
+    }
+
     protected abstract Logger getLogger();
 
     protected abstract boolean existsRepository() throws DatabaseException;
@@ -282,6 +350,41 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
 
     protected abstract long countRanChangeSets() throws DatabaseException;
 
-    protected abstract void updateCheckSum(ChangeSet changeSet) throws DatabaseException;
+    /**
+     * @return the checksum which has been stored.
+     */
+    protected abstract CheckSum updateCheckSum(ChangeSet changeSet) throws DatabaseException;
+
+    private RanChangeSetKey keyOf(final RanChangeSet ranChangeSet) {
+        return keyOf(ranChangeSet.getChangeLog(), ranChangeSet.getId(), ranChangeSet.getAuthor());
+    }
+
+    private RanChangeSetKey keyOf(final ChangeSet changeSet) {
+        return keyOf(changeSet.getFilePath(), changeSet.getId(), changeSet.getAuthor());
+    }
+
+    private RanChangeSetKey keyOf(final String changeLog, final String id, final String author) {
+        return new RanChangeSetKey(toLowerCase(normalizeChangeLogPath(changeLog)), toLowerCase(id), toLowerCase(author));
+    }
+
+    /**
+     * @return the changelog path as normalized by {@link DatabaseChangeLog#normalizePath(String)} for matching history
+     * entries to changesets. Normalizing is expensive, thus it is only done once per path.
+     */
+    protected String normalizeChangeLogPath(final String changeLog) {
+        return isNull(changeLog) ? null
+                : this.normalizedChangeLogPaths.computeIfAbsent(changeLog, DatabaseChangeLog::normalizePath);
+    }
+
+    private static String toLowerCase(final String value) {
+        return isNull(value) ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Key matching {@link RanChangeSet#isSameAs(ChangeSet)}: the changelog path is normalized and all parts are compared
+     * case-insensitive.
+     */
+    private record RanChangeSetKey(String changeLog, String id, String author) {
+    }
 
 }
@@ -21,12 +21,15 @@ package liquibase.nosql.database;
  */
 
 import liquibase.CatalogAndSchema;
+import liquibase.Scope;
+import liquibase.changelog.ChangeLogHistoryServiceFactory;
 import liquibase.database.AbstractJdbcDatabase;
 import liquibase.database.Database;
 import liquibase.database.DatabaseConnection;
 import liquibase.exception.DatabaseException;
 import liquibase.exception.LiquibaseException;
 import liquibase.exception.ValidationErrors;
+import liquibase.nosql.changelog.AbstractNoSqlHistoryService;
 import liquibase.statement.DatabaseFunction;
 import liquibase.structure.DatabaseObject;
 import lombok.NoArgsConstructor;
@@ -254,6 +257,33 @@ public abstract class AbstractNoSqlDatabase extends AbstractJdbcDatabase impleme
         return getDatabaseProductName().equals(conn.getDatabaseProductName());
     }
 
+    @Override
+    public void afterUpdate() throws LiquibaseException {
+        // the update must only be reported as done once all history entries have been persisted
+        flushChangeLogHistory();
+    }
+
+    /**
+     * Persists all history entries which might still be buffered by the history service of this database.
+     */
+    public void flushChangeLogHistory() throws DatabaseException {
+        final var historyService = Scope.getCurrentScope().getSingleton(ChangeLogHistoryServiceFactory.class).getChangeLogService(this);
+        if (historyService instanceof AbstractNoSqlHistoryService<?> noSqlHistoryService) {
+            noSqlHistoryService.flush();
+        }
+    }
+
+    /**
+     * Writes the history entries which might still be buffered by the history service of this database, see
+     * {@link AbstractNoSqlHistoryService#writeBufferedEntries()}.
+     */
+    public void writeBufferedChangeLogHistory() throws DatabaseException {
+        final var historyService = Scope.getCurrentScope().getSingleton(ChangeLogHistoryServiceFactory.class).getChangeLogService(this);
+        if (historyService instanceof AbstractNoSqlHistoryService<?> noSqlHistoryService) {
+            noSqlHistoryService.writeBufferedEntries();
+        }
+    }
+
     @Override
     public String toString() {
         return getDatabaseProductName() + " : "
@@ -20,6 +20,8 @@ package liquibase.nosql.lockservice;
  * #L%
  */
 
+import liquibase.Scope;
+import liquibase.changelog.ChangeLogHistoryServiceFactory;
 import liquibase.configuration.GlobalConfiguration;
 import liquibase.configuration.LiquibaseConfiguration;
 import liquibase.database.Database;
@@ -29,12 +31,14 @@ import liquibase.exception.UnexpectedLiquibaseException;
 import liquibase.lockservice.DatabaseChangeLogLock;
 import liquibase.lockservice.LockService;
 import liquibase.logging.Logger;
+import liquibase.nosql.changelog.AbstractNoSqlHistoryService;
 import liquibase.nosql.database.AbstractNoSqlDatabase;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.text.DateFormat;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.ResourceBundle;
 
@@ -104,26 +108,36 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
 
         boolean locked = false;
 
+        final LockWaitStrategy waitStrategy = getLockWaitStrategy();
         final long timeToGiveUp = getClock().instant().plusSeconds(getChangeLogLockWaitTime() * 60).toEpochMilli();
+        int attempt = 0;
         while (!locked && (getClock().instant().toEpochMilli() < timeToGiveUp)) {
             locked = acquireLock();
             if (!locked) {
                 getLogger().info("Waiting for changelog lock....");
+                final long remaining = timeToGiveUp - getClock().instant().toEpochMilli();
+                final Duration delay = waitStrategy.nextDelay(attempt++);
                 try {
-                    //noinspection BusyWait
-                    Thread.sleep(getChangeLogLockRecheckTime() * 1000);
+                    awaitLockRelease(Duration.ofMillis(Math.max(0, Math.min(delay.toMillis(), remaining))));
                 } catch (InterruptedException e) {
                     // Restore thread interrupt status
                     Thread.currentThread().interrupt();
+                } catch (DatabaseException e) {
+                    throw new LockException(e);
                 }
             }
         }
 
         if (!locked) {
-            DatabaseChangeLogLock[] locks = listLocks();
+            List<DatabaseChangeLogLock> locks;
+            try {
+                locks = queryLocks();
+            } catch (final DatabaseException e) {
+                throw new LockException(e);
+            }
             String lockedBy;
-            if (locks.length > 0) {
-                DatabaseChangeLogLock lock = locks[0];
+            if (!locks.isEmpty()) {
+                DatabaseChangeLogLock lock = locks.get(0);
                 lockedBy = lock.getLockedBy() + " since " +
                         DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT)
                                 .format(lock.getLockGranted());
@@ -144,21 +158,24 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
             database.rollback();
             this.init();
 
-            if (isLocked()) {
+            getLogger().fine("Lock Database");
+            if (!tryCreateLock()) {
                 return false;
             } else {
-                getLogger().info("Lock Database");
-
-                if (!createLock()) {
-                    // another node was faster
-                    return false;
-                }
-
                 database.commit();
                 getLogger().info("Successfully Acquired Change Log Lock");
 
                 this.hasChangeLogLock = true;
 
+                // the history might have been read without holding the lock (e.g. by the up-to-date check of the
+                // update command) and might have been changed by the previous lock holder, so it's read again
+                final var historyService = Scope.getCurrentScope().getSingleton(ChangeLogHistoryServiceFactory.class).getChangeLogService(database);
+                if (historyService instanceof AbstractNoSqlHistoryService<?> noSqlHistoryService) {
+                    noSqlHistoryService.resetHistory();
+                } else {
+                    historyService.reset();
+                }
+
                 return true;
             }
         } catch (final Exception e) {
@@ -181,7 +198,12 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
                 getLogger().info("Release Database Lock");
 
                 database.rollback();
-                removeLock();
+                try {
+                    // buffered history entries must be persisted before anybody else can take over
+                    database.flushChangeLogHistory();
+                } finally {
+                    removeLock();
+                }
                 database.commit();
             }
         } catch (Exception e) {
@@ -204,7 +226,7 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
             if (!this.hasDatabaseChangeLogLockTable()) {
                 return new DatabaseChangeLogLock[0];
             }
-            final List<DatabaseChangeLogLock> rows = queryLocks();
+            final List<DatabaseChangeLogLock> rows = queryAllLocks();
             return rows.stream().map(DatabaseChangeLogLock.class::cast).toArray(DatabaseChangeLogLock[]::new);
         } catch (final Exception e) {
             throw new LockException(e);
@@ -283,6 +305,38 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
         return this.hasDatabaseChangeLogLockTable;
     }
 
+    /**
+     * Creates the lock entry unless the lock is held by somebody else.
+     *
+     * @return whether the lock entry has been created. By default the lock is checked with {@link #isLocked()} first,
+     * implementations whose {@link #createLock()} fails if the lock entry already exists can skip that.
+     */
+    protected boolean tryCreateLock() throws DatabaseException {
+        if (isLocked()) {
+            return false;
+        }
+        // false if another node was faster
+        return createLock();
+    }
+
+    /**
+     * @return the strategy deciding how long to wait between attempts to acquire the lock. By default this is the
+     * {@link #getChangeLogLockRecheckTime() recheck time}.
+     */
+    protected LockWaitStrategy getLockWaitStrategy() {
+        return LockWaitStrategy.fixed(Duration.ofSeconds(getChangeLogLockRecheckTime()));
+    }
+
+    /**
+     * Waits before the next attempt to acquire the lock. Implementations may return earlier if they notice that the
+     * lock has been released.
+     *
+     * @param maxWait the delay chosen by the {@link #getLockWaitStrategy() wait strategy}.
+     */
+    protected void awaitLockRelease(final Duration maxWait) throws InterruptedException, DatabaseException {
+        Thread.sleep(maxWait.toMillis());
+    }
+
     protected abstract Logger getLogger();
 
     protected abstract boolean existsRepository() throws DatabaseException;
@@ -299,6 +353,16 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
 
     protected abstract void removeLock() throws DatabaseException;
 
+    /**
+     * @return the entries of the lock this service acquires.
+     */
     protected abstract List<DatabaseChangeLogLock> queryLocks() throws DatabaseException;
 
+    /**
+     * @return the entries of all locks, for {@link #listLocks()}. By default these are the {@link #queryLocks()}.
+     */
+    protected List<DatabaseChangeLogLock> queryAllLocks() throws DatabaseException {
+        return queryLocks();
+    }
+
 }
@@ -0,0 +1,39 @@
+package liquibase.nosql.lockservice;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long {@link AbstractNoSqlLockService#waitForLock()} waits before the next attempt to acquire the lock.
+ */
+@FunctionalInterface
+public interface LockWaitStrategy {
+
+    /**
+     * @param attempt number of failed attempts to acquire the lock so far minus one, i.e. 0 after the first one.
+     * @return the time to wait before the next attempt.
+     */
+    Duration nextDelay(int attempt);
+
+    /**
+     * @return a strategy which always waits for the same time.
+     */
+    static LockWaitStrategy fixed(final Duration delay) {
+        return attempt -> delay;
+    }
+
+    /**
+     * Exponential backoff with jitter: the delay doubles with every attempt up to {@code maxDelay} and a random value of
+     * up to half of it is subtracted, so that processes which started waiting at the same time don't keep retrying at
+     * the same time.
+     *
+     * @return a strategy waiting between half of and the full {@code min(initialDelay * 2^attempt, maxDelay)}.
+     */
+    static LockWaitStrategy exponentialBackoff(final Duration initialDelay, final Duration maxDelay) {
+        return attempt -> {
+            final long ceiling = initialDelay.toMillis() << Math.min(attempt, 30);
+            final long delay = ceiling <= 0 ? maxDelay.toMillis() : Math.min(ceiling, maxDelay.toMillis());
+            return Duration.ofMillis(delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+        };
+    }
+}
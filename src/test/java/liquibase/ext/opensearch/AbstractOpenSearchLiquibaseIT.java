@@ -1,24 +1,36 @@
 package liquibase.ext.opensearch;
 
+import liquibase.Scope;
+import liquibase.change.CheckSum;
+import liquibase.changelog.ChangeLogHistoryServiceFactory;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.FastCheckService;
+import liquibase.changelog.RanChangeSet;
 import liquibase.command.CommandResults;
 import liquibase.command.CommandScope;
 import liquibase.command.core.UpdateCommandStep;
 import liquibase.command.core.helpers.DbUrlConnectionArgumentsCommandStep;
 import liquibase.database.DatabaseFactory;
+import liquibase.ext.opensearch.changelog.OpenSearchHistoryService;
 import liquibase.ext.opensearch.database.OpenSearchConnection;
 import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestInstance;
 import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.Refresh;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
 import org.opensearch.client.opensearch.core.CountRequest;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
 import org.opensearch.client.opensearch.indices.ExistsRequest;
 import org.opensearch.testcontainers.OpenSearchContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import java.util.Date;
+import java.util.stream.IntStream;
+
 @TestInstance(TestInstance.Lifecycle.PER_METHOD)
 @Testcontainers
 public abstract class AbstractOpenSearchLiquibaseIT {
@@ -51,11 +63,20 @@ public abstract class AbstractOpenSearchLiquibaseIT {
     @SneakyThrows
     @BeforeEach
     protected void beforeEach() {
+        // the result of the up-to-date check is cached per URL (the cluster name, which is the same for all containers)
+        Scope.getCurrentScope().getSingleton(FastCheckService.class).clearCache();
+        database = this.openDatabase();
+        connection = (OpenSearchConnection) this.database.getConnection();
+    }
+
+    /**
+     * @return a new connection to the test container, e.g. to simulate another process.
+     */
+    protected OpenSearchLiquibaseDatabase openDatabase() throws Exception {
         final String url = "opensearch:" + container.getHttpHostAddress();
         final String username = container.getUsername();
         final String password = container.getPassword();
-        database = (OpenSearchLiquibaseDatabase) DatabaseFactory.getInstance().openDatabase(url, username, password, null, null);
-        connection = (OpenSearchConnection) this.database.getConnection();
+        return (OpenSearchLiquibaseDatabase) DatabaseFactory.getInstance().openDatabase(url, username, password, null, null);
     }
 
     protected OpenSearchClient getOpenSearchClient() {
@@ -94,4 +115,28 @@ public abstract class AbstractOpenSearchLiquibaseIT {
         return this.getDocumentCount(indexName, null);
     }
 
+    protected OpenSearchHistoryService getHistoryService() {
+        return (OpenSearchHistoryService) Scope.getCurrentScope().getSingleton(ChangeLogHistoryServiceFactory.class)
+                .getChangeLogService(this.database);
+    }
+
+    /**
+     * Simulates a long history by directly writing {@code count} entries of a (non-existent) changelog to the history index.
+     */
+    protected void indexHistoryEntries(final int count) throws Exception {
+        final var operations = IntStream.rangeClosed(1, count)
+                .mapToObj(i -> {
+                    final var ranChangeSet = new RanChangeSet("liquibase/ext/generated.yaml", String.valueOf(i), "test",
+                            CheckSum.parse("9:8f8ad33ca7428632a913f3295bb18900"), new Date(), null, ChangeSet.ExecType.EXECUTED,
+                            "generated", null, null, null, "");
+                    ranChangeSet.setOrderExecuted(i);
+                    return BulkOperation.of(b -> b.index(o -> o
+                            .index(this.database.getDatabaseChangeLogTableName())
+                            .id(ranChangeSet.toString())
+                            .document(ranChangeSet)));
+                })
+                .toList();
+        this.getOpenSearchClient().bulk(b -> b.operations(operations).refresh(Refresh.WaitFor));
+    }
+
 }
@@ -1,19 +1,36 @@
 package liquibase.ext.opensearch;
 
+import liquibase.GlobalConfiguration;
+import liquibase.Scope;
 import liquibase.change.CheckSum;
 import liquibase.changelog.ChangeSet;
 import liquibase.changelog.RanChangeSet;
 import liquibase.command.CommandScope;
 import liquibase.command.core.ClearChecksumsCommandStep;
+import liquibase.command.core.ReleaseLocksCommandStep;
 import liquibase.command.core.TagCommandStep;
+import liquibase.command.core.UnexpectedChangesetsCommandStep;
+import liquibase.command.core.helpers.DatabaseChangelogCommandStep;
 import liquibase.command.core.helpers.DbUrlConnectionArgumentsCommandStep;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
+import liquibase.ext.opensearch.lockservice.OpenSearchChangeLogLock;
+import liquibase.ext.opensearch.lockservice.OpenSearchLockService;
+import liquibase.lockservice.LockServiceFactory;
 import liquibase.report.UpdateReportParameters;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch._types.FieldValue;
 import org.opensearch.client.opensearch._types.Refresh;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -42,6 +59,22 @@ class OpenSearchLiquibaseIT extends AbstractOpenSearchLiquibaseIT {
         assertThat(this.indexExists(this.database.getDatabaseChangeLogTableName())).isTrue();
     }
 
+    @SneakyThrows
+    @Test
+    void itCreatesTheChangelogAndLockIndicesWithTheirMapping() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+
+        for (final var index : new String[]{"databasechangelog", "databasechangeloglock"}) {
+            final var mapping = this.getOpenSearchClient().indices().getMapping(r -> r.index(index)).result().get(index).mappings();
+            assertThat(mapping.meta()).containsKey("liquibaseMappingHash");
+            assertThat(mapping.properties()).containsKey("id");
+
+            final var settings = this.getOpenSearchClient().indices().getSettings(r -> r.index(index)).result().get(index).settings();
+            assertThat(settings.index().numberOfShards()).isEqualTo(1);
+            assertThat(settings.index().autoExpandReplicas()).isEqualTo("0-1");
+        }
+    }
+
     @SneakyThrows
     @Test
     void itExecutesAHttpRequestAndCreatesTheIndexWithYAMLChangelog() {
@@ -188,6 +221,553 @@ class OpenSearchLiquibaseIT extends AbstractOpenSearchLiquibaseIT {
         assertThat(this.getDocumentCount("testindex")).isEqualTo(2);
     }
 
+    @SneakyThrows
+    @Test
+    void itFailsOnFailedItemsOfABulkRequest() {
+        assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.bulk.failing.yaml"))
+                .hasStackTraceContaining("item 1 (testindex/1) failed with code 409: version_conflict_engine_exception");
+
+        assertThat(this.getDocumentCount("testindex")).isEqualTo(1);
+        assertThat(this.getDocumentCount("databasechangelog")).isEqualTo(1);
+    }
+
+    @SneakyThrows
+    @Test
+    void itAwaitsTheTaskOfALongRunningRequest() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.reindex.yaml");
+        assertThat(this.getDocumentCount("testindex-copy")).isEqualTo(2);
+    }
+
+    @SneakyThrows
+    @Test
+    void itReindexesWithSlicesAndAThrottle() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.reindex.yaml");
+
+        assertThat(this.getDocumentCount("testindex-copy")).isEqualTo(2);
+        final var copied = this.getOpenSearchClient().count(r -> r.index("testindex-copy")
+                .query(q -> q.term(t -> t.field("copied").value(v -> v.booleanValue(true))))).count();
+        assertThat(copied).isEqualTo(2);
+    }
+
+    @SneakyThrows
+    @Test
+    void itMigratesTheIndexBehindAnAlias() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.migrateindex.yaml");
+
+        assertThat(this.getOpenSearchClient().indices().getAlias(r -> r.name("products")).result()).containsOnlyKeys("products-v2");
+        assertThat(this.getDocumentCount("products-v2")).isEqualTo(2);
+        final var settings = this.getOpenSearchClient().indices().getSettings(r -> r.index("products-v2")).get("products-v2").settings();
+        assertThat(settings.index().refreshInterval().time()).isEqualTo("2s");
+        assertThat(settings.index().numberOfReplicas()).isZero();
+        final var mapping = this.getOpenSearchClient().indices().getMapping(r -> r.index("products-v2")).get("products-v2").mappings();
+        assertThat(mapping.properties().get("testfield").isKeyword()).isTrue();
+        assertThat(mapping.meta()).doesNotContainKey("liquibase_migration");
+    }
+
+    @SneakyThrows
+    @Test
+    void itContinuesAnInterruptedIndexMigration() {
+        // the new index exists already, as if a previous run got interrupted after creating it
+        this.getOpenSearchClient().indices().create(r -> r.index("products-v2"));
+
+        this.doLiquibaseUpdate("liquibase/ext/changelog.migrateindex.yaml");
+
+        assertThat(this.getOpenSearchClient().indices().getAlias(r -> r.name("products")).result()).containsOnlyKeys("products-v2");
+        assertThat(this.getDocumentCount("products-v2")).isEqualTo(2);
+    }
+
+    @SneakyThrows
+    @Test
+    void itReadsTheBodyFromAFile() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.bodyfile.yaml");
+        assertThat(this.getDocumentCount("testindex")).isEqualTo(2);
+
+        // the changeset has been recorded and isn't executed again
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.bodyfile.yaml");
+        assertThat(this.getDocumentCount("testindex")).isEqualTo(2);
+    }
+
+    @SneakyThrows
+    @Test
+    void itSendsACompressedBody() {
+        // a body from a file is compressed regardless of its size
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.compressed.yaml");
+        assertThat(this.getDocumentCount("testindex")).isEqualTo(2);
+    }
+
+    /**
+     * The history must be read completely, not just the first page of search hits.
+     */
+    @SneakyThrows
+    @Test
+    void itReadsTheCompleteHistory() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+        this.indexHistoryEntries(2500);
+
+        final var historyService = this.getHistoryService();
+        historyService.reset();
+        final var ranChangeSets = historyService.getRanChangeSets();
+        assertThat(ranChangeSets).hasSize(2500);
+        assertThat(ranChangeSets).extracting(RanChangeSet::getOrderExecuted).isSorted();
+    }
+
+    @SneakyThrows
+    @Test
+    void itReadsTheCompleteHistoryWithSlices() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+        this.indexHistoryEntries(2500);
+
+        Scope.child(Map.of(
+                OpenSearchConfiguration.HISTORY_SLICES.getKey(), 4,
+                OpenSearchConfiguration.HISTORY_PAGE_SIZE.getKey(), 100
+        ), () -> {
+            final var historyService = this.getHistoryService();
+            historyService.reset();
+            final var ranChangeSets = historyService.getRanChangeSets();
+            assertThat(ranChangeSets).hasSize(2500);
+            assertThat(ranChangeSets).extracting(RanChangeSet::getOrderExecuted).isSorted();
+        });
+    }
+
+    @SneakyThrows
+    @Test
+    void itWritesBufferedHistoryEntries() {
+        Scope.child(Map.of(
+                OpenSearchConfiguration.HISTORY_WRITE_BEHIND.getKey(), true,
+                OpenSearchConfiguration.HISTORY_WRITE_BEHIND_BATCH_SIZE.getKey(), 10
+        ), () -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml"));
+
+        assertThat(this.getDocumentCount("databasechangelog")).isEqualTo(2);
+    }
+
+    /**
+     * The history entries of the changesets which ran successfully must be written even if a later changeset fails.
+     */
+    @SneakyThrows
+    @Test
+    void itWritesBufferedHistoryEntriesOnFailure() {
+        Scope.child(Map.of(
+                OpenSearchConfiguration.HISTORY_WRITE_BEHIND.getKey(), true,
+                OpenSearchConfiguration.HISTORY_WRITE_BEHIND_BATCH_SIZE.getKey(), 10
+        ), () -> assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.failing.yaml"))
+                .hasMessageContaining("resource_already_exists_exception"));
+
+        assertThat(this.getDocumentCount("databasechangelog")).isEqualTo(1);
+    }
+
+    @SneakyThrows
+    @Test
+    void itCoalescesConsecutiveRequests() {
+        Scope.child(OpenSearchConfiguration.COALESCE_REQUESTS.getKey(), true,
+                () -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.coalesced.yaml"));
+
+        assertThat(this.getDocumentCount("testindex")).isEqualTo(5);
+        assertThat(this.getDocumentCount("databasechangelog")).isEqualTo(2);
+        final var mapping = this.getOpenSearchClient().indices().getMapping(r -> r.index("testindex")).get("testindex").mappings();
+        assertThat(mapping.properties()).containsOnlyKeys("testfield", "count");
+        final var settings = this.getOpenSearchClient().indices().getSettings(r -> r.index("testindex")).get("testindex").settings();
+        assertThat(settings.index().refreshInterval().time()).isEqualTo("2s");
+        assertThat(settings.index().numberOfReplicas()).isZero();
+
+        // the checksums are the ones of the changes, thus the changelog validates without coalescing as well
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.coalesced.yaml");
+        assertThat(this.getDocumentCount("testindex")).isEqualTo(5);
+    }
+
+    @SneakyThrows
+    @Test
+    void itFailsTheChangesetOfACoalescedRequestWhichFailed() {
+        Scope.child(OpenSearchConfiguration.COALESCE_REQUESTS.getKey(), true,
+                () -> assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.coalesced.failing.yaml"))
+                        .hasStackTraceContaining("/testindex/_doc/2")
+                        .hasStackTraceContaining("mapper_parsing_exception"));
+
+        assertThat(this.getDocumentCount("databasechangelog")).isEqualTo(1);
+        // like with separate requests only the document before the failed one has been written
+        assertThat(this.getDocumentCount("testindex")).isEqualTo(2);
+        assertThat(this.getDocumentCount("testindex", Query.of(q -> q.ids(i -> i.values("1", "4"))))).isEqualTo(2);
+        assertThat(this.getDocumentCount("testindex", Query.of(q -> q.term(t -> t.field("count").value(FieldValue.of(4)))))).isEqualTo(1);
+    }
+
+    @SneakyThrows
+    @Test
+    void itFetchesOnlyTheHistoryOfTheChangelog() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+        // history entries of another changelog sharing the same history index
+        this.indexHistoryEntries(2500);
+
+        Scope.child(Map.of(
+                OpenSearchConfiguration.HISTORY_FETCH_MODE.getKey(), OpenSearchConfiguration.HistoryFetchMode.TARGETED,
+                OpenSearchConfiguration.HISTORY_PAGE_SIZE.getKey(), 1
+        ), () -> {
+            final var updateResult = this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+            final var updateReport = ((UpdateReportParameters) updateResult.getResult("updateReport")).getChangesetInfo();
+            assertThat(updateReport.getChangesetCount()).isEqualTo(0);
+            // the changelog of a command isn't used for the next one
+            assertThat(this.getHistoryService().getDatabaseChangeLog()).isNull();
+
+            // listing the unexpected changesets needs the complete history
+            new CommandScope(UnexpectedChangesetsCommandStep.COMMAND_NAME)
+                    .addArgumentValue(DbUrlConnectionArgumentsCommandStep.DATABASE_ARG, this.database)
+                    .addArgumentValue(DatabaseChangelogCommandStep.CHANGELOG_FILE_ARG, "liquibase/ext/changelog.httprequest.multiple-steps.yaml")
+                    .execute();
+            assertThat(this.getHistoryService().getRanChangeSets()).hasSize(2502);
+
+            // the next update fetches only the history of its changelog again
+            final var nextUpdateResult = this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+            assertThat(((UpdateReportParameters) nextUpdateResult.getResult("updateReport")).getChangesetInfo().getChangesetCount()).isEqualTo(0);
+            assertThat(this.getHistoryService().isFullHistoryRequired()).isFalse();
+        });
+    }
+
+    /**
+     * History writes don't wait for a refresh, the history index gets refreshed once at the end of the run instead.
+     */
+    @SneakyThrows
+    @Test
+    void itDoesNotDependOnPeriodicRefreshes() {
+        // first run an empty changelog so that liquibase sets up the changelog index
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+        this.getOpenSearchClient().indices().putSettings(r -> r.index("databasechangelog").settings(s -> s.refreshInterval(t -> t.time("-1"))));
+
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+        // intentionally not using getDocumentCount as that refreshes the index
+        assertThat(this.getOpenSearchClient().count(r -> r.index("databasechangelog")).count()).isEqualTo(2);
+
+        final var updateResult = this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+        final var updateReport = ((UpdateReportParameters) updateResult.getResult("updateReport")).getChangesetInfo();
+        assertThat(updateReport.getChangesetCount()).isEqualTo(0);
+    }
+
+    /**
+     * If everything has already been applied the update must not wait for a lock held by somebody else.
+     */
+    @SneakyThrows
+    @Test
+    void itDoesNotWaitForTheLockIfTheChangelogIsUpToDate() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+
+        // another process holds the lock
+        final var otherLockService = LockServiceFactory.getInstance().getLockService(this.openDatabase());
+        assertThat(otherLockService.acquireLock()).isTrue();
+
+        Scope.child(GlobalConfiguration.CHANGELOGLOCK_WAIT_TIME.getKey(), 0L, () -> {
+            final var updateResult = this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+            final var updateReport = ((UpdateReportParameters) updateResult.getResult("updateReport")).getChangesetInfo();
+            assertThat(updateReport.getChangesetCount()).isEqualTo(0);
+
+            // as soon as something has to be done the lock is needed
+            assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.yaml"))
+                    .hasStackTraceContaining("Could not acquire change log lock");
+        });
+
+        otherLockService.releaseLock();
+        this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.yaml");
+        assertThat(this.indexExists("testindex")).isTrue();
+    }
+
+    /**
+     * A lock left behind by a killed process is taken over as soon as its lease has expired.
+     */
+    @SneakyThrows
+    @Test
+    void itTakesOverAnExpiredLockLease() {
+        // first run an empty changelog so that liquibase sets up the lock index
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+        final var now = System.currentTimeMillis();
+        this.getOpenSearchClient().index(r -> r.index("databasechangeloglock").id("1")
+                .document(new OpenSearchChangeLogLock(1, new Date(now - 60_000), "killed process", new Date(now - 1_000))));
+
+        // only processes configured with a lease take over expired locks
+        Scope.child(Map.of(
+                GlobalConfiguration.CHANGELOGLOCK_WAIT_TIME.getKey(), 0L,
+                OpenSearchConfiguration.LOCK_LEASE_DURATION.getKey(), 60
+        ), () -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.yaml"));
+        assertThat(this.indexExists("testindex")).isTrue();
+        assertThat(this.getDocumentCount("databasechangeloglock")).isZero();
+    }
+
+    @SneakyThrows
+    @Test
+    void itRenewsTheLockLease() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+
+        Scope.child(OpenSearchConfiguration.LOCK_LEASE_DURATION.getKey(), 1, () -> {
+            final var lockService = (OpenSearchLockService) LockServiceFactory.getInstance().getLockService(this.openDatabase());
+            assertThat(lockService.acquireLock()).isTrue();
+            final var acquiredLock = (OpenSearchChangeLogLock) lockService.listLocks()[0];
+
+            Thread.sleep(2_500);
+
+            lockService.checkLease();
+            final var renewedLock = (OpenSearchChangeLogLock) lockService.listLocks()[0];
+            assertThat(renewedLock.getLockExpires()).isAfter(acquiredLock.getLockExpires());
+            assertThat(renewedLock.getLockGranted()).isEqualTo(acquiredLock.getLockGranted());
+
+            final var otherLockService = LockServiceFactory.getInstance().getLockService(this.openDatabase());
+            assertThat(otherLockService.acquireLock()).isFalse();
+
+            lockService.releaseLock();
+            assertThat(otherLockService.acquireLock()).isTrue();
+            otherLockService.releaseLock();
+        });
+    }
+
+    /**
+     * While watching the lock entry the lock is acquired right after it has been released instead of after the next
+     * poll interval (10s by default).
+     */
+    @SneakyThrows
+    @Test
+    void itAcquiresTheLockAsSoonAsItIsReleased() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+        final var otherLockService = LockServiceFactory.getInstance().getLockService(this.openDatabase());
+        assertThat(otherLockService.acquireLock()).isTrue();
+
+        final var releaser = Executors.newSingleThreadScheduledExecutor();
+        try {
+            releaser.schedule(() -> {
+                otherLockService.releaseLock();
+                return null;
+            }, 1, TimeUnit.SECONDS);
+
+            final var start = System.nanoTime();
+            Scope.child(Map.of(
+                    OpenSearchConfiguration.LOCK_WAIT_MODE.getKey(), OpenSearchConfiguration.LockWaitMode.BACKOFF,
+                    OpenSearchConfiguration.LOCK_WATCH_INTERVAL.getKey(), 50
+            ), () -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.yaml"));
+
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+            assertThat(this.indexExists("testindex")).isTrue();
+        } finally {
+            releaser.shutdownNow();
+        }
+    }
+
+    @SneakyThrows
+    @Test
+    void itSupportsIndependentNamedLocks() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+        final var lockServiceA = LockServiceFactory.getInstance().getLockService(this.openDatabase());
+        final var databaseB = this.openDatabase();
+        databaseB.setDatabaseChangeLogTableName("databasechangelog-b");
+        final var lockServiceB = LockServiceFactory.getInstance().getLockService(databaseB);
+
+        Scope.child(OpenSearchConfiguration.LOCK_SCOPE.getKey(), OpenSearchConfiguration.LockScope.NAME, () -> {
+            Scope.child(OpenSearchConfiguration.LOCK_NAME.getKey(), "a", () -> assertThat(lockServiceA.acquireLock()).isTrue());
+            Scope.child(OpenSearchConfiguration.LOCK_NAME.getKey(), "b", () -> assertThat(lockServiceB.acquireLock()).isTrue());
+
+            // a lock with another name still has to wait if it writes to the same history index
+            Scope.child(OpenSearchConfiguration.LOCK_NAME.getKey(), "c",
+                    () -> assertThat(LockServiceFactory.getInstance().getLockService(this.openDatabase()).acquireLock()).isFalse());
+
+            Scope.child(OpenSearchConfiguration.LOCK_NAME.getKey(), "a", () -> {
+                assertThat(LockServiceFactory.getInstance().getLockService(this.openDatabase()).acquireLock()).isFalse();
+                assertThat(lockServiceA.listLocks())
+                        .extracting(lock -> ((OpenSearchChangeLogLock) lock).getLockName())
+                        .containsExactlyInAnyOrder("a", "b");
+                lockServiceA.releaseLock();
+            });
+
+            // the global lock is independent of the named locks of other history indices
+            Scope.child(OpenSearchConfiguration.LOCK_SCOPE.getKey(), OpenSearchConfiguration.LockScope.GLOBAL,
+                    () -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.yaml"));
+
+            Scope.child(OpenSearchConfiguration.LOCK_NAME.getKey(), "b", lockServiceB::releaseLock);
+        });
+
+        assertThat(this.indexExists("testindex")).isTrue();
+        assertThat(this.getDocumentCount("databasechangeloglock")).isZero();
+    }
+
+    @SneakyThrows
+    @Test
+    void itSupportsChangeLogLocks() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+        // another changelog writing to another history index is being applied
+        this.indexLockEntry("changelog:other.yaml", "databasechangelog-other");
+
+        Scope.child(Map.of(
+                OpenSearchConfiguration.LOCK_SCOPE.getKey(), OpenSearchConfiguration.LockScope.CHANGELOG,
+                GlobalConfiguration.CHANGELOGLOCK_WAIT_TIME.getKey(), 0L
+        ), () -> {
+            this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.yaml");
+            assertThat(this.indexExists("testindex")).isTrue();
+
+            // another changelog writing to the same history index is being applied
+            this.indexLockEntry("changelog:another.yaml", "databasechangelog");
+            assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml"))
+                    .hasStackTraceContaining("Could not acquire change log lock");
+        });
+
+        assertThat(this.listLockNames()).containsExactlyInAnyOrder("changelog:other.yaml", "changelog:another.yaml");
+    }
+
+    /**
+     * Without a changelog {@code release-locks} can't resolve the lock of the {@code CHANGELOG} scope, it releases the
+     * locks of all changelogs writing to the history index instead.
+     */
+    @SneakyThrows
+    @Test
+    void itReleasesTheChangeLogLocksOfTheHistoryIndex() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.empty.yaml");
+        this.indexLockEntry("changelog:a.yaml", "databasechangelog");
+        this.indexLockEntry("changelog:b.yaml", "databasechangelog");
+        this.indexLockEntry("changelog:other.yaml", "databasechangelog-other");
+        this.indexLockEntry("historyIndex:databasechangelog", "databasechangelog");
+        this.indexLockEntry("name", "databasechangelog");
+
+        Scope.child(OpenSearchConfiguration.LOCK_SCOPE.getKey(), OpenSearchConfiguration.LockScope.CHANGELOG,
+                () -> new CommandScope(ReleaseLocksCommandStep.COMMAND_NAME)
+                        .addArgumentValue(DbUrlConnectionArgumentsCommandStep.DATABASE_ARG, this.database)
+                        .execute());
+
+        assertThat(this.listLockNames()).containsExactlyInAnyOrder("changelog:other.yaml", "historyIndex:databasechangelog", "name");
+    }
+
+    private void indexLockEntry(final String lockName, final String historyIndex) throws Exception {
+        final var lockEntry = new OpenSearchChangeLogLock(1, new Date(), "another process", null);
+        lockEntry.setLockName(lockName);
+        lockEntry.setHistoryIndex(historyIndex);
+        this.getOpenSearchClient().index(r -> r.index("databasechangeloglock").id(lockName).document(lockEntry).refresh(Refresh.WaitFor));
+    }
+
+    private List<String> listLockNames() throws Exception {
+        return Arrays.stream(LockServiceFactory.getInstance().getLockService(this.database).listLocks())
+                .map(lock -> ((OpenSearchChangeLogLock) lock).getLockName())
+                .toList();
+    }
+
+    @SneakyThrows
+    @Test
+    void itMaintainsTheHistoryDigest() {
+        Scope.child(OpenSearchConfiguration.HISTORY_DIGEST.getKey(), true, () -> {
+            this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+            assertThat(this.getHistoryDigest()).containsEntry("count", 2);
+
+            // the up-to-date check is answered by the digest
+            final var updateResult = this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+            final var updateReport = ((UpdateReportParameters) updateResult.getResult("updateReport")).getChangesetInfo();
+            assertThat(updateReport.getChangesetCount()).isEqualTo(0);
+            assertThat(this.getHistoryService().getRanChangeSets())
+                    .hasSize(2)
+                    .extracting(RanChangeSet::getOrderExecuted)
+                    .containsOnlyNulls();
+
+            // modifying existing entries invalidates the digest, it gets rebuilt with the next complete read
+            new CommandScope(ClearChecksumsCommandStep.COMMAND_NAME)
+                    .addArgumentValue(DbUrlConnectionArgumentsCommandStep.DATABASE_ARG, this.database)
+                    .execute();
+            assertThat(this.getHistoryDigest()).isNull();
+
+            this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.multiple-steps.yaml");
+            assertThat(this.getHistoryDigest()).containsEntry("count", 2);
+            assertThat(this.getDocumentCount("databasechangelog", Query.of(q -> q.exists(e -> e.field("lastCheckSum"))))).isEqualTo(2);
+        });
+    }
+
+    @SneakyThrows
+    @Test
+    void itExecutesIndependentChangeSetsInParallel() {
+        Scope.child(OpenSearchConfiguration.EXECUTION_CONCURRENCY.getKey(), 4,
+                () -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.parallel.yaml"));
+
+        assertThat(this.getDocumentCount("parallel-a")).isEqualTo(1);
+        assertThat(this.getDocumentCount("parallel-b")).isEqualTo(1);
+
+        final var ranChangeSets = this.getHistoryService().getRanChangeSets();
+        assertThat(ranChangeSets).extracting(RanChangeSet::getOrderExecuted).containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+        final var orderExecuted = ranChangeSets.stream().collect(Collectors.toMap(RanChangeSet::getId, RanChangeSet::getOrderExecuted));
+        assertThat(orderExecuted.get("3")).isGreaterThan(orderExecuted.get("1"));
+        assertThat(orderExecuted.get("4")).isGreaterThan(orderExecuted.get("2"));
+        assertThat(orderExecuted.get("5")).isGreaterThan(orderExecuted.get("4"));
+    }
+
+    /**
+     * Only the changesets which completed successfully are recorded in the history.
+     */
+    @SneakyThrows
+    @Test
+    void itRecordsTheChangeSetsWhichCompletedIfAParallelChangeSetFails() {
+        Scope.child(OpenSearchConfiguration.EXECUTION_CONCURRENCY.getKey(), 4,
+                () -> assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.failing.yaml"))
+                        .hasStackTraceContaining("resource_already_exists_exception"));
+
+        assertThat(this.getDocumentCount("databasechangelog")).isEqualTo(1);
+    }
+
+    /**
+     * The failure of a changeset executed in parallel is raised after the update, so it isn't swallowed by
+     * {@code failOnError: false} of whichever changeset runs when it is noticed.
+     */
+    @SneakyThrows
+    @Test
+    void itFailsTheUpdateIfAParallelChangeSetWithoutFailOnErrorFails() {
+        Scope.child(OpenSearchConfiguration.EXECUTION_CONCURRENCY.getKey(), 4,
+                () -> assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.httprequest.failing.nofailonerror.yaml"))
+                        .hasStackTraceContaining("resource_already_exists_exception"));
+
+        assertThat(this.indexExists("parallel-c")).isFalse();
+        assertThat(this.getDocumentCount("databasechangelog")).isEqualTo(1);
+    }
+
+    @SneakyThrows
+    @Test
+    void itLoadsAnNdJsonFileInBatches() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.bulkload.yaml");
+
+        assertThat(this.getDocumentCount("bulkindex")).isEqualTo(3);
+        assertThat(this.getDocumentCount("bulkindex-other")).isEqualTo(1);
+    }
+
+    @SneakyThrows
+    @Test
+    void itReportsTheItemsWhichCouldNotBeLoaded() {
+        assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.bulkload.failing.yaml"))
+                .hasStackTraceContaining("line 3: create bulkindex/1 failed with code 409: version_conflict_engine_exception");
+
+        assertThat(this.getDocumentCount("bulkindex")).isEqualTo(2);
+        assertThat(this.getDocumentCount("databasechangelog")).isZero();
+    }
+
+    @SneakyThrows
+    @Test
+    void itRestoresTheSettingsAfterAFastIngest() {
+        this.doLiquibaseUpdate("liquibase/ext/changelog.bulkload.fastingest.yaml");
+
+        assertThat(this.getDocumentCount("bulkindex")).isEqualTo(3);
+        this.assertFastIngestSettingsRestored();
+        final var segments = this.getOpenSearchClient().indices().segments(r -> r.index("bulkindex")).indices().get("bulkindex");
+        assertThat(segments.shards().get("0").get(0).numSearchSegments()).isEqualTo(1);
+    }
+
+    @SneakyThrows
+    @Test
+    void itRestoresTheSettingsIfAFastIngestFails() {
+        assertThatThrownBy(() -> this.doLiquibaseUpdate("liquibase/ext/changelog.bulkload.fastingest.failing.yaml"))
+                .hasStackTraceContaining("version_conflict_engine_exception");
+
+        this.assertFastIngestSettingsRestored();
+    }
+
+    private void assertFastIngestSettingsRestored() throws Exception {
+        final var settings = this.getOpenSearchClient().indices().getSettings(r -> r.index("bulkindex")).get("bulkindex").settings();
+        assertThat(settings.index().refreshInterval().time()).isEqualTo("2s");
+        assertThat(settings.index().numberOfReplicas()).isZero();
+        final var mapping = this.getOpenSearchClient().indices().getMapping(r -> r.index("bulkindex")).get("bulkindex").mappings();
+        assertThat(mapping.meta()).doesNotContainKey("liquibase_fast_ingest");
+    }
+
+    /**
+     * @return the content of the history digest document, {@code null} if it has been invalidated.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getHistoryDigest() throws Exception {
+        final var response = this.getOpenSearchClient().get(r -> r.index("databasechangelog").id("liquibase::history-digest"), Map.class);
+        assertThat(response.found()).isTrue();
+        return (Map<String, Object>) response.source().get("historyDigest");
+    }
+
     @Test
     void itFailsOnUnsupportedChangeTypes() {
         assertThatThrownBy(
@@ -0,0 +1,40 @@
+package liquibase.ext.opensearch.change;
+
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpRequestChangeTest {
+
+    @Test
+    void itExcludesTheCompressionFromTheChecksum() {
+        final var change = new HttpRequestChange();
+        change.setMethod("PUT");
+        change.setPath("/testindex/_doc/1");
+        change.setBody("{ \"testfield\": \"a\" }");
+        final var checkSum = change.generateCheckSum();
+
+        change.setCompress(true);
+        assertThat(change.generateCheckSum()).isEqualTo(checkSum);
+
+        change.setBody("{ \"testfield\": \"b\" }");
+        assertThat(change.generateCheckSum()).isNotEqualTo(checkSum);
+    }
+
+    @Test
+    void itRequiresABodyOrABodyFile() {
+        final var change = new HttpRequestChange();
+        change.setMethod("POST");
+        change.setPath("/testindex/_refresh");
+        final var database = new OpenSearchLiquibaseDatabase(new OpenSearchConnection());
+        assertThat(change.validate(database).getErrorMessages()).contains("one of body and bodyFile must be set");
+
+        change.setBody("");
+        assertThat(change.validate(database).getErrorMessages()).doesNotContain("one of body and bodyFile must be set");
+
+        change.setBodyFile("liquibase/ext/httprequest.bodyfile.ndjson");
+        assertThat(change.validate(database).getErrorMessages()).contains("only one of body and bodyFile can be set");
+    }
+}
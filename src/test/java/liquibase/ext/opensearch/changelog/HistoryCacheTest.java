@@ -0,0 +1,126 @@
+package liquibase.ext.opensearch.changelog;
+
+import liquibase.ContextExpression;
+import liquibase.Labels;
+import liquibase.change.CheckSum;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.RanChangeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HistoryCacheTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void itReadsTheWrittenHistory() throws Exception {
+        final var cache = new HistoryCache(this.directory, "cluster", "databasechangelog");
+        final var history = List.of(ranChangeSet(1), new RanChangeSet());
+        final var state = new HistoryCache.State(0, -1, -1, -1).plus(history, history.size() - 1);
+
+        cache.write(history, state);
+
+        assertThat(cache.getFile()).isEqualTo(this.directory.resolve("cluster").resolve("databasechangelog.history"));
+        assertThat(cache.read(state)).hasValueSatisfying(read -> assertThat(read)
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(history));
+    }
+
+    @Test
+    void itIgnoresTheCacheIfTheStateDoesNotMatch() throws Exception {
+        final var cache = new HistoryCache(this.directory, "cluster", "databasechangelog");
+        final var history = List.of(ranChangeSet(1), ranChangeSet(2));
+        final var state = new HistoryCache.State(0, -1, -1, -1).plus(history, history.size() - 1);
+
+        assertThat(cache.read(state)).isEmpty();
+
+        cache.write(history, state);
+
+        assertThat(cache.read(new HistoryCache.State(3, 3, state.maxDateExecuted(), 2))).isEmpty();
+        assertThat(cache.read(new HistoryCache.State(2, 3, state.maxDateExecuted(), 2))).isEmpty();
+        // e.g. a tag added to an existing entry
+        assertThat(cache.read(new HistoryCache.State(2, 2, state.maxDateExecuted(), 2))).isEmpty();
+        assertThat(cache.read(new HistoryCache.State(2, 2, state.maxDateExecuted(), 1))).isPresent();
+        assertThat(cache.read(state)).isPresent();
+    }
+
+    @Test
+    void itReadsAppendedEntries() throws Exception {
+        final var cache = new HistoryCache(this.directory, "cluster", "databasechangelog");
+        final var history = List.of(ranChangeSet(1), ranChangeSet(2));
+        final var state = new HistoryCache.State(0, -1, -1, -1).plus(history, history.size() - 1);
+        cache.write(history, state);
+
+        final var appended = List.of(ranChangeSet(3));
+        final var appendedState = state.plus(appended, 2);
+        cache.append(appended, appendedState);
+
+        assertThat(appendedState).isEqualTo(new HistoryCache.State(3, 3, 3000, 2));
+        assertThat(cache.read(state)).isEmpty();
+        assertThat(cache.read(appendedState)).hasValueSatisfying(read -> assertThat(read)
+                .extracting(RanChangeSet::getId)
+                .containsExactly("1", "2", "3"));
+    }
+
+    @Test
+    void itIgnoresDataAfterTheEndOfTheEntries() throws Exception {
+        final var cache = new HistoryCache(this.directory, "cluster", "databasechangelog");
+        final var history = List.of(ranChangeSet(1));
+        final var state = new HistoryCache.State(0, -1, -1, -1).plus(history, history.size() - 1);
+        cache.write(history, state);
+
+        // e.g. an append which got interrupted before the header was updated
+        Files.write(cache.getFile(), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertThat(cache.read(state)).hasValueSatisfying(read -> assertThat(read).hasSize(1));
+    }
+
+    @Test
+    void itFailsOnACorruptCache() throws Exception {
+        final var cache = new HistoryCache(this.directory, "cluster", "databasechangelog");
+        final var history = List.of(ranChangeSet(1));
+        final var state = new HistoryCache.State(0, -1, -1, -1).plus(history, history.size() - 1);
+        cache.write(history, state);
+
+        final var content = Files.readAllBytes(cache.getFile());
+        Files.write(cache.getFile(), Arrays.copyOf(content, content.length / 2));
+
+        assertThatThrownBy(() -> cache.read(state)).isInstanceOf(IOException.class);
+
+        cache.invalidate();
+
+        assertThat(cache.read(state)).isEmpty();
+    }
+
+    private static RanChangeSet ranChangeSet(final int order) {
+        final var ranChangeSet = new RanChangeSet();
+        ranChangeSet.setId(String.valueOf(order));
+        ranChangeSet.setChangeLog("liquibase/ext/changelog.yaml");
+        ranChangeSet.setStoredChangeLog("classpath:liquibase/ext/changelog.yaml");
+        ranChangeSet.setAuthor("test");
+        ranChangeSet.setLastCheckSum(CheckSum.compute(String.valueOf(order)));
+        ranChangeSet.setDateExecuted(new Date(order * 1000L));
+        ranChangeSet.setTag(order == 1 ? "v1" : null);
+        ranChangeSet.setExecType(ChangeSet.ExecType.EXECUTED);
+        ranChangeSet.setDescription("createIndex");
+        ranChangeSet.setComments("äöü");
+        ranChangeSet.setOrderExecuted(order);
+        ranChangeSet.setContextExpression(new ContextExpression("test"));
+        ranChangeSet.setLabels(new Labels("a,b"));
+        ranChangeSet.setDeploymentId("123");
+        ranChangeSet.setLiquibaseVersion("5.0.3");
+        return ranChangeSet;
+    }
+}
@@ -0,0 +1,40 @@
+package liquibase.ext.opensearch.changelog;
+
+import liquibase.change.CheckSum;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistoryDigestTest {
+
+    @Test
+    void itDoesNotDependOnTheOrderOfTheEntries() {
+        final var first = HistoryDigest.hashOf("changelog.yaml", "1", "test", CheckSum.compute("1"));
+        final var second = HistoryDigest.hashOf("changelog.yaml", "2", "test", CheckSum.compute("2"));
+
+        final var digest = HistoryDigest.EMPTY.plus(first, 1).plus(second, 2);
+
+        assertThat(digest).isEqualTo(HistoryDigest.EMPTY.plus(second, 2).plus(first, 1));
+        assertThat(digest.count()).isEqualTo(2);
+        assertThat(digest.maxOrderExecuted()).isEqualTo(2);
+    }
+
+    @Test
+    void itMatchesCaseInsensitively() {
+        assertThat(HistoryDigest.hashOf("Changelog.yaml", "Id", "Test", CheckSum.compute("1")))
+                .isEqualTo(HistoryDigest.hashOf("changelog.yaml", "id", "test", CheckSum.compute("1")));
+        assertThat(HistoryDigest.hashOf("changelog.yaml", "id", "test", CheckSum.compute("1")))
+                .isNotEqualTo(HistoryDigest.hashOf("changelog.yaml", "id", "test", CheckSum.compute("2")))
+                .isNotEqualTo(HistoryDigest.hashOf("changelog.yaml", "id", "test", null))
+                .isNotEqualTo(HistoryDigest.hashOf("changelog.yaml", "i", "dtest", CheckSum.compute("1")));
+    }
+
+    @Test
+    void itIgnoresTheOrderExecutedWhenComparingEntries() {
+        final var hash = HistoryDigest.hashOf("changelog.yaml", "1", "test", CheckSum.compute("1"));
+
+        assertThat(HistoryDigest.EMPTY.plus(hash, 5).coversSameEntries(HistoryDigest.EMPTY.plus(hash, null))).isTrue();
+        assertThat(HistoryDigest.EMPTY.plus(hash, 5).coversSameEntries(HistoryDigest.EMPTY)).isFalse();
+        assertThat(HistoryDigest.EMPTY.coversSameEntries(null)).isFalse();
+    }
+}
@@ -0,0 +1,41 @@
+package liquibase.ext.opensearch.configuration;
+
+import liquibase.Scope;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenSearchConfigurationTest {
+
+    @Test
+    void itAcceptsAPositiveHistoryPageSize() throws Exception {
+        Scope.child("liquibase.opensearch.historyPageSize", "250",
+                () -> assertThat(OpenSearchConfiguration.HISTORY_PAGE_SIZE.getCurrentValue()).isEqualTo(250));
+    }
+
+    @Test
+    void itRejectsAnEmptyHistoryPageSize() {
+        assertThatThrownBy(() -> Scope.child("liquibase.opensearch.historyPageSize", "0",
+                () -> OpenSearchConfiguration.HISTORY_PAGE_SIZE.getCurrentValue()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("liquibase.opensearch.historyPageSize must be at least 1 but is 0");
+    }
+
+    @Test
+    void itRejectsANegativeHistoryPageSize() {
+        // also the batch size of the targeted history fetch, which must not be negative
+        assertThatThrownBy(() -> Scope.child("liquibase.opensearch.historyPageSize", "-1",
+                () -> OpenSearchConfiguration.HISTORY_PAGE_SIZE.getCurrentValue()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("liquibase.opensearch.historyPageSize must be at least 1 but is -1");
+    }
+
+    @Test
+    void itRejectsAnEmptyNumberOfHistorySlices() {
+        assertThatThrownBy(() -> Scope.child("liquibase.opensearch.historySlices", 0,
+                () -> OpenSearchConfiguration.HISTORY_SLICES.getCurrentValue()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("liquibase.opensearch.historySlices must be at least 1 but is 0");
+    }
+}
@@ -0,0 +1,43 @@
+package liquibase.ext.opensearch.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenSearchConnectionTest {
+
+    @Test
+    void itTakesPropertiesFromTheUrl() {
+        final var driverProperties = new Properties();
+        driverProperties.setProperty("user", "admin");
+        driverProperties.setProperty(OpenSearchConnection.MAX_CONNECTIONS_PROPERTY, "50");
+
+        final var properties = OpenSearchConnection.withUrlProperties(
+                "http://localhost:9200,http://localhost:9201?maxConnections=20&ioThreads=4&compression", driverProperties);
+
+        assertThat(properties.getProperty("user")).isEqualTo("admin");
+        assertThat(properties.getProperty(OpenSearchConnection.MAX_CONNECTIONS_PROPERTY)).isEqualTo("50");
+        assertThat(properties.getProperty(OpenSearchConnection.IO_THREADS_PROPERTY)).isEqualTo("4");
+        assertThat(properties.getProperty(OpenSearchConnection.COMPRESSION_PROPERTY)).isEmpty();
+    }
+
+    @Test
+    void itValidatesProperties() {
+        final var properties = new Properties();
+        properties.setProperty(OpenSearchConnection.MAX_CONNECTIONS_PER_ROUTE_PROPERTY, " 20 ");
+        properties.setProperty(OpenSearchConnection.IO_THREADS_PROPERTY, "0");
+        properties.setProperty(OpenSearchConnection.COMPRESSION_PROPERTY, "yes");
+
+        assertThat(OpenSearchConnection.intProperty(properties, OpenSearchConnection.MAX_CONNECTIONS_PER_ROUTE_PROPERTY, 10, 1)).isEqualTo(20);
+        assertThat(OpenSearchConnection.intProperty(properties, OpenSearchConnection.SOCKET_TIMEOUT_PROPERTY, 0, 0)).isZero();
+        assertThatThrownBy(() -> OpenSearchConnection.intProperty(properties, OpenSearchConnection.IO_THREADS_PROPERTY, 1, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ioThreads (number of I/O reactor threads");
+        assertThatThrownBy(() -> OpenSearchConnection.booleanProperty(properties, OpenSearchConnection.COMPRESSION_PROPERTY, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expected true or false");
+    }
+}
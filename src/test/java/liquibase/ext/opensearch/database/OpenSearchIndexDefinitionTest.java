@@ -0,0 +1,26 @@
+package liquibase.ext.opensearch.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenSearchIndexDefinitionTest {
+
+    @Test
+    void itHashesTheMapping() {
+        final var definition = new OpenSearchIndexDefinition(m -> m
+                .properties("id", p -> p.keyword(k -> k))
+                .properties("lockGranted", p -> p.date(d -> d)));
+        final var sameDefinition = new OpenSearchIndexDefinition(m -> m
+                .properties("id", p -> p.keyword(k -> k))
+                .properties("lockGranted", p -> p.date(d -> d)));
+        final var otherDefinition = new OpenSearchIndexDefinition(m -> m
+                .properties("id", p -> p.keyword(k -> k))
+                .properties("lockGranted", p -> p.text(t -> t)));
+
+        assertThat(definition.getMappingHash())
+                .hasSize(64)
+                .isEqualTo(sameDefinition.getMappingHash())
+                .isNotEqualTo(otherDefinition.getMappingHash());
+    }
+}
@@ -0,0 +1,130 @@
+package liquibase.ext.opensearch.executor;
+
+import com.sun.net.httpserver.HttpServer;
+import liquibase.changelog.ChangeSet;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import liquibase.ext.opensearch.statement.HttpRequestStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to execute the requests of a changelog with 1000 changesets, each writing a document to
+ * one of 100 indices, against a local stub server which answers every request after a fixed latency.
+ * {@code concurrency=1} is the sequential execution, everything above runs the changesets in parallel (see
+ * {@link OpenSearchConfiguration#EXECUTION_CONCURRENCY}). Only the requests of the changesets are measured, not the
+ * history and lock handling of a complete update.
+ * <p>
+ * The connection pool is sized to the concurrency, so that it doesn't limit the speedup of higher concurrencies.
+ * <p>
+ * The benchmarks are only generated in the {@code benchmark} profile, run it with
+ * {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=liquibase.ext.opensearch.executor.ParallelExecutionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ParallelExecutionBenchmark {
+
+    private static final String CHANGELOG = "liquibase/ext/changelog.yaml";
+
+    private static final int CHANGESETS = 1000;
+
+    private static final int INDICES = 100;
+
+    @Param({"1", "4", "16"})
+    private int concurrency;
+
+    @Param({"5"})
+    private int latencyMillis;
+
+    private HttpServer server;
+
+    private ExecutorService serverThreads;
+
+    private OpenSearchExecutor executor;
+
+    private List<HttpRequestStatement> statements;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.serverThreads = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.setExecutor(this.serverThreads);
+        this.server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(this.latencyMillis);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final var response = "{\"acknowledged\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        this.server.start();
+
+        final var properties = new Properties();
+        properties.setProperty(OpenSearchConnection.MAX_CONNECTIONS_PROPERTY, String.valueOf(Math.max(this.concurrency, OpenSearchConnection.DEFAULT_MAX_CONNECTIONS)));
+        properties.setProperty(OpenSearchConnection.MAX_CONNECTIONS_PER_ROUTE_PROPERTY, String.valueOf(Math.max(this.concurrency, OpenSearchConnection.DEFAULT_MAX_CONNECTIONS_PER_ROUTE)));
+        final var connection = new OpenSearchConnection();
+        connection.open("opensearch:http://localhost:%d".formatted(this.server.getAddress().getPort()), null, properties);
+        this.executor = new OpenSearchExecutor();
+        this.executor.setDatabase(new OpenSearchLiquibaseDatabase(connection));
+
+        this.statements = new ArrayList<>();
+        for (int i = 0; i < CHANGESETS; i++) {
+            final var changeSet = new ChangeSet(String.valueOf(i), "benchmark", false, false, CHANGELOG, null, null, null);
+            this.statements.add(new HttpRequestStatement("PUT", null, "/index-%d/_doc/%d".formatted(i % INDICES, i),
+                    "{\"testfield\":\"test\"}", null, null, changeSet, List.of(), null, null, null));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.server.stop(0);
+        this.serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public void executeChangeLog() throws Exception {
+        liquibase.Scope.child(OpenSearchConfiguration.EXECUTION_CONCURRENCY.getKey(), this.concurrency, () -> {
+            for (final var statement : this.statements) {
+                this.executor.execute(statement);
+            }
+            this.executor.awaitParallelExecution();
+        });
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ParallelExecutionBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
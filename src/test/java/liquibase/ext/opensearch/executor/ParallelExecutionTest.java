@@ -0,0 +1,168 @@
+package liquibase.ext.opensearch.executor;
+
+import liquibase.Scope;
+import liquibase.changelog.ChangeSet;
+import liquibase.exception.DatabaseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelExecutionTest {
+
+    @Test
+    void itInfersTheIndexFromThePath() {
+        assertThat(ParallelExecution.indexOf("/testindex")).isEqualTo("testindex");
+        assertThat(ParallelExecution.indexOf("testindex/_doc/1")).isEqualTo("testindex");
+        assertThat(ParallelExecution.indexOf("/testindex?wait_for_active_shards=1")).isEqualTo("testindex");
+        assertThat(ParallelExecution.indexOf("/_bulk")).isNull();
+        assertThat(ParallelExecution.indexOf("/_cluster/settings")).isNull();
+        assertThat(ParallelExecution.indexOf("/index-a,index-b/_refresh")).isNull();
+        assertThat(ParallelExecution.indexOf("/index-*/_settings")).isNull();
+        assertThat(ParallelExecution.indexOf("/")).isNull();
+    }
+
+    @Test
+    void itTreatsAliasChangesAndDateMathNamesAsUnboundToAnIndex() {
+        assertThat(ParallelExecution.indexOf("/index-a/_alias/alias-a")).isNull();
+        assertThat(ParallelExecution.indexOf("/index-a/_aliases/alias-a")).isNull();
+        assertThat(ParallelExecution.indexOf("/alias-a/_rollover")).isNull();
+        assertThat(ParallelExecution.indexOf("/<logs-{now/d}>")).isNull();
+        assertThat(ParallelExecution.indexOf("/%3Clogs-%7Bnow%2Fd%7D%3E/_doc")).isNull();
+        assertThat(ParallelExecution.indexOf("/index-a/_doc/1?refresh=true")).isEqualTo("index-a");
+
+        assertThat(ParallelExecution.declaresAliases("{ \"aliases\": { \"alias-a\": {} } }")).isTrue();
+        assertThat(ParallelExecution.declaresAliases("{ \"aliases\": {}, \"settings\": {} }")).isFalse();
+        assertThat(ParallelExecution.declaresAliases("{ \"mappings\": {} }")).isFalse();
+        assertThat(ParallelExecution.declaresAliases(null)).isFalse();
+    }
+
+    @Test
+    void itRunsRequestsAgainstDifferentIndicesConcurrently() throws Exception {
+        final var execution = new ParallelExecution(2);
+        final var bothRunning = new CountDownLatch(2);
+        final ParallelExecution.Task task = () -> {
+            bothRunning.countDown();
+            try {
+                if (!bothRunning.await(10, TimeUnit.SECONDS)) {
+                    throw new DatabaseException("the other request didn't run at the same time");
+                }
+            } catch (final InterruptedException e) {
+                throw new DatabaseException(e);
+            }
+        };
+
+        execution.submit(changeSet("1"), "/index-a", null, List.of(), task);
+        execution.submit(changeSet("2"), "/index-b", null, List.of(), task);
+
+        execution.awaitCompletion();
+    }
+
+    @Test
+    void itRunsDependentRequestsOneAfterTheOther() throws Exception {
+        final var execution = new ParallelExecution(4);
+        final var executed = new CopyOnWriteArrayList<String>();
+
+        execution.submit(changeSet("1"), "/index-a", null, List.of(), slow(executed, "1"));
+        execution.submit(changeSet("2"), "/index-a/_doc/1", null, List.of(), slow(executed, "2"));
+        execution.submit(changeSet("3"), "/index-b", null, List.of("2"), slow(executed, "3"));
+        execution.submit(changeSet("4"), "/_aliases", null, List.of(), slow(executed, "4"));
+        execution.submit(changeSet("5"), "/index-c", null, List.of(), slow(executed, "5"));
+
+        execution.awaitCompletion();
+        assertThat(executed).containsExactly("1", "2", "3", "4", "5");
+    }
+
+    @Test
+    void itSkipsRequestsDependingOnAFailedRequest() throws Exception {
+        final var execution = new ParallelExecution(2);
+        final var executed = new CopyOnWriteArrayList<String>();
+        // nothing new is started once a request has failed, the independent request must already be running
+        final var independentStarted = new CountDownLatch(1);
+
+        execution.submit(changeSet("1"), "/index-a", null, List.of(), () -> {
+            try {
+                independentStarted.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                throw new DatabaseException(e);
+            }
+            throw new DatabaseException("failed");
+        });
+        execution.submit(changeSet("2"), "/index-a/_doc/1", null, List.of(), slow(executed, "2"));
+        execution.submit(changeSet("3"), "/index-b", null, List.of("1"), slow(executed, "3"));
+        execution.submit(changeSet("4"), "/index-c", null, List.of(), () -> {
+            independentStarted.countDown();
+            slow(executed, "4").run();
+        });
+
+        execution.awaitCompletion();
+        assertThat(execution.getFailure()).hasValueSatisfying(e -> assertThat(e).hasMessageContaining("changelog.yaml::1::test"));
+        assertThat(execution.getCompletion(changeSet("1"))).isCompletedExceptionally();
+        assertThat(execution.getCompletion(changeSet("2"))).isCompletedExceptionally();
+        assertThat(execution.getCompletion(changeSet("3"))).isCompletedExceptionally();
+        assertThat(execution.getCompletion(changeSet("4"))).isCompleted();
+        assertThat(executed).containsExactly("4");
+    }
+
+    @Test
+    void itSkipsRequestsSubmittedAfterAFailure() throws Exception {
+        final var execution = new ParallelExecution(2);
+        final var executed = new CopyOnWriteArrayList<String>();
+
+        execution.submit(changeSet("1"), "/index-a", null, List.of(), () -> {
+            throw new DatabaseException("failed");
+        });
+        execution.getCompletion(changeSet("1")).exceptionally(e -> null).join();
+        execution.submit(changeSet("2"), "/index-b", null, List.of(), slow(executed, "2"));
+
+        execution.awaitCompletion();
+        assertThat(execution.getCompletion(changeSet("2"))).isCompletedExceptionally();
+        assertThat(executed).isEmpty();
+    }
+
+    @Test
+    void itWaitsForEverythingBeforeAnIndexCreationDeclaringAliases() throws Exception {
+        final var execution = new ParallelExecution(4);
+        final var executed = new CopyOnWriteArrayList<String>();
+
+        execution.submit(changeSet("1"), "/index-a/_doc/1", null, List.of(), slow(executed, "1"));
+        execution.submit(changeSet("2"), "/index-b", "{ \"aliases\": { \"alias-a\": {} } }", List.of(), slow(executed, "2"));
+        execution.submit(changeSet("3"), "/alias-a/_doc/1", null, List.of(), slow(executed, "3"));
+
+        execution.awaitCompletion();
+        assertThat(executed).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    void itRunsRequestsInTheScopeTheyWereSubmittedIn() throws Exception {
+        final var execution = new ParallelExecution(2);
+        final var values = new CopyOnWriteArrayList<String>();
+
+        Scope.child("parallelExecutionTest", "first", () ->
+                execution.submit(changeSet("1"), "/index-a", null, List.of(), () -> values.add(Scope.getCurrentScope().get("parallelExecutionTest", String.class))));
+        Scope.child("parallelExecutionTest", "second", () ->
+                execution.submit(changeSet("2"), "/index-a", null, List.of(), () -> values.add(Scope.getCurrentScope().get("parallelExecutionTest", String.class))));
+
+        execution.awaitCompletion();
+        assertThat(values).containsExactly("first", "second");
+    }
+
+    private static ParallelExecution.Task slow(final List<String> executed, final String id) {
+        return () -> {
+            try {
+                Thread.sleep(20);
+            } catch (final InterruptedException e) {
+                throw new DatabaseException(e);
+            }
+            executed.add(id);
+        };
+    }
+
+    private static ChangeSet changeSet(final String id) {
+        return new ChangeSet(id, "test", false, false, "changelog.yaml", null, null, null);
+    }
+}
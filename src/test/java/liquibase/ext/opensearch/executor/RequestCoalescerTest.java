@@ -0,0 +1,90 @@
+package liquibase.ext.opensearch.executor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.changelog.ChangeSet;
+import liquibase.ext.opensearch.statement.CoalescedWritesStatement;
+import liquibase.ext.opensearch.statement.HttpRequestStatement;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCoalescerTest {
+
+    private final ChangeSet changeSet = new ChangeSet("1", "test", false, false, "changelog.yaml", null, null, null);
+
+    @Test
+    void itWritesConsecutiveDocumentsWithASingleBulkRequest() {
+        final var coalescer = new RequestCoalescer();
+        assertThat(coalescer.add(this.request("PUT", "/index-a/_doc/1", "{}"))).isTrue();
+        assertThat(coalescer.add(this.request("POST", "/index-b/_doc/2", "{}"))).isTrue();
+
+        assertThat(coalescer.drain()).get().isInstanceOfSatisfying(CoalescedWritesStatement.class,
+                statement -> assertThat(statement.getRequests()).hasSize(2));
+        assertThat(coalescer.drain()).isEmpty();
+    }
+
+    @Test
+    void itExecutesASingleRequestAsItIs() {
+        final var coalescer = new RequestCoalescer();
+        final var request = this.request("PUT", "/index-a/_doc/1", "{}");
+        coalescer.add(request);
+
+        assertThat(coalescer.drain()).contains(request);
+    }
+
+    @Test
+    void itDoesNotCoalesceOtherRequests() {
+        final var coalescer = new RequestCoalescer();
+        assertThat(coalescer.add(this.request("PUT", "/index-a/_doc/1?refresh=true", "{}"))).isFalse();
+        assertThat(coalescer.add(this.request("PUT", "/index-a/_doc", "{}"))).isFalse();
+        assertThat(coalescer.add(this.request("POST", "/index-a/_doc", "{}"))).isFalse();
+        assertThat(coalescer.add(this.request("PUT", "/index-a/_create/1", "{}"))).isFalse();
+        assertThat(coalescer.add(this.request("DELETE", "/index-a/_doc/1", null))).isFalse();
+        assertThat(coalescer.add(this.request("PUT", "/index-*/_mapping", "{\"properties\":{}}"))).isFalse();
+        assertThat(coalescer.add(this.request("PUT", "/index-a/_mapping", "{\"dynamic\":false}"))).isFalse();
+        assertThat(coalescer.add(this.request("PUT", "/index-a", "{}"))).isFalse();
+        assertThat(coalescer.drain()).isEmpty();
+    }
+
+    @Test
+    void itMergesMappingUpdatesOfDifferentFields() throws Exception {
+        final var coalescer = new RequestCoalescer();
+        coalescer.add(this.request("PUT", "/index-a/_mapping", "{\"properties\":{\"a\":{\"type\":\"keyword\"}}}"));
+        coalescer.add(this.request("PUT", "/index-a/_mapping", "{\"properties\":{\"b\":{\"type\":\"long\"}}}"));
+        assertThat(coalescer.add(this.request("PUT", "/index-a/_mapping", "{\"properties\":{\"b\":{\"type\":\"text\"}}}"))).isFalse();
+        assertThat(coalescer.add(this.request("PUT", "/index-b/_mapping", "{\"properties\":{\"c\":{\"type\":\"text\"}}}"))).isFalse();
+
+        final var merged = (HttpRequestStatement) coalescer.drain().orElseThrow();
+        assertThat(merged.getPath()).isEqualTo("/index-a/_mapping");
+        assertThat(new ObjectMapper().readTree(merged.getBody())).isEqualTo(new ObjectMapper().readTree(
+                "{\"properties\":{\"a\":{\"type\":\"keyword\"},\"b\":{\"type\":\"long\"}}}"));
+    }
+
+    @Test
+    void itMergesSettingsUpdatesOfDifferentSettings() throws Exception {
+        final var coalescer = new RequestCoalescer();
+        coalescer.add(this.request("PUT", "/index-a/_settings", "{\"index\":{\"refresh_interval\":\"1s\"}}"));
+        coalescer.add(this.request("PUT", "/index-a/_settings", "{\"number_of_replicas\":2}"));
+        assertThat(coalescer.add(this.request("PUT", "/index-a/_settings", "{\"index.refresh_interval\":\"5s\"}"))).isFalse();
+
+        final var merged = (HttpRequestStatement) coalescer.drain().orElseThrow();
+        assertThat(new ObjectMapper().readTree(merged.getBody())).isEqualTo(new ObjectMapper().readTree(
+                "{\"index.refresh_interval\":\"1s\",\"index.number_of_replicas\":2}"));
+    }
+
+    @Test
+    void itDoesNotCoalesceRequestsOfDifferentChangeSets() {
+        final var coalescer = new RequestCoalescer();
+        coalescer.add(this.request("PUT", "/index-a/_doc/1", "{}"));
+        final var other = new HttpRequestStatement("PUT", null, "/index-a/_doc/2", "{}", null, null,
+                new ChangeSet("2", "test", false, false, "changelog.yaml", null, null, null), List.of(), null, null, null);
+
+        assertThat(coalescer.add(other)).isFalse();
+    }
+
+    private HttpRequestStatement request(final String method, final String path, final String body) {
+        return new HttpRequestStatement(method, null, path, body, null, null, this.changeSet, List.of(), null, null, null);
+    }
+}
@@ -0,0 +1,70 @@
+package liquibase.ext.opensearch.statement;
+
+import liquibase.exception.DatabaseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkBatchReaderTest {
+
+    private static final String NDJSON = """
+            { "index": { "_id": "1" } }
+            { "testfield": "a" }
+
+            { "delete": { "_id": "2" } }
+            { "create": { "_id": "3" } }
+            { "testfield": "c" }
+            """;
+
+    @Test
+    void itSplitsTheItemsIntoBatchesOfTheGivenSize() throws Exception {
+        final var batches = readAll(NDJSON, 2, Integer.MAX_VALUE);
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0)).extracting(BulkBatchReader.Item::line).containsExactly(1L, 4L);
+        assertThat(batches.get(0).get(1).source()).isNull();
+        assertThat(batches.get(1)).extracting(BulkBatchReader.Item::line).containsExactly(5L);
+    }
+
+    @Test
+    void itLimitsTheBytesOfABatch() throws Exception {
+        // every batch contains at least one item, even if it is bigger than the limit
+        assertThat(readAll(NDJSON, 100, 1)).hasSize(3);
+        assertThat(readAll(NDJSON, 100, 80)).hasSize(2);
+        assertThat(readAll(NDJSON, 100, 1000)).hasSize(1);
+    }
+
+    @Test
+    void itRejectsInvalidActions() {
+        assertThatThrownBy(() -> readAll("{ \"testfield\": \"a\" }\n", 10, 1000))
+                .isInstanceOf(DatabaseException.class)
+                .hasMessageContaining("line 1: expected a bulk action");
+        assertThatThrownBy(() -> readAll("{ \"index\": {} }\n{}\n{ \"index\": {} }\n", 10, 1000))
+                .isInstanceOf(DatabaseException.class)
+                .hasMessageContaining("line 3: the index action is not followed by a document");
+    }
+
+    @Test
+    void itBacksOffExponentially() {
+        assertThat(BulkLoadStatement.retryDelay(0)).isEqualTo(Duration.ofMillis(100));
+        assertThat(BulkLoadStatement.retryDelay(3)).isEqualTo(Duration.ofMillis(800));
+        assertThat(BulkLoadStatement.retryDelay(30)).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    private static List<List<BulkBatchReader.Item>> readAll(final String ndjson, final int maxItems, final int maxBytes) throws Exception {
+        final var reader = new BulkBatchReader(new BufferedReader(new StringReader(ndjson)), maxItems, maxBytes);
+        final var batches = new ArrayList<List<BulkBatchReader.Item>>();
+        List<BulkBatchReader.Item> batch;
+        while ((batch = reader.next()) != null) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
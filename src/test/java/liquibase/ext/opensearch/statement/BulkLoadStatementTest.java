@@ -0,0 +1,67 @@
+package liquibase.ext.opensearch.statement;
+
+import com.sun.net.httpserver.HttpServer;
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkLoadStatementTest {
+
+    private static final String FILE = "liquibase/ext/httprequest.bodyfile.ndjson";
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer server;
+
+    private OpenSearchLiquibaseDatabase database;
+
+    /**
+     * A stub server which rejects the first two bulk requests as a whole and accepts the following ones. the http client
+     * of the transport retries a 429 once on its own, the second rejection reaches the statement.
+     */
+    @BeforeEach
+    void startServer() throws Exception {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", exchange -> {
+            final var rejected = this.requests.incrementAndGet() <= 2;
+            final var response = (rejected
+                    ? "{\"error\":{\"type\":\"es_rejected_execution_exception\",\"reason\":\"rejected\"},\"status\":429}"
+                    : "{\"took\":1,\"errors\":false,\"items\":[{\"create\":{\"_index\":\"testindex\",\"status\":201}},"
+                    + "{\"create\":{\"_index\":\"testindex\",\"status\":201}}]}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(rejected ? 429 : 200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        this.server.start();
+
+        final var connection = new OpenSearchConnection();
+        connection.open("opensearch:http://localhost:%d".formatted(this.server.getAddress().getPort()), null, new Properties());
+        this.database = new OpenSearchLiquibaseDatabase(connection);
+    }
+
+    @AfterEach
+    void stopServer() {
+        this.server.stop(0);
+    }
+
+    @Test
+    void itRetriesABatchWhichHasBeenRejectedAsAWhole() throws Exception {
+        final var resource = new ClassLoaderResourceAccessor().get(FILE);
+        final var statement = new BulkLoadStatement(FILE, resource, "testindex", 100, 1_000_000, 1, 3, null, null);
+
+        statement.execute(this.database);
+
+        assertThat(this.requests).hasValue(3);
+    }
+}
@@ -0,0 +1,70 @@
+package liquibase.ext.opensearch.statement;
+
+import com.sun.net.httpserver.HttpServer;
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import liquibase.ext.opensearch.database.OpenSearchLiquibaseDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoalescedWritesStatementTest {
+
+    private final Map<String, Integer> requests = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+
+    private OpenSearchLiquibaseDatabase database;
+
+    /**
+     * A stub server which rejects the first two {@code _mget} and {@code _bulk} requests with a 429 and accepts the
+     * following ones. The http client of the transport retries a 429 once on its own, the second rejection reaches the
+     * statement.
+     */
+    @BeforeEach
+    void startServer() throws Exception {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", exchange -> {
+            final var path = exchange.getRequestURI().getPath();
+            final var rejected = this.requests.merge(path, 1, Integer::sum) <= 2;
+            final var response = (rejected
+                    ? "{\"error\":{\"type\":\"rejected_execution_exception\",\"reason\":\"rejected\"},\"status\":429}"
+                    : path.equals("/_mget")
+                    ? "{\"docs\":[{\"_index\":\"testindex\",\"_id\":\"1\",\"found\":false}]}"
+                    : "{\"took\":1,\"errors\":false,\"items\":[{\"index\":{\"_index\":\"testindex\",\"_id\":\"1\",\"status\":201}}]}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Retry-After", "0");
+            exchange.sendResponseHeaders(rejected ? 429 : 200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        this.server.start();
+
+        final var connection = new OpenSearchConnection();
+        connection.open("opensearch:http://localhost:%d".formatted(this.server.getAddress().getPort()), null, new Properties());
+        this.database = new OpenSearchLiquibaseDatabase(connection);
+    }
+
+    @AfterEach
+    void stopServer() {
+        this.server.stop(0);
+    }
+
+    @Test
+    void itRetriesTheRequestsWhichHaveBeenRejected() throws Exception {
+        final var statement = new CoalescedWritesStatement(List.of(new HttpRequestStatement("PUT", null, "/testindex/_doc/1", "{\"field\":1}")));
+
+        statement.execute(this.database);
+
+        assertThat(this.requests).containsEntry("/_mget", 3).containsEntry("/_bulk", 3);
+    }
+}
@@ -0,0 +1,37 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FastIngestTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void itRecordsTheSettingsToRestore() throws Exception {
+        final var settings = this.mapper.readTree("""
+                { "index.number_of_replicas": "1", "index.refresh_interval": "5s", "index.number_of_shards": "3" }
+                """);
+        assertThat(FastIngest.recordOf(settings, "green")).isEqualTo(this.mapper.readTree("""
+                {
+                  "settings": { "index.number_of_replicas": "1", "index.refresh_interval": "5s" },
+                  "health": "green"
+                }
+                """));
+    }
+
+    @Test
+    void itResetsSettingsWhichHaveNotBeenSet() throws Exception {
+        final var settings = this.mapper.readTree("""
+                { "index.number_of_replicas": "0" }
+                """);
+        assertThat(FastIngest.recordOf(settings, "yellow")).isEqualTo(this.mapper.readTree("""
+                {
+                  "settings": { "index.number_of_replicas": "0", "index.refresh_interval": null },
+                  "health": "yellow"
+                }
+                """));
+    }
+}
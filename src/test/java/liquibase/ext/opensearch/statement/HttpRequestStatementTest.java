@@ -0,0 +1,29 @@
+package liquibase.ext.opensearch.statement;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpRequestStatementTest {
+
+    @Test
+    void itKnowsWhichRequestsAreRepeatable() {
+        assertThat(request("GET", "/test/_search").isRepeatable()).isTrue();
+        assertThat(request("PUT", "/test/_doc/1").isRepeatable()).isTrue();
+        assertThat(request("PUT", "/test/_mapping").isRepeatable()).isTrue();
+        assertThat(request("PUT", "/test/_settings?preserve_existing=true").isRepeatable()).isTrue();
+        assertThat(request("PUT", "_index_template/logs").isRepeatable()).isTrue();
+        assertThat(request("PUT", "/_cluster/settings").isRepeatable()).isTrue();
+
+        assertThat(request("PUT", "/test").isRepeatable()).isFalse();
+        assertThat(request("PUT", "/test/_create/1").isRepeatable()).isFalse();
+        assertThat(request("PUT", "/test/_doc/1?op_type=create").isRepeatable()).isFalse();
+        assertThat(request("POST", "/test/_doc").isRepeatable()).isFalse();
+        assertThat(request("POST", "/_bulk").isRepeatable()).isFalse();
+        assertThat(request("DELETE", "/test").isRepeatable()).isFalse();
+    }
+
+    private static HttpRequestStatement request(final String method, final String path) {
+        return new HttpRequestStatement(method, null, path, "{}");
+    }
+}
@@ -0,0 +1,151 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LongRunningTaskTest {
+
+    private static final String OPAQUE_ID = "liquibase-test";
+
+    private HttpServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (this.server != null) {
+            this.server.stop(0);
+        }
+    }
+
+    @Test
+    void itDetectsTheApisWhichAreExecutedAsATask() {
+        assertThat(LongRunningTask.apiOf("POST", "/_reindex")).contains(LongRunningTask.Api.REINDEX);
+        assertThat(LongRunningTask.apiOf("post", "/testindex/_update_by_query?conflicts=proceed")).contains(LongRunningTask.Api.UPDATE_BY_QUERY);
+        assertThat(LongRunningTask.apiOf("POST", "/a,b/_delete_by_query")).contains(LongRunningTask.Api.DELETE_BY_QUERY);
+        assertThat(LongRunningTask.apiOf("POST", "/_forcemerge")).contains(LongRunningTask.Api.FORCE_MERGE);
+    }
+
+    @Test
+    void itExecutesOtherRequestsAsTheyAre() {
+        assertThat(LongRunningTask.apiOf("PUT", "/_reindex")).isEmpty();
+        assertThat(LongRunningTask.apiOf("POST", "/_reindex?wait_for_completion=true")).isEmpty();
+        assertThat(LongRunningTask.apiOf("POST", "/_reindex/abc/_rethrottle")).isEmpty();
+        assertThat(LongRunningTask.apiOf("POST", "/testindex/_doc")).isEmpty();
+        assertThat(LongRunningTask.apiOf("POST", "/")).isEmpty();
+    }
+
+    @Test
+    void itDoesNotWaitForCompletion() {
+        assertThat(LongRunningTask.withoutWaiting("/_reindex")).isEqualTo("/_reindex?wait_for_completion=false");
+        assertThat(LongRunningTask.withoutWaiting("/testindex/_update_by_query?conflicts=proceed"))
+                .isEqualTo("/testindex/_update_by_query?conflicts=proceed&wait_for_completion=false");
+    }
+
+    @Test
+    void itReportsTheProgress() throws Exception {
+        final var mapper = new ObjectMapper();
+        assertThat(LongRunningTask.progressOf(mapper.readTree("{\"total\":100,\"created\":10,\"updated\":20,\"version_conflicts\":1}")))
+                .isEqualTo("31 of 100 documents processed");
+        assertThat(LongRunningTask.progressOf(mapper.missingNode())).isEqualTo("still running");
+    }
+
+    @Test
+    void itReportsTheProgressOfEachSlice() throws Exception {
+        final var status = new ObjectMapper().readTree("""
+                {
+                  "total": 10, "created": 4,
+                  "slices": [
+                    { "slice_id": 0, "total": 5, "created": 3 },
+                    { "slice_id": 1, "total": 5, "created": 1 }
+                  ]
+                }
+                """);
+        assertThat(LongRunningTask.progressOf(status)).isEqualTo("4 of 10 documents processed (slice 0: 3 of 5, slice 1: 1 of 5)");
+    }
+
+    @Test
+    void itDetectsSuccessfulResults() throws Exception {
+        final var mapper = new ObjectMapper();
+        assertThat(LongRunningTask.isSuccessful(mapper.readTree("{\"completed\":true,\"response\":{\"created\":1,\"failures\":[]}}"))).isTrue();
+        assertThat(LongRunningTask.isSuccessful(mapper.readTree("{\"completed\":true,\"error\":{\"type\":\"x\"}}"))).isFalse();
+        assertThat(LongRunningTask.isSuccessful(mapper.readTree("{\"completed\":true,\"response\":{\"failures\":[{}]}}"))).isFalse();
+        assertThat(LongRunningTask.isSuccessful(mapper.readTree("{\"completed\":true,\"response\":{\"canceled\":\"by user\"}}"))).isFalse();
+    }
+
+    @Test
+    void itUsesTheResultOfATaskWhichHasCompletedSuccessfully() throws Exception {
+        final var task = this.task("{\"created\":5,\"failures\":[]}", true);
+        final var started = new AtomicInteger();
+
+        final var taskId = task.startOrResume(headers -> {
+            started.incrementAndGet();
+            throw new IOException("must not be started again");
+        });
+
+        assertThat(taskId).isEqualTo("node-1:42");
+        assertThat(started).hasValue(0);
+        assertThat(task.await(taskId).path("created").asLong()).isEqualTo(5);
+    }
+
+    @Test
+    void itStartsATaskAgainIfTheCompletedOneHasFailed() throws Exception {
+        final var task = this.task("{\"created\":1,\"failures\":[{\"cause\":{}}]}", true);
+
+        assertThatThrownBy(() -> task.startOrResume(headers -> {
+            throw new IOException("started");
+        })).isInstanceOf(IOException.class).hasMessage("started");
+    }
+
+    @Test
+    void itStartsATaskAgainIfCompletedTasksAreNotResumed() throws Exception {
+        final var task = this.task("{\"created\":5,\"failures\":[]}", false);
+
+        assertThatThrownBy(() -> task.startOrResume(headers -> {
+            throw new IOException("started");
+        })).isInstanceOf(IOException.class).hasMessage("started");
+    }
+
+    /**
+     * @return a task against a stub server which knows no running task and one completed task with the given response.
+     */
+    private LongRunningTask task(final String response, final boolean resumeCompleted) throws Exception {
+        final var completed = """
+                {"completed":true,"task":{"node":"node-1","id":42,"action":"indices:data/write/reindex",
+                "start_time_in_millis":1000,"headers":{"X-Opaque-Id":"%s"}},"response":%s}
+                """.formatted(OPAQUE_ID, response);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", exchange -> {
+            final var path = exchange.getRequestURI().getPath();
+            final String body;
+            if (path.equals("/_tasks")) {
+                body = "{\"nodes\":{}}";
+            } else if (path.equals("/.tasks/_search")) {
+                body = "{\"hits\":{\"hits\":[{\"_id\":\"node-1:42\",\"_source\":%s}]}}".formatted(completed);
+            } else {
+                body = completed;
+            }
+            final var bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        this.server.start();
+
+        final var connection = new OpenSearchConnection();
+        connection.open("opensearch:http://localhost:%d".formatted(this.server.getAddress().getPort()), null, new Properties());
+        return new LongRunningTask(connection.getOpenSearchClient().generic(), LongRunningTask.Api.REINDEX, OPAQUE_ID,
+                "test reindex", resumeCompleted);
+    }
+}
@@ -0,0 +1,53 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MigrateIndexStatementTest {
+
+    private final MigrateIndexStatement statement = new MigrateIndexStatement("products", "products-v2", null, "updated_at",
+            null, "auto", null, null);
+
+    private final ReindexStatement reindex = new ReindexStatement("products-v1", "products-v2", null, null, "auto", null, null);
+
+    @Test
+    void itReindexesWithExternalVersions() throws Exception {
+        assertThat(this.statement.reindexBody(this.reindex, null, false)).isEqualTo(new ObjectMapper().readTree("""
+                {
+                  "source": { "index": "products-v1" },
+                  "dest": { "index": "products-v2", "version_type": "external" },
+                  "conflicts": "proceed"
+                }
+                """));
+    }
+
+    @Test
+    void itOnlyCopiesTheDocumentsModifiedSinceTheGivenTimeInADeltaReindex() throws Exception {
+        assertThat(this.statement.reindexBody(this.reindex, 1_700_000_000_000L, false)).isEqualTo(new ObjectMapper().readTree("""
+                {
+                  "source": {
+                    "index": "products-v1",
+                    "query": { "range": { "updated_at": { "gte": 1700000000000, "format": "epoch_millis" } } }
+                  },
+                  "dest": { "index": "products-v2", "version_type": "external" },
+                  "conflicts": "proceed"
+                }
+                """));
+    }
+
+    @Test
+    void itOnlyCreatesMissingDocumentsOnceTheAliasHasBeenMoved() throws Exception {
+        assertThat(this.statement.reindexBody(this.reindex, 1_700_000_000_000L, true)).isEqualTo(new ObjectMapper().readTree("""
+                {
+                  "source": {
+                    "index": "products-v1",
+                    "query": { "range": { "updated_at": { "gte": 1700000000000, "format": "epoch_millis" } } }
+                  },
+                  "dest": { "index": "products-v2", "op_type": "create" },
+                  "conflicts": "proceed"
+                }
+                """));
+    }
+}
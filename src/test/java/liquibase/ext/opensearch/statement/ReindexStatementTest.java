@@ -0,0 +1,42 @@
+package liquibase.ext.opensearch.statement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.exception.DatabaseException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReindexStatementTest {
+
+    @Test
+    void itBuildsTheBodyOfTheRequest() throws Exception {
+        final var statement = new ReindexStatement("source", "dest", "{ \"term\": { \"testfield\": \"a\" } }",
+                "ctx._source.copied = true", "auto", 100.0, null);
+
+        assertThat(statement.buildBody()).isEqualTo(new ObjectMapper().readTree("""
+                {
+                  "source": { "index": "source", "query": { "term": { "testfield": "a" } } },
+                  "dest": { "index": "dest" },
+                  "script": { "lang": "painless", "source": "ctx._source.copied = true" }
+                }
+                """));
+    }
+
+    @Test
+    void itRejectsAnInvalidQuery() {
+        final var statement = new ReindexStatement("source", "dest", "{ \"term\": ", null, null, null, null);
+
+        assertThatThrownBy(statement::buildBody)
+                .isInstanceOf(DatabaseException.class)
+                .hasMessageStartingWith("invalid query");
+    }
+
+    @Test
+    void itFormatsTheThrottle() {
+        assertThat(ReindexStatement.formatRequestsPerSecond(null)).isEqualTo("-1");
+        assertThat(ReindexStatement.formatRequestsPerSecond(-1.0)).isEqualTo("-1");
+        assertThat(ReindexStatement.formatRequestsPerSecond(500.0)).isEqualTo("500");
+        assertThat(ReindexStatement.formatRequestsPerSecond(0.5)).isEqualTo("0.5");
+    }
+}
@@ -0,0 +1,51 @@
+package liquibase.ext.opensearch.statement;
+
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCompressionTest {
+
+    @Test
+    void itCompressesAStreamedBody() throws Exception {
+        final var body = "{ \"index\": { \"_index\": \"test\" } }\n{ \"field\": \"value\" }\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        try (final var compressed = RequestCompression.gzip(new ByteArrayInputStream(body))) {
+            final var bytes = compressed.readAllBytes();
+            assertThat(bytes.length).isLessThan(body.length / 10);
+            assertThat(new GZIPInputStream(new ByteArrayInputStream(bytes)).readAllBytes()).isEqualTo(body);
+        }
+    }
+
+    @Test
+    void itCompressesAnEmptyBody() throws Exception {
+        try (final var compressed = RequestCompression.gzip(new ByteArrayInputStream(new byte[0]))) {
+            assertThat(new GZIPInputStream(new ByteArrayInputStream(compressed.readAllBytes())).readAllBytes()).isEmpty();
+        }
+    }
+
+    @Test
+    void itCompressesBodiesFromTheThreshold() {
+        final var connection = new OpenSearchConnection();
+        assertThat(RequestCompression.isEnabled(connection, null, 10_000)).isFalse();
+
+        connection.setCompression(true);
+        connection.setCompressionThreshold(100);
+        assertThat(RequestCompression.isEnabled(connection, null, 99)).isFalse();
+        assertThat(RequestCompression.isEnabled(connection, null, 100)).isTrue();
+        assertThat(RequestCompression.isEnabled(connection, null, -1)).isTrue();
+        assertThat(RequestCompression.isEnabled(connection, false, 10_000)).isFalse();
+    }
+
+    @Test
+    void itCompressesIfTheChangeAsksForIt() {
+        final var connection = new OpenSearchConnection();
+        connection.setCompressionThreshold(100);
+        assertThat(RequestCompression.isEnabled(connection, true, 100)).isTrue();
+        assertThat(RequestCompression.isEnabled(connection, true, 99)).isFalse();
+    }
+}
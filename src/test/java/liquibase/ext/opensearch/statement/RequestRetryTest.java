@@ -0,0 +1,240 @@
+package liquibase.ext.opensearch.statement;
+
+import liquibase.Scope;
+import liquibase.ext.opensearch.configuration.OpenSearchConfiguration;
+import liquibase.ext.opensearch.database.OpenSearchConnection;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.http.message.RequestLine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch.generic.Body;
+import org.opensearch.client.opensearch.generic.Response;
+import org.opensearch.client.transport.httpclient5.ResponseException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestRetryTest {
+
+    private static final OpenSearchConnection CONNECTION = new OpenSearchConnection(null);
+
+    @AfterEach
+    void resetRetries() {
+        RequestRetry.reset();
+    }
+
+    @Test
+    void itParsesRetryAfter() {
+        assertThat(RequestRetry.parseRetryAfter("5")).contains(Duration.ofSeconds(5));
+        assertThat(RequestRetry.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT")).hasValueSatisfying(delay -> assertThat(delay).isNegative());
+        assertThat(RequestRetry.parseRetryAfter("soon")).isEmpty();
+    }
+
+    @Test
+    void itHonoursRetryAfterUpToTheMaxInterval() {
+        final var maxInterval = Duration.ofSeconds(10);
+        final var backoff = Duration.ofMillis(200);
+
+        assertThat(RequestRetry.retryDelay(Optional.of(Duration.ofSeconds(5)), maxInterval, backoff)).isEqualTo(Duration.ofSeconds(5));
+        assertThat(RequestRetry.retryDelay(Optional.of(Duration.ofHours(1)), maxInterval, backoff)).isEqualTo(maxInterval);
+        assertThat(RequestRetry.retryDelay(Optional.of(Duration.ofSeconds(-5)), maxInterval, backoff)).isEqualTo(backoff);
+        assertThat(RequestRetry.retryDelay(Optional.empty(), maxInterval, backoff)).isEqualTo(backoff);
+    }
+
+    @Test
+    void itRetriesRejectedRequests() throws Exception {
+        final var attempts = new AtomicInteger();
+        // a Retry-After of an hour is capped at the max interval of a millisecond
+        final var response = withFastRetries(0, () -> RequestRetry.execute(CONNECTION, "POST", "test request", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw responseException(HttpStatus.SC_TOO_MANY_REQUESTS, "3600");
+            }
+            return response(HttpStatus.SC_OK);
+        }));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.SC_OK);
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void itRetriesUnavailableClustersOnlyForIdempotentRequests() throws Exception {
+        final var attempts = new AtomicInteger();
+        assertThatThrownBy(() -> withFastRetries(0, () -> RequestRetry.execute(CONNECTION, "PUT", "test request", () -> {
+            attempts.incrementAndGet();
+            throw responseException(HttpStatus.SC_SERVICE_UNAVAILABLE, null);
+        }))).isInstanceOfSatisfying(ResponseException.class, e -> assertThat(e.status()).isEqualTo(HttpStatus.SC_SERVICE_UNAVAILABLE));
+        assertThat(attempts).hasValue(3);
+
+        attempts.set(0);
+        assertThatThrownBy(() -> withFastRetries(0, () -> RequestRetry.execute(CONNECTION, "POST", "test request", () -> {
+            attempts.incrementAndGet();
+            throw responseException(HttpStatus.SC_SERVICE_UNAVAILABLE, null);
+        }))).isInstanceOf(ResponseException.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void itStopsRetryingOnceTheBudgetIsUsedUp() throws Exception {
+        final var attempts = new AtomicInteger();
+        final var budgetExhausted = RequestRetry.getMetrics().budgetExhausted();
+        Scope.child(OpenSearchConfiguration.RETRY_BUDGET.getKey(), 1, () ->
+                assertThatThrownBy(() -> withFastRetries(0, () -> RequestRetry.execute(CONNECTION, "GET", "test request", () -> {
+                    attempts.incrementAndGet();
+                    throw new ConnectException("Connection refused");
+                }))).isInstanceOf(ConnectException.class));
+
+        assertThat(attempts).hasValue(2);
+        assertThat(RequestRetry.getMetrics().budgetExhausted()).isEqualTo(budgetExhausted + 1);
+
+        // another connection has a budget of its own
+        attempts.set(0);
+        Scope.child(OpenSearchConfiguration.RETRY_BUDGET.getKey(), 1, () ->
+                assertThatThrownBy(() -> withFastRetries(0, () -> RequestRetry.execute(new OpenSearchConnection(null), "GET", "test request", () -> {
+                    attempts.incrementAndGet();
+                    throw new ConnectException("Connection refused");
+                }))).isInstanceOf(ConnectException.class));
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void itRetriesIoErrorsOfIdempotentRequests() throws Exception {
+        final var attempts = new AtomicInteger();
+        assertThatThrownBy(() -> withFastRetries(0, () -> RequestRetry.execute(CONNECTION, "PUT", "test request", () -> {
+            attempts.incrementAndGet();
+            throw new SocketException("Connection reset");
+        }))).isInstanceOf(SocketException.class);
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void itRetriesNonIdempotentRequestsOnlyIfTheyCouldNotConnect() throws Exception {
+        final var attempts = new AtomicInteger();
+        assertThatThrownBy(() -> withFastRetries(0, () -> RequestRetry.execute(CONNECTION, "POST", "test request", () -> {
+            attempts.incrementAndGet();
+            throw new SocketException("Connection reset");
+        }))).isInstanceOf(SocketException.class);
+        assertThat(attempts).hasValue(1);
+
+        attempts.set(0);
+        assertThatThrownBy(() -> withFastRetries(0, () -> RequestRetry.execute(CONNECTION, "POST", "test request", () -> {
+            attempts.incrementAndGet();
+            throw new ConnectException("Connection refused");
+        }))).isInstanceOf(ConnectException.class);
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void itOpensTheCircuitBreakerAfterConsecutiveFailures() throws Exception {
+        final var attempts = new AtomicInteger();
+        assertThatThrownBy(() -> withFastRetries(2, () -> RequestRetry.execute(CONNECTION, "GET", "test request", () -> {
+            attempts.incrementAndGet();
+            throw new ConnectException("Connection refused");
+        }))).isInstanceOf(ConnectException.class);
+        final var rejections = RequestRetry.getMetrics().circuitBreakerRejections();
+
+        assertThatThrownBy(() -> withFastRetries(2, () -> RequestRetry.execute(CONNECTION, "GET", "test request", () -> {
+            attempts.incrementAndGet();
+            throw new ConnectException("Connection refused");
+        }))).isInstanceOf(IOException.class).hasMessageContaining("circuit breaker is open");
+        assertThat(attempts).hasValue(2);
+        assertThat(RequestRetry.getMetrics().circuitBreakerRejections()).isEqualTo(rejections + 1);
+    }
+
+    /**
+     * @param circuitBreakerThreshold 0 to disable the circuit breaker.
+     */
+    private static void withFastRetries(final int circuitBreakerThreshold, final Scope.ScopedRunner<?> runner) throws Exception {
+        withFastRetries(circuitBreakerThreshold, () -> {
+            runner.run();
+            return null;
+        });
+    }
+
+    private static <T> T withFastRetries(final int circuitBreakerThreshold, final Scope.ScopedRunnerWithReturn<T> runner) throws Exception {
+        return Scope.child(Map.of(
+                OpenSearchConfiguration.RETRY_MAX_ATTEMPTS.getKey(), 3,
+                OpenSearchConfiguration.RETRY_INITIAL_INTERVAL.getKey(), 1,
+                OpenSearchConfiguration.RETRY_MAX_INTERVAL.getKey(), 1,
+                OpenSearchConfiguration.CIRCUIT_BREAKER_THRESHOLD.getKey(), circuitBreakerThreshold,
+                OpenSearchConfiguration.CIRCUIT_BREAKER_OPEN_DURATION.getKey(), 60), runner);
+    }
+
+    /**
+     * The exception the transport throws for a 429, 502, 503 and 504, it and its response can't be created otherwise.
+     */
+    private static ResponseException responseException(final int status, final String retryAfter) throws IOException {
+        final var httpResponse = new BasicClassicHttpResponse(status);
+        if (retryAfter != null) {
+            httpResponse.addHeader("Retry-After", retryAfter);
+        }
+        try {
+            final var responseClass = Class.forName("org.opensearch.client.transport.httpclient5.Response");
+            final var responseConstructor = responseClass.getDeclaredConstructor(RequestLine.class, HttpHost.class, ClassicHttpResponse.class);
+            responseConstructor.setAccessible(true);
+            final var response = responseConstructor.newInstance(new RequestLine("GET", "/", HttpVersion.HTTP_1_1),
+                    new HttpHost("localhost", 9200), httpResponse);
+            final var constructor = ResponseException.class.getDeclaredConstructor(responseClass);
+            constructor.setAccessible(true);
+            return constructor.newInstance(response);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Response response(final int status) {
+        return new Response() {
+            @Override
+            public Optional<Body> getBody() {
+                return Optional.empty();
+            }
+
+            @Override
+            public String getProtocol() {
+                return "HTTP/1.1";
+            }
+
+            @Override
+            public String getMethod() {
+                return "POST";
+            }
+
+            @Override
+            public String getReason() {
+                return null;
+            }
+
+            @Override
+            public int getStatus() {
+                return status;
+            }
+
+            @Override
+            public String getUri() {
+                return "/";
+            }
+
+            @Override
+            public Collection<Map.Entry<String, String>> getHeaders() {
+                return List.of();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package liquibase.ext.opensearch.statement;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseInspectorTest {
+
+    @Test
+    void itAcceptsASuccessfulBulkResponse() throws Exception {
+        final var inspection = inspect(200, """
+                { "took": 3, "errors": false, "items": [ { "index": { "_index": "test", "_id": "1", "status": 201 } } ] }
+                """);
+        assertThat(inspection.failed()).isFalse();
+    }
+
+    @Test
+    void itReportsTheFailedItemsOfABulkResponse() throws Exception {
+        final var inspection = inspect(200, """
+                {
+                  "took": 3,
+                  "errors": true,
+                  "items": [
+                    { "index": { "_index": "test", "_id": "1", "status": 201 } },
+                    { "create": { "_index": "test", "_id": "2", "status": 409,
+                                  "error": { "type": "version_conflict_engine_exception", "reason": "[2]: version conflict" } } }
+                  ]
+                }
+                """);
+        assertThat(inspection.failed()).isTrue();
+        assertThat(inspection.failureCount()).isEqualTo(1);
+        assertThat(inspection.failures()).containsExactly(new ResponseInspector.Failure(1, 409, "test", "2",
+                "version_conflict_engine_exception: [2]: version conflict"));
+    }
+
+    @Test
+    void itKeepsOnlyTheFirstFailures() throws Exception {
+        final var items = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            items.append(i > 0 ? "," : "").append("""
+                    { "index": { "_index": "test", "_id": "%d", "status": 400, "error": { "type": "mapper_parsing_exception" } } }
+                    """.formatted(i));
+        }
+        final var inspection = inspect(200, "{ \"errors\": true, \"items\": [ %s ] }".formatted(items));
+        assertThat(inspection.failureCount()).isEqualTo(100);
+        assertThat(inspection.failures()).hasSize(ResponseInspector.MAX_FAILURES);
+        assertThat(inspection.describe()).startsWith("100 failures (the first 10): [item 0 (test/0) failed with code 400");
+    }
+
+    @Test
+    void itReportsTheFailuresOfAByQueryResponse() throws Exception {
+        final var inspection = inspect(200, """
+                { "took": 1, "updated": 0,
+                  "failures": [ { "index": "test", "id": "3", "cause": { "type": "mapper_parsing_exception", "reason": "failed" }, "status": 400 } ] }
+                """);
+        assertThat(inspection.failures()).containsExactly(new ResponseInspector.Failure(-1, 400, "test", "3",
+                "mapper_parsing_exception: failed"));
+    }
+
+    @Test
+    void itIgnoresEmptyShardFailures() throws Exception {
+        assertThat(inspect(201, """
+                { "_shards": { "total": 2, "successful": 1, "failed": 0, "failures": [] }, "result": "created" }
+                """).failed()).isFalse();
+    }
+
+    @Test
+    void itReportsTheErrorOfAnErrorResponse() throws Exception {
+        final var inspection = inspect(400, """
+                {
+                  "error": {
+                    "root_cause": [ { "type": "resource_already_exists_exception", "reason": "index [test/abc] already exists" } ],
+                    "type": "resource_already_exists_exception",
+                    "reason": "index [test/abc] already exists",
+                    "index": "test"
+                  },
+                  "status": 400
+                }
+                """);
+        assertThat(inspection.failed()).isTrue();
+        assertThat(inspection.describe()).isEqualTo("resource_already_exists_exception: index [test/abc] already exists");
+    }
+
+    @Test
+    void itDoesNotFailSuccessfulResponsesWhichAreNotJson() throws Exception {
+        assertThat(inspect(200, "green open test").failed()).isFalse();
+        assertThat(inspect(500, "{ broken").describe()).startsWith("(the response isn't valid JSON");
+    }
+
+    private static ResponseInspector.Inspection inspect(final int status, final String body) throws IOException {
+        return ResponseInspector.inspect(status, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,61 @@
+package liquibase.nosql.changelog;
+
+import org.junit.jupiter.api.Test;
+
+import static liquibase.nosql.changelog.InMemoryHistoryService.changeSet;
+import static liquibase.nosql.changelog.InMemoryHistoryService.generateHistory;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AbstractNoSqlHistoryServiceTest {
+
+    private static final String CHANGELOG = "liquibase/ext/changelog.yaml";
+
+    @Test
+    void itFindsRanChangeSetsLikeIsSameAs() throws Exception {
+        final var service = new InMemoryHistoryService(generateHistory(CHANGELOG, 10));
+
+        // paths are normalized and everything is compared case-insensitive
+        assertThat(service.getRanChangeSet(changeSet("classpath:/liquibase/ext/changelog.yaml", "5")))
+                .isNotNull()
+                .extracting("orderExecuted").isEqualTo(5);
+        assertThat(service.getRanChangeSet(changeSet("liquibase\\ext\\CHANGELOG.yaml", "5"))).isNotNull();
+        assertThat(service.getRanChangeSet(changeSet(CHANGELOG, "11"))).isNull();
+        assertThat(service.getRanChangeSet(changeSet("liquibase/ext/other.yaml", "5"))).isNull();
+    }
+
+    @Test
+    void itKeepsTheIndexInSyncOnRemoveFromHistory() throws Exception {
+        final var service = new InMemoryHistoryService(generateHistory(CHANGELOG, 10));
+        assertThat(service.getRanChangeSet(changeSet(CHANGELOG, "5"))).isNotNull();
+
+        service.removeFromHistory(changeSet(CHANGELOG, "5"));
+
+        assertThat(service.getRanChangeSet(changeSet(CHANGELOG, "5"))).isNull();
+        assertThat(service.getRanChangeSets()).hasSize(9);
+    }
+
+    @Test
+    void itKeepsTheIndexInSyncOnReplaceChecksum() throws Exception {
+        final var service = new InMemoryHistoryService(generateHistory(CHANGELOG, 10));
+        final var ranChangeSet = service.getRanChangeSet(changeSet(CHANGELOG, "5"));
+
+        service.replaceChecksum(changeSet(CHANGELOG, "5"));
+
+        // the cached entry is updated in place instead of reloading the history
+        assertThat(service.getRanChangeSet(changeSet(CHANGELOG, "5")))
+                .isSameAs(ranChangeSet)
+                .extracting("lastCheckSum").isEqualTo(InMemoryHistoryService.UPDATED_CHECKSUM);
+    }
+
+    @Test
+    void itReloadsTheIndexOnReset() throws Exception {
+        final var history = generateHistory(CHANGELOG, 10);
+        final var service = new InMemoryHistoryService(history);
+        assertThat(service.getRanChangeSet(changeSet(CHANGELOG, "11"))).isNull();
+
+        history.addAll(generateHistory(CHANGELOG, 11).subList(10, 11));
+        service.reset();
+
+        assertThat(service.getRanChangeSet(changeSet(CHANGELOG, "11"))).isNotNull();
+    }
+}
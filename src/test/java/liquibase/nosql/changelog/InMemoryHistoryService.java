@@ -0,0 +1,125 @@
+package liquibase.nosql.changelog;
+
+import liquibase.Scope;
+import liquibase.change.CheckSum;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.RanChangeSet;
+import liquibase.database.Database;
+import liquibase.logging.Logger;
+import liquibase.nosql.database.AbstractNoSqlDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * History service which serves a fixed history from memory, used to test the logic of {@link AbstractNoSqlHistoryService}
+ * without a database.
+ */
+class InMemoryHistoryService extends AbstractNoSqlHistoryService<AbstractNoSqlDatabase> {
+
+    static final CheckSum UPDATED_CHECKSUM = CheckSum.compute("updated");
+
+    private final List<RanChangeSet> history;
+
+    InMemoryHistoryService(final List<RanChangeSet> history) {
+        this.history = history;
+    }
+
+    /**
+     * Creates a history of {@code count} entries in the changelog {@code filePath}, the ids are the numbers from 1 to
+     * {@code count}.
+     */
+    static List<RanChangeSet> generateHistory(final String filePath, final int count) {
+        final var history = new ArrayList<RanChangeSet>(count);
+        for (int i = 1; i <= count; i++) {
+            final var ranChangeSet = new RanChangeSet(changeSet(filePath, String.valueOf(i)), ChangeSet.ExecType.EXECUTED, null, null);
+            ranChangeSet.setOrderExecuted(i);
+            history.add(ranChangeSet);
+        }
+        return history;
+    }
+
+    static ChangeSet changeSet(final String filePath, final String id) {
+        return new ChangeSet(id, "test", false, false, filePath, null, null, null, null);
+    }
+
+    @Override
+    public boolean supports(final Database database) {
+        return false;
+    }
+
+    @Override
+    public boolean isDatabaseChecksumsCompatible() {
+        return true;
+    }
+
+    @Override
+    public void clearAllCheckSums() {
+        this.history.forEach(r -> r.setLastCheckSum(null));
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return Scope.getCurrentScope().getLog(getClass());
+    }
+
+    @Override
+    protected boolean existsRepository() {
+        return true;
+    }
+
+    @Override
+    protected void createRepository() {
+        // nothing to create
+    }
+
+    @Override
+    protected void adjustRepository() {
+        // nothing to adjust
+    }
+
+    @Override
+    protected void dropRepository() {
+        this.history.clear();
+    }
+
+    @Override
+    protected List<RanChangeSet> queryRanChangeSets() {
+        return new ArrayList<>(this.history);
+    }
+
+    @Override
+    protected int generateNextSequence() {
+        return this.history.size();
+    }
+
+    @Override
+    protected void markChangeSetRun(final ChangeSet changeSet, final ChangeSet.ExecType execType, final Integer nextSequenceValue) {
+        this.history.add(new RanChangeSet(changeSet, execType, null, null));
+    }
+
+    @Override
+    protected void removeRanChangeSet(final ChangeSet changeSet) {
+        this.history.remove(new RanChangeSet(changeSet));
+    }
+
+    @Override
+    protected long countTags(final String tag) {
+        return this.history.stream().filter(r -> tag.equals(r.getTag())).count();
+    }
+
+    @Override
+    protected void tagLast(final String tagString) {
+        this.history.get(this.history.size() - 1).setTag(tagString);
+    }
+
+    @Override
+    protected long countRanChangeSets() {
+        return this.history.size();
+    }
+
+    @Override
+    protected CheckSum updateCheckSum(final ChangeSet changeSet) {
+        return UPDATED_CHECKSUM;
+    }
+}
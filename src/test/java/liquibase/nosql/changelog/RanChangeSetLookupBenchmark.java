@@ -0,0 +1,129 @@
+package liquibase.nosql.changelog;
+
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.RanChangeSet;
+import liquibase.exception.DatabaseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static liquibase.nosql.changelog.InMemoryHistoryService.changeSet;
+import static liquibase.nosql.changelog.InMemoryHistoryService.generateHistory;
+
+/**
+ * Measures how long it takes to look up every changeset of a changelog in the history. {@link #linearScan} is the
+ * lookup of the liquibase core implementation, {@link #indexedLookup} the one of {@link AbstractNoSqlHistoryService}.
+ * {@link #linearUpdatePlanning} and {@link #indexedUpdatePlanning} measure the same through
+ * {@link AbstractNoSqlHistoryService#getRunStatus(ChangeSet)}, which is what liquibase calls for every changeset when
+ * planning an update or reporting the status.
+ * <p>
+ * The benchmarks are only generated in the {@code benchmark} profile, run them with
+ * {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=liquibase.nosql.changelog.RanChangeSetLookupBenchmark}.
+ * Note that the linear lookups are quadratic, with 50k changesets a single invocation takes minutes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class RanChangeSetLookupBenchmark {
+
+    private static final String CHANGELOG = "liquibase/ext/changelog.yaml";
+
+    @Param({"5000", "50000"})
+    private int historySize;
+
+    private List<RanChangeSet> history;
+
+    private List<ChangeSet> changeSets;
+
+    private InMemoryHistoryService historyService;
+
+    private InMemoryHistoryService linearHistoryService;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.history = generateHistory(CHANGELOG, this.historySize);
+        this.changeSets = this.history.stream().map(r -> changeSet(CHANGELOG, r.getId())).toList();
+        this.historyService = new InMemoryHistoryService(this.history);
+        // load the history up front, only the lookups are measured
+        this.historyService.getRanChangeSets();
+        this.linearHistoryService = new LinearHistoryService(this.history);
+        this.linearHistoryService.getRanChangeSets();
+    }
+
+    @Benchmark
+    public void linearScan(final Blackhole blackhole) {
+        for (final var changeSet : this.changeSets) {
+            for (final var ranChangeSet : this.history) {
+                if (ranChangeSet.isSameAs(changeSet)) {
+                    blackhole.consume(ranChangeSet);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void indexedLookup(final Blackhole blackhole) throws Exception {
+        for (final var changeSet : this.changeSets) {
+            blackhole.consume(this.historyService.getRanChangeSet(changeSet));
+        }
+    }
+
+    @Benchmark
+    public void linearUpdatePlanning(final Blackhole blackhole) throws Exception {
+        for (final var changeSet : this.changeSets) {
+            blackhole.consume(this.linearHistoryService.getRunStatus(changeSet));
+        }
+    }
+
+    @Benchmark
+    public void indexedUpdatePlanning(final Blackhole blackhole) throws Exception {
+        for (final var changeSet : this.changeSets) {
+            blackhole.consume(this.historyService.getRunStatus(changeSet));
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RanChangeSetLookupBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    /**
+     * Looks up the changesets like the liquibase core implementation.
+     */
+    private static class LinearHistoryService extends InMemoryHistoryService {
+
+        LinearHistoryService(final List<RanChangeSet> history) {
+            super(history);
+        }
+
+        @Override
+        public RanChangeSet getRanChangeSet(final ChangeSet changeSet) throws DatabaseException {
+            for (final var ranChangeSet : getRanChangeSets()) {
+                if (ranChangeSet.isSameAs(changeSet)) {
+                    return ranChangeSet;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package liquibase.nosql.lockservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LockWaitStrategyTest {
+
+    @Test
+    void itDoublesTheDelayUpToTheMaximum() {
+        final var strategy = LockWaitStrategy.exponentialBackoff(Duration.ofMillis(100), Duration.ofSeconds(1));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(strategy.nextDelay(0)).isBetween(Duration.ofMillis(50), Duration.ofMillis(100));
+            assertThat(strategy.nextDelay(2)).isBetween(Duration.ofMillis(200), Duration.ofMillis(400));
+            assertThat(strategy.nextDelay(10)).isBetween(Duration.ofMillis(500), Duration.ofSeconds(1));
+            assertThat(strategy.nextDelay(Integer.MAX_VALUE)).isBetween(Duration.ofMillis(500), Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void itAddsJitter() {
+        final var strategy = LockWaitStrategy.exponentialBackoff(Duration.ofMillis(100), Duration.ofSeconds(10));
+
+        assertThat(IntStream.range(0, 100).mapToObj(i -> strategy.nextDelay(5)).distinct().count()).isGreaterThan(1);
+    }
+
+    @Test
+    void itAlwaysWaitsTheSameTimeWithAFixedDelay() {
+        assertThat(LockWaitStrategy.fixed(Duration.ofSeconds(10)).nextDelay(5)).isEqualTo(Duration.ofSeconds(10));
+    }
+}